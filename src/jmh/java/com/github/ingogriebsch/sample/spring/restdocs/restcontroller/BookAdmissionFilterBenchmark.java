@@ -0,0 +1,100 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.servlet.FilterChain;
+
+import com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookServerProperties.RateLimit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+// Measures the overhead the admission filter adds to each write, the limits are high enough to never reject a request.
+// Contention on a single bucket only shows on a machine with several cores.
+@BenchmarkMode(AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+public class BookAdmissionFilterBenchmark {
+
+    private static final FilterChain NOOP = (request, response) -> {
+    };
+
+    @Param({ "1", "10000" })
+    private int clients;
+
+    private TokenBucket bucket;
+    private BookAdmissionFilter filter;
+    private MockHttpServletRequest[] requests;
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setup() {
+        bucket = new TokenBucket(Double.MAX_VALUE / 2, Integer.MAX_VALUE, System.nanoTime());
+
+        RateLimit rateLimit = new RateLimit();
+        rateLimit.setPermitsPerSecond(1e9);
+        rateLimit.setBurst(Integer.MAX_VALUE);
+        rateLimit.setMaxInFlight(Integer.MAX_VALUE);
+        filter = new BookAdmissionFilter(rateLimit);
+
+        requests = new MockHttpServletRequest[clients];
+        for (int i = 0; i < clients; i++) {
+            requests[i] = new MockHttpServletRequest("POST", "/books");
+            requests[i].setRemoteAddr("10." + (i >> 16 & 0xFF) + "." + (i >> 8 & 0xFF) + "." + (i & 0xFF));
+        }
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public long tryAcquire() {
+        return bucket.tryAcquire(System.nanoTime());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long tryAcquireContended() {
+        return bucket.tryAcquire(System.nanoTime());
+    }
+
+    @Benchmark
+    public MockHttpServletResponse filter() throws Exception {
+        filter.doFilter(requests[ThreadLocalRandom.current().nextInt(clients)], response, NOOP);
+        return response;
+    }
+}
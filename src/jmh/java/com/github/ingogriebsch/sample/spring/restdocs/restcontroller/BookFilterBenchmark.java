@@ -0,0 +1,97 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+import static javax.validation.Validation.buildDefaultValidatorFactory;
+
+import static org.openjdk.jmh.annotations.Mode.Throughput;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookStoreProperties.Type;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Compares lookups through the service with and without the filter in front of the store, of books which are available and
+// of the ones which are not.
+@BenchmarkMode(Throughput)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g", "-XX:MaxDirectMemorySize=4g" })
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+public class BookFilterBenchmark {
+
+    @Param({ "HEAP", "COMPACT", "OFF_HEAP", "SNAPSHOT" })
+    private Type type;
+
+    @Param({ "true", "false" })
+    private boolean filter;
+
+    @Param({ "1000000" })
+    private int size;
+
+    private BookService bookService;
+
+    @Setup
+    public void setup() {
+        BookStoreProperties properties = new BookStoreProperties();
+        properties.getFilter().setEnabled(filter);
+        properties.getFilter().setExpectedBooks(size);
+        bookService =
+            new BookService(BookStoreConfiguration.newBookStore(type), buildDefaultValidatorFactory().getValidator(), properties);
+        for (int i = 0; i < size; i++) {
+            bookService.insert(new BookInsert(isbn(i), "Title " + i));
+        }
+    }
+
+    @Benchmark
+    public Optional<Book> findOne() {
+        return bookService.findOne(isbn(ThreadLocalRandom.current().nextInt(size)));
+    }
+
+    @Benchmark
+    public Optional<Book> findOneMissing() {
+        return bookService.findOne(isbn(size + ThreadLocalRandom.current().nextInt(size)));
+    }
+
+    private static String isbn(int i) {
+        char[] digits = new char[13];
+        digits[0] = '9';
+        digits[1] = '7';
+        digits[2] = '8';
+        for (int p = digits.length - 2; p >= 3; p--, i /= 10) {
+            digits[p] = (char) ('0' + i % 10);
+        }
+        digits[12] = Isbns.checkDigit13(new String(digits, 0, 12));
+        return new String(digits);
+    }
+}
@@ -0,0 +1,145 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.stream.Collectors.toList;
+
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+import static org.openjdk.jmh.annotations.Mode.SingleShotTime;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+// Compares the CPU time spent to write and read a page of books in the supported formats, with and without the gzip
+// compression applied by the server. The size of the payloads is reported through the secondary results 'bytes' and
+// 'compressedBytes' of the benchmark 'payloadSize', e.g. -Djmh.args="BookFormatBenchmark".
+@BenchmarkMode(AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+public class BookFormatBenchmark {
+
+    public enum Format {
+            JSON, CBOR, SMILE
+    }
+
+    @Param({ "JSON", "CBOR", "SMILE" })
+    private Format format;
+
+    @Param({ "1000" })
+    private int size;
+
+    private ObjectWriter booksWriter;
+    private ObjectReader bookInsertsReader;
+
+    private List<Book> books;
+    private byte[] bookInserts;
+
+    @Setup
+    public void setup() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper(factory(format));
+        // Configured the same way as the object mappers the message converters are using.
+        Jackson2ObjectMapperBuilder.json().configure(objectMapper);
+        booksWriter = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, Book.class));
+        bookInsertsReader =
+            objectMapper.readerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, BookInsert.class));
+
+        books = IntStream.range(0, size).mapToObj(i -> new Book(isbn(i), "Title of the book number " + i)).collect(toList());
+        bookInserts =
+            objectMapper.writeValueAsBytes(books.stream().map(b -> new BookInsert(b.getIsbn(), b.getTitle())).collect(toList()));
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PayloadSize {
+
+        public long bytes;
+        public long compressedBytes;
+    }
+
+    @Benchmark
+    @BenchmarkMode(SingleShotTime)
+    // The counters are summed up over all iterations, so only a single one is measured.
+    @Measurement(iterations = 1)
+    @Warmup(iterations = 1)
+    public void payloadSize(PayloadSize payloadSize) throws Exception {
+        payloadSize.bytes = serialize().length;
+        payloadSize.compressedBytes = serializeCompressed().length;
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return booksWriter.writeValueAsBytes(books);
+    }
+
+    @Benchmark
+    public byte[] serializeCompressed() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            booksWriter.writeValue(gzip, books);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public List<BookInsert> deserialize() throws Exception {
+        return bookInsertsReader.readValue(bookInserts);
+    }
+
+    private static JsonFactory factory(Format format) {
+        switch (format) {
+            case CBOR:
+                return new CBORFactory();
+            case SMILE:
+                return new SmileFactory();
+            default:
+                return new JsonFactory();
+        }
+    }
+
+    private static String isbn(int i) {
+        String isbn = String.format("978%09d", i);
+        return isbn + Isbns.checkDigit13(isbn);
+    }
+}
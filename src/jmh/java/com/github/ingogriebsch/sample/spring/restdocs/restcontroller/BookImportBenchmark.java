@@ -0,0 +1,113 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createTempDirectory;
+import static java.nio.file.Files.newBufferedWriter;
+import static java.nio.file.Files.walk;
+import static java.util.Comparator.reverseOrder;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import static javax.validation.Validation.buildDefaultValidatorFactory;
+
+import static org.openjdk.jmh.annotations.Mode.SingleShotTime;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(SingleShotTime)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Measurement(iterations = 5)
+@OutputTimeUnit(MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+public class BookImportBenchmark {
+
+    @Param({ "csv", "ndjson" })
+    private String format;
+
+    @Param({ "1", "2", "4", "8" })
+    private int parallelism;
+
+    @Param({ "1000000" })
+    private int size;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Path directory;
+    private BookImportProperties properties;
+    private BookImporter importer;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = createTempDirectory("import");
+        Path file = directory.resolve("books." + format);
+        try (BufferedWriter writer = newBufferedWriter(file, UTF_8)) {
+            for (int i = 0; i < size; i++) {
+                String isbn = String.valueOf(9_780_000_000_000L + i * 10L);
+                isbn = isbn.substring(0, 12) + Isbns.checkDigit13(isbn.substring(0, 12));
+                writer.write("csv".equals(format) ? isbn + ",\"Title, " + i + "\""
+                    : "{\"isbn\":\"" + isbn + "\",\"title\":\"Title " + i + "\"}");
+                writer.newLine();
+            }
+        }
+
+        properties = new BookImportProperties();
+        properties.setFile(file.toString());
+        properties.setParallelism(parallelism);
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation() {
+        BookService bookService = new BookService(new InMemoryBookStore(), buildDefaultValidatorFactory().getValidator());
+        importer = new BookImporter(properties, bookService, objectMapper);
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownInvocation() {
+        importer.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        walk(directory).sorted(reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+
+    @Benchmark
+    public BookImporter.State importAll() throws Exception {
+        return importer.start().get();
+    }
+}
@@ -0,0 +1,74 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+@BenchmarkMode(AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+public class BookJsonBenchmark {
+
+    private ObjectWriter bookWriter;
+    private ObjectReader bookInsertReader;
+
+    private Book book;
+    private byte[] bookInsert;
+
+    @Setup
+    public void setup() throws Exception {
+        // Configured the same way as the object mapper Spring Boot is providing to the controllers.
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        bookWriter = objectMapper.writerFor(Book.class);
+        bookInsertReader = objectMapper.readerFor(BookInsert.class);
+
+        book = new Book("0345391802", "The Hitchhiker's Guide to the Galaxy");
+        bookInsert = objectMapper.writeValueAsBytes(new BookInsert("0345391802", "The Hitchhiker's Guide to the Galaxy"));
+    }
+
+    @Benchmark
+    public byte[] serializeBook() throws Exception {
+        return bookWriter.writeValueAsBytes(book);
+    }
+
+    @Benchmark
+    public BookInsert deserializeBookInsert() throws Exception {
+        return bookInsertReader.readValue(bookInsert);
+    }
+}
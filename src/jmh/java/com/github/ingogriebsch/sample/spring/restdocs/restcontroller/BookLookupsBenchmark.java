@@ -0,0 +1,131 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import static javax.validation.Validation.buildDefaultValidatorFactory;
+
+import static org.openjdk.jmh.annotations.Mode.Throughput;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+import lombok.RequiredArgsConstructor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Many threads looking up the same few isbns from a store which takes a while to answer each lookup, like one which reads
+// from disk or over the network would.
+@BenchmarkMode(Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(MILLISECONDS)
+@State(Scope.Benchmark)
+@Threads(16)
+@Warmup(iterations = 3, time = 2)
+public class BookLookupsBenchmark {
+
+    @Param({ "false", "true" })
+    private boolean coalesce;
+
+    @Param({ "0", "100" })
+    private long timeToLiveMillis;
+
+    @Param({ "200" })
+    private long latencyMicros;
+
+    @Param({ "16" })
+    private int hotBooks;
+
+    private String[] isbns;
+    private BookService bookService;
+
+    @Setup
+    public void setup() {
+        BookStoreProperties properties = new BookStoreProperties();
+        properties.getLookups().setCoalesce(coalesce);
+        properties.getLookups().setTimeToLiveMillis(timeToLiveMillis);
+        bookService = new BookService(new SlowBookStore(new InMemoryBookStore(), MICROSECONDS.toNanos(latencyMicros)),
+            buildDefaultValidatorFactory().getValidator(), properties);
+
+        isbns = new String[hotBooks];
+        for (int i = 0; i < hotBooks; i++) {
+            String isbn = String.format("978%09d", i);
+            isbns[i] = isbn + Isbns.checkDigit13(isbn);
+            bookService.insert(new BookInsert(isbns[i], "Title " + i));
+        }
+    }
+
+    @Benchmark
+    public Optional<Book> findOne() {
+        return bookService.findOne(isbns[ThreadLocalRandom.current().nextInt(isbns.length)]);
+    }
+
+    @RequiredArgsConstructor
+    private static final class SlowBookStore implements BookStore {
+
+        private final BookStore bookStore;
+        private final long latencyNanos;
+
+        @Override
+        public Optional<Book> find(String isbn) {
+            LockSupport.parkNanos(latencyNanos);
+            return bookStore.find(isbn);
+        }
+
+        @Override
+        public boolean insert(Book book) {
+            return bookStore.insert(book);
+        }
+
+        @Override
+        public boolean delete(String isbn) {
+            return bookStore.delete(isbn);
+        }
+
+        @Override
+        public Stream<Book> stream() {
+            return bookStore.stream();
+        }
+
+        @Override
+        public int size() {
+            return bookStore.size();
+        }
+
+        @Override
+        public long memoryFootprint() {
+            return bookStore.memoryFootprint();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+import static org.openjdk.jmh.annotations.Mode.SampleTime;
+import static org.springframework.http.MediaType.APPLICATION_JSON_UTF8;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.client.RestTemplate;
+
+// Measures the latency of a write on a leader which answers it only after all of its replicas applied it.
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookReplicationBenchmark {
+
+    @Param({ "0", "1", "2" })
+    private int replicas;
+
+    private final AtomicLong next = new AtomicLong();
+    private final List<EmbeddedWebApplicationContext> nodes = new ArrayList<>();
+    private final RestTemplate restTemplate = new RestTemplate();
+    private String leaderUrl;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        EmbeddedWebApplicationContext leader = node("--book.replication.write-acks=" + replicas);
+        leaderUrl = "http://localhost:" + leader.getEmbeddedServletContainer().getPort();
+        for (int i = 0; i < replicas; i++) {
+            node("--book.replication.leader-url=" + leaderUrl);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            nodes.get(i).close();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(SampleTime)
+    @Measurement(iterations = 5, time = 2)
+    @OutputTimeUnit(MICROSECONDS)
+    @Warmup(iterations = 3, time = 2)
+    public void insertAndDelete() {
+        String digits = "978" + (100_000_000L + next.incrementAndGet());
+        String isbn = digits + Isbns.checkDigit13(digits);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(APPLICATION_JSON_UTF8);
+        restTemplate.postForEntity(leaderUrl + "/books",
+            new HttpEntity<>("{\"isbn\":\"" + isbn + "\",\"title\":\"Title\"}", headers), String.class);
+        restTemplate.delete(leaderUrl + "/books/{isbn}", isbn);
+    }
+
+    private EmbeddedWebApplicationContext node(String arg) {
+        EmbeddedWebApplicationContext node =
+            (EmbeddedWebApplicationContext) new SpringApplicationBuilder(Application.class).run("--server.port=0",
+                "--spring.jmx.enabled=false", "--endpoints.jmx.enabled=false", "--book.server.rate-limit.enabled=false",
+                "--logging.level.root=WARN", arg);
+        nodes.add(node);
+        return node;
+    }
+}
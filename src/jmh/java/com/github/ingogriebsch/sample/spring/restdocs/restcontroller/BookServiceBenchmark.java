@@ -0,0 +1,157 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static javax.validation.Validation.buildDefaultValidatorFactory;
+
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(AverageTime)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+public class BookServiceBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+    private static final int KEYS_PER_THREAD = 1_000_000;
+
+    @Param({ "1000", "10000", "100000", "1000000", "10000000" })
+    private int size;
+
+    private BookService bookService;
+
+    @Setup
+    public void setup() {
+        bookService = new BookService(new InMemoryBookStore(), buildDefaultValidatorFactory().getValidator());
+        for (int i = 0; i < size; i++) {
+            bookService.insert(bookInsert(i));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Keys {
+
+        private static final AtomicInteger threads = new AtomicInteger();
+
+        private int offset;
+        private int next;
+
+        @Setup
+        public void setup(BookServiceBenchmark benchmark) {
+            // Every thread works on its own range of isbns which are not part of the initial catalog.
+            offset = benchmark.size + threads.getAndIncrement() * KEYS_PER_THREAD;
+        }
+
+        String existing(int size) {
+            return isbn(ThreadLocalRandom.current().nextInt(size));
+        }
+
+        BookInsert fresh() {
+            next = (next + 1) % KEYS_PER_THREAD;
+            return bookInsert(offset + next);
+        }
+    }
+
+    @Benchmark
+    public Optional<Book> findOne(Keys keys) {
+        return bookService.findOne(keys.existing(size));
+    }
+
+    @Benchmark
+    public Optional<Book> findOneMissing() {
+        return bookService.findOne("unknown");
+    }
+
+    @Benchmark
+    public Optional<Book> insertDuplicate() {
+        return bookService.insert(bookInsert(ThreadLocalRandom.current().nextInt(size)));
+    }
+
+    @Benchmark
+    public boolean insertAndDelete(Keys keys) {
+        BookInsert bookInsert = keys.fresh();
+        bookService.insert(bookInsert);
+        return bookService.delete(bookInsert.getIsbn());
+    }
+
+    @Benchmark
+    public List<Book> findAllPaged(Keys keys) {
+        return bookService.findAll(keys.existing(size), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Set<Book> findAll() {
+        return bookService.findAll();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public Optional<Book> contendedFindOne(Keys keys) {
+        return bookService.findOne(keys.existing(size));
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public boolean contendedInsertAndDelete(Keys keys) {
+        return insertAndDelete(keys);
+    }
+
+    private static BookInsert bookInsert(int i) {
+        return new BookInsert(isbn(i), "Title " + i);
+    }
+
+    private static String isbn(int i) {
+        // Avoids String.format() which would otherwise dominate the measured time. The isbns are canonical ISBN-13s, so the
+        // service stores them as they are.
+        char[] digits = new char[13];
+        digits[0] = '9';
+        digits[1] = '7';
+        digits[2] = '8';
+        for (int p = digits.length - 2; p >= 3; p--, i /= 10) {
+            digits[p] = (char) ('0' + i % 10);
+        }
+        digits[12] = Isbns.checkDigit13(new String(digits, 0, 12));
+        return new String(digits);
+    }
+}
@@ -0,0 +1,86 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+import static org.openjdk.jmh.annotations.Mode.Throughput;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookStoreProperties.Type;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Compares the stores on a large catalog. Allocation rate and time spent in GC are reported alongside the throughput if the
+// GC profiler is activated, e.g. -Djmh.args="BookStoreBenchmark -prof gc".
+@BenchmarkMode(Throughput)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g", "-XX:MaxDirectMemorySize=4g" })
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+public class BookStoreBenchmark {
+
+    @Param({ "HEAP", "COMPACT", "OFF_HEAP", "SNAPSHOT" })
+    private Type type;
+
+    @Param({ "5000000" })
+    private int size;
+
+    private BookStore bookStore;
+
+    @Setup
+    public void setup() {
+        bookStore = BookStoreConfiguration.newBookStore(type);
+        for (int i = 0; i < size; i++) {
+            bookStore.insert(new Book(isbn(i), "Title " + i));
+        }
+    }
+
+    @Benchmark
+    public Optional<Book> find() {
+        return bookStore.find(isbn(ThreadLocalRandom.current().nextInt(size)));
+    }
+
+    @Benchmark
+    public boolean insertAndDelete() {
+        Book book = new Book(isbn(size + ThreadLocalRandom.current().nextInt(size)), "Title");
+        bookStore.insert(book);
+        return bookStore.delete(book.getIsbn());
+    }
+
+    private static String isbn(int i) {
+        char[] digits = new char[10];
+        for (int d = digits.length - 1; d >= 0; d--, i /= 10) {
+            digits[d] = (char) ('0' + i % 10);
+        }
+        return new String(digits);
+    }
+}
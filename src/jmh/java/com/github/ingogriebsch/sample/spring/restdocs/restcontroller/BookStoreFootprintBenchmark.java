@@ -0,0 +1,115 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.lang.management.ManagementFactory.getMemoryMXBean;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import static javax.validation.Validation.buildDefaultValidatorFactory;
+
+import static org.openjdk.jmh.annotations.Mode.SingleShotTime;
+
+import com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookStoreProperties.Type;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Reports the retained heap per book through the secondary result 'bytesPerBook'. The primary result is the time which
+// is needed to fill the store. Run with a large enough heap, e.g. -Djmh.args="BookStoreFootprintBenchmark -p books=10000000".
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class BookStoreFootprintBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Catalog {
+
+        @Param({ "HEAP", "COMPACT", "OFF_HEAP" })
+        private Type type;
+
+        @Param({ "1000000" })
+        private int books;
+
+        // Whether the ordered index of the service is included in the footprint as well.
+        @Param({ "false", "true" })
+        private boolean service;
+
+        private Object retained;
+        private long heapBefore;
+
+        @Setup(Level.Iteration)
+        public void setup() {
+            retained = null;
+            heapBefore = usedHeap();
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            retained = null;
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+
+        public long bytesPerBook;
+    }
+
+    @Benchmark
+    @BenchmarkMode(SingleShotTime)
+    // The counter is summed up over all iterations, so only a single one is measured.
+    @Measurement(iterations = 1)
+    @OutputTimeUnit(MILLISECONDS)
+    @Warmup(iterations = 1)
+    public void fill(Catalog catalog, Footprint footprint) {
+        BookStore bookStore = BookStoreConfiguration.newBookStore(catalog.type);
+        for (int i = 0; i < catalog.books; i++) {
+            bookStore.insert(new Book(isbn(i), "Title " + i));
+        }
+        catalog.retained =
+            catalog.service ? new BookService(bookStore, buildDefaultValidatorFactory().getValidator()) : bookStore;
+
+        footprint.bytesPerBook = (usedHeap() - catalog.heapBefore) / catalog.books;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static String isbn(int i) {
+        char[] digits = new char[10];
+        for (int d = digits.length - 1; d >= 0; d--, i /= 10) {
+            digits[d] = (char) ('0' + i % 10);
+        }
+        return new String(digits);
+    }
+}
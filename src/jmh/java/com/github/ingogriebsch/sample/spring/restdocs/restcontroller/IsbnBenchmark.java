@@ -0,0 +1,68 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Compares the validation of isbns through the regular expression formerly used by BookInsert with the validation and
+// normalization through Isbns. Allocations are reported through the GC profiler, e.g. -Djmh.args="IsbnBenchmark -prof gc".
+@BenchmarkMode(AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+public class IsbnBenchmark {
+
+    // The same way the pattern constraint is validated, which compiles the expression once and matches it per value.
+    private static final Pattern ISBN_10 = Pattern.compile("[0-9]{10}");
+
+    @Param({ "0345391802", "9780345391803", "978-0-345-39180-3" })
+    private String isbn;
+
+    @Benchmark
+    public boolean regex() {
+        return ISBN_10.matcher(isbn).matches();
+    }
+
+    @Benchmark
+    public boolean isValid() {
+        return Isbns.isValid(isbn);
+    }
+
+    @Benchmark
+    public String canonical() {
+        return Isbns.canonical(isbn);
+    }
+}
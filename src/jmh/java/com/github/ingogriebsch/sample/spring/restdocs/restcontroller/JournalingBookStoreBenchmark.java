@@ -0,0 +1,139 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.nio.file.Files.createTempDirectory;
+import static java.nio.file.Files.walk;
+import static java.util.Comparator.reverseOrder;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import static org.openjdk.jmh.annotations.Mode.SampleTime;
+import static org.openjdk.jmh.annotations.Mode.SingleShotTime;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookStoreProperties.Journal.FsyncPolicy;
+import com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookStoreProperties.Journal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@Fork(1)
+public class JournalingBookStoreBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Writes {
+
+        @Param({ "ALWAYS", "BATCH", "INTERVAL" })
+        private FsyncPolicy fsyncPolicy;
+
+        private final AtomicInteger next = new AtomicInteger();
+        private Path directory;
+        private JournalingBookStore bookStore;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            directory = createTempDirectory("journal");
+            bookStore = new JournalingBookStore(properties(directory, fsyncPolicy));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            bookStore.close();
+            delete(directory);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Recovery {
+
+        @Param({ "100000", "1000000" })
+        private int books;
+
+        @Param({ "true", "false" })
+        private boolean snapshot;
+
+        private Path directory;
+
+        @Setup(Level.Iteration)
+        public void setup() throws IOException {
+            directory = createTempDirectory("journal");
+            // The store is not closed on purpose. Otherwise a snapshot would be written no matter what is measured.
+            JournalingBookStore bookStore = new JournalingBookStore(properties(directory, FsyncPolicy.INTERVAL));
+            for (int i = 0; i < books; i++) {
+                bookStore.insert(new Book(String.valueOf(1_000_000_000L + i), "Title " + i));
+            }
+            if (snapshot) {
+                bookStore.snapshot();
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws IOException {
+            delete(directory);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(SampleTime)
+    @Measurement(iterations = 5, time = 2)
+    @OutputTimeUnit(MICROSECONDS)
+    @Warmup(iterations = 3, time = 2)
+    public boolean insertAndDelete(Writes writes) {
+        Book book = new Book(String.valueOf(1_000_000_000L + writes.next.incrementAndGet()), "Title");
+        writes.bookStore.insert(book);
+        return writes.bookStore.delete(book.getIsbn());
+    }
+
+    @Benchmark
+    @BenchmarkMode(SingleShotTime)
+    @Measurement(iterations = 5)
+    @OutputTimeUnit(MILLISECONDS)
+    @Warmup(iterations = 1)
+    public int recover(Recovery recovery) throws IOException {
+        return new JournalingBookStore(properties(recovery.directory, FsyncPolicy.INTERVAL)).size();
+    }
+
+    private static Journal properties(Path directory, FsyncPolicy fsyncPolicy) {
+        Journal properties = new Journal();
+        properties.setEnabled(true);
+        properties.setDirectory(directory.toString());
+        properties.setFsyncPolicy(fsyncPolicy);
+        properties.setSnapshotIntervalMillis(0);
+        return properties;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        walk(directory).sorted(reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+}
@@ -0,0 +1,129 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.nio.file.Files.createTempDirectory;
+import static java.nio.file.Files.walk;
+import static java.util.Comparator.reverseOrder;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+import static javax.validation.Validation.buildDefaultValidatorFactory;
+
+import static org.openjdk.jmh.annotations.Mode.SampleTime;
+import static org.openjdk.jmh.annotations.Mode.Throughput;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookServerProperties.ExecutionMode;
+import com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookStoreProperties.Journal.FsyncPolicy;
+import com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookStoreProperties.Journal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Executes bursts of concurrent requests whose writes block until the journal is forced to disk. Virtual threads need
+// a Java 21 JVM, which is passed through e.g. -Djmh.args="RequestExecutionBenchmark -jvm /path/to/jdk-21/bin/java".
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestExecutionBenchmark {
+
+    private static final int REQUESTS = 1000;
+    // Matches the default maximum number of request threads of Tomcat.
+    private static final int PLATFORM_THREADS = 200;
+
+    @Param({ "PLATFORM", "VIRTUAL" })
+    private ExecutionMode executionMode;
+
+    @Param({ "ALWAYS", "BATCH" })
+    private FsyncPolicy fsyncPolicy;
+
+    private final AtomicLong next = new AtomicLong();
+    private Path directory;
+    private JournalingBookStore bookStore;
+    private BookService bookService;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        executor = executionMode == ExecutionMode.VIRTUAL ? TomcatExecutorCustomizer.newVirtualThreadPerTaskExecutor()
+            : newFixedThreadPool(PLATFORM_THREADS);
+        directory = createTempDirectory("journal");
+        bookStore = new JournalingBookStore(properties(directory, fsyncPolicy));
+        bookService = new BookService(bookStore, buildDefaultValidatorFactory().getValidator());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        bookStore.close();
+        walk(directory).sorted(reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Throughput, SampleTime })
+    @Measurement(iterations = 5, time = 2)
+    @OperationsPerInvocation(REQUESTS)
+    @OutputTimeUnit(MICROSECONDS)
+    @Warmup(iterations = 3, time = 2)
+    public int insertAndDelete() throws Exception {
+        List<Future<Boolean>> requests = new ArrayList<>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            String digits = "978" + (100_000_000L + next.incrementAndGet());
+            String isbn = digits + Isbns.checkDigit13(digits);
+            requests.add(executor.submit(() -> {
+                bookService.insert(new BookInsert(isbn, "Title"));
+                return bookService.delete(isbn);
+            }));
+        }
+
+        int deleted = 0;
+        for (Future<Boolean> request : requests) {
+            deleted += request.get() ? 1 : 0;
+        }
+        return deleted;
+    }
+
+    private static Journal properties(Path directory, FsyncPolicy fsyncPolicy) {
+        Journal properties = new Journal();
+        properties.setEnabled(true);
+        properties.setDirectory(directory.toString());
+        properties.setFsyncPolicy(fsyncPolicy);
+        properties.setSnapshotIntervalMillis(0);
+        return properties;
+    }
+}
@@ -0,0 +1,85 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+import static org.openjdk.jmh.annotations.Mode.Throughput;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookStoreProperties.Type;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Measures concurrent writers on a shared store with one thread per core. The scaling is shown by comparing the results of
+// different thread counts, e.g. -Djmh.args="ShardedBookStoreBenchmark -t 1" and "-t 8".
+@BenchmarkMode(Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(MICROSECONDS)
+@State(Scope.Benchmark)
+@Threads(Threads.MAX)
+@Warmup(iterations = 3, time = 2)
+public class ShardedBookStoreBenchmark {
+
+    @Param({ "HEAP", "COMPACT", "OFF_HEAP", "SNAPSHOT" })
+    private Type type;
+
+    @Param({ "1", "16" })
+    private int shards;
+
+    @Param({ "100000" })
+    private int size;
+
+    private BookStore bookStore;
+
+    @Setup
+    public void setup() {
+        bookStore = BookStoreConfiguration.newBookStore(type, shards);
+        for (int i = 0; i < size; i++) {
+            bookStore.insert(new Book(isbn(i), "Title " + i));
+        }
+    }
+
+    @Benchmark
+    public boolean insertAndDelete() {
+        Book book = new Book(isbn(size + ThreadLocalRandom.current().nextInt(size * 10)), "Title");
+        bookStore.insert(book);
+        return bookStore.delete(book.getIsbn());
+    }
+
+    private static String isbn(int i) {
+        char[] digits = new char[10];
+        for (int d = digits.length - 1; d >= 0; d--, i /= 10) {
+            digits[d] = (char) ('0' + i % 10);
+        }
+        return new String(digits);
+    }
+}
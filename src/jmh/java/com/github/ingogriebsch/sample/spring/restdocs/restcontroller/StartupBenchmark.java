@@ -0,0 +1,181 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.nio.file.Files.createTempDirectory;
+import static java.nio.file.Files.walk;
+import static java.util.Comparator.reverseOrder;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import static org.openjdk.jmh.annotations.Mode.SingleShotTime;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookStoreProperties.Journal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Measures the time from launching a JVM running the service to its first successful GET /books. A CDS archive recorded
+// through the profile cds is used by passing -p archive=target/cds/books.jsa -p jvm=/path/to/jdk-21/bin/java, the service is
+// then started from the jar and the dependencies the archive was recorded with.
+@Fork(1)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    public enum Catalog {
+            SEED, JOURNAL, IMAGE
+    }
+
+    @Param({ "SEED", "JOURNAL", "IMAGE" })
+    private Catalog catalog;
+
+    @Param({ "false", "true" })
+    private boolean lazy;
+
+    @Param({ "100000" })
+    private int size;
+
+    @Param({ "" })
+    private String archive;
+
+    @Param({ "" })
+    private String jvm;
+
+    private Path directory;
+    private Process process;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = createTempDirectory("startup");
+        if (catalog == Catalog.JOURNAL) {
+            Journal properties = new Journal();
+            properties.setEnabled(true);
+            properties.setDirectory(directory.resolve("journal").toString());
+            properties.setSnapshotIntervalMillis(0);
+            try (JournalingBookStore bookStore = new JournalingBookStore(properties)) {
+                books().forEach(bookStore::insert);
+            }
+        } else if (catalog == Catalog.IMAGE) {
+            BookImage.write(directory.resolve("books.img"), books());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        walk(directory).sorted(reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+
+    @TearDown(Level.Invocation)
+    public void stop() throws InterruptedException {
+        process.destroy();
+        process.waitFor();
+    }
+
+    @Benchmark
+    @BenchmarkMode(SingleShotTime)
+    @Measurement(iterations = 5)
+    @OutputTimeUnit(MILLISECONDS)
+    @Warmup(iterations = 1)
+    public int firstRequest() throws Exception {
+        int port = freePort();
+        process = start(port);
+        URL url = new URL("http://localhost:" + port + "/books?limit=1");
+        while (true) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("The service exited, see " + directory.resolve("service.log"));
+            }
+            try {
+                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                int status = connection.getResponseCode();
+                connection.disconnect();
+                if (status == 200) {
+                    return status;
+                }
+            } catch (IOException e) {
+                // Not listening yet.
+            }
+            MILLISECONDS.sleep(5);
+        }
+    }
+
+    private Process start(int port) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(jvm.isEmpty() ? Paths.get(System.getProperty("java.home"), "bin", "java").toString() : jvm);
+        File workingDirectory = null;
+        if (archive.isEmpty()) {
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+        } else {
+            // The classpath needs to be exactly the one the archive was recorded with.
+            command.add("-XX:SharedArchiveFile=" + Paths.get(archive).toAbsolutePath());
+            command.add("-cp");
+            command.add("books.jar" + File.pathSeparator + "lib/*");
+            workingDirectory = Paths.get(archive).toAbsolutePath().getParent().toFile();
+        }
+        command.add(Application.class.getName());
+        command.add("--server.port=" + port);
+        command.add("--book.server.startup.lazy=" + lazy);
+        if (catalog == Catalog.JOURNAL) {
+            command.add("--book.store.journal.enabled=true");
+            command.add("--book.store.journal.directory=" + directory.resolve("journal"));
+        } else if (catalog == Catalog.IMAGE) {
+            command.add("--book.store.image=" + directory.resolve("books.img"));
+        }
+
+        ProcessBuilder builder = new ProcessBuilder(command).directory(workingDirectory).redirectErrorStream(true)
+            .redirectOutput(directory.resolve("service.log").toFile());
+        // Only read by Java 9 and later, which need it for the used Spring version.
+        builder.environment().put("JDK_JAVA_OPTIONS", "--add-opens=java.base/java.lang=ALL-UNNAMED");
+        return builder.start();
+    }
+
+    private Stream<Book> books() {
+        return IntStream.range(0, size).mapToObj(i -> {
+            String digits = "978" + (100_000_000L + i);
+            return new Book(digits + Isbns.checkDigit13(digits), "Title " + i);
+        });
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Measures the latency of queries against a large catalog of synthetic titles. The words of the titles are drawn from a
+// skewed distribution, so that the index contains very common as well as very rare terms.
+@BenchmarkMode(AverageTime)
+@Fork(value = 1, jvmArgsAppend = { "-Xms3g", "-Xmx3g" })
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+public class TitleIndexBenchmark {
+
+    private static final int WORDS = 50_000;
+    private static final int WORDS_PER_TITLE = 4;
+
+    @Param({ "1000000" })
+    private int size;
+
+    private TitleIndex titleIndex;
+
+    @Setup
+    public void setup() {
+        titleIndex = new TitleIndex();
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            StringBuilder title = new StringBuilder();
+            for (int w = 0; w < WORDS_PER_TITLE; w++) {
+                title.append(word(skewed(random))).append(' ');
+            }
+            titleIndex.add(new Book(Integer.toString(i), title.toString()));
+        }
+    }
+
+    @Benchmark
+    public List<String> rareWord() {
+        return titleIndex.search(word(WORDS / 2 + ThreadLocalRandom.current().nextInt(WORDS / 2)), 10);
+    }
+
+    @Benchmark
+    public List<String> commonWord() {
+        return titleIndex.search(word(ThreadLocalRandom.current().nextInt(10)), 10);
+    }
+
+    @Benchmark
+    public List<String> prefix() {
+        return titleIndex.search(word(ThreadLocalRandom.current().nextInt(WORDS)).substring(0, 3), 10);
+    }
+
+    @Benchmark
+    public List<String> commonAndRareWord() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return titleIndex.search(word(random.nextInt(10)) + " " + word(WORDS / 2 + random.nextInt(WORDS / 2)), 10);
+    }
+
+    private static int skewed(Random random) {
+        // Squaring a uniform value favours the lower word numbers, roughly like the words of natural language titles.
+        double value = random.nextDouble();
+        return (int) (value * value * WORDS);
+    }
+
+    private static String word(int i) {
+        StringBuilder word = new StringBuilder();
+        do {
+            word.append((char) ('a' + i % 26));
+            i /= 26;
+        } while (i > 0);
+        return word.append("word").toString();
+    }
+}
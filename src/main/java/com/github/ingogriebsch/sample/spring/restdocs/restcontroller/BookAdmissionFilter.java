@@ -0,0 +1,225 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PATH_DELETE;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PATH_INSERT;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PATH_INSERT_BATCH;
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
+import static org.springframework.http.HttpMethod.DELETE;
+import static org.springframework.http.HttpMethod.POST;
+import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookServerProperties.RateLimit;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+// Guards the write endpoints so that a client flooding them can neither starve other clients nor the readers. Each client
+// gets a token bucket per endpoint, and writes are shed once too many of them are in flight or their latency is too high.
+public class BookAdmissionFilter extends OncePerRequestFilter implements MeterBinder {
+
+    private static final String METRIC_DECISIONS = "books.admission.decisions";
+    // Upper bound of the clients a bucket is kept for, evicting one only hands out a few tokens too many.
+    private static final int MAX_CLIENTS = 100_000;
+    // Weight of the latest latency in the moving average, as the reciprocal.
+    private static final int LATENCY_WEIGHT = 8;
+
+    private final RateLimit properties;
+    private final LongSupplier nanoTime;
+    private final List<Endpoint> endpoints;
+    private final Set<String> trustedProxies;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    public BookAdmissionFilter(@NonNull RateLimit properties) {
+        this(properties, System::nanoTime);
+    }
+
+    BookAdmissionFilter(@NonNull RateLimit properties, @NonNull LongSupplier nanoTime) {
+        if (properties.getPermitsPerSecond() <= 0 || properties.getBurst() < 1 || properties.getMaxInFlight() < 1) {
+            throw new IllegalArgumentException("Permits per second, burst and max in flight must be positive!");
+        }
+        this.properties = properties;
+        this.nanoTime = nanoTime;
+        this.trustedProxies = ImmutableSet.copyOf(properties.getTrustedProxies());
+        this.endpoints = ImmutableList.of(new Endpoint("insert", POST, PATH_INSERT),
+            new Endpoint("insert-batch", POST, PATH_INSERT_BATCH), new Endpoint("delete", DELETE, PATH_DELETE));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Endpoint endpoint : endpoints) {
+            FunctionCounter.builder(METRIC_DECISIONS, endpoint.allowed, LongAdder::sum).tags("endpoint", endpoint.name)
+                .tags("decision", "allowed").description("Writes admitted to the endpoint").register(registry);
+            FunctionCounter.builder(METRIC_DECISIONS, endpoint.limited, LongAdder::sum).tags("endpoint", endpoint.name)
+                .tags("decision", "limited").description("Writes rejected because the client exceeded its rate")
+                .register(registry);
+            FunctionCounter.builder(METRIC_DECISIONS, endpoint.shed, LongAdder::sum).tags("endpoint", endpoint.name)
+                .tags("decision", "shed").description("Writes rejected because the endpoint was overloaded").register(registry);
+            Gauge.builder("books.admission.in-flight", endpoint.inFlight, AtomicInteger::get).tags("endpoint", endpoint.name)
+                .description("Writes executed at the moment").register(registry);
+            TimeGauge.builder("books.admission.latency", endpoint.latency, NANOSECONDS, AtomicLong::get)
+                .tags("endpoint", endpoint.name).description("Moving average of the latency of the writes").register(registry);
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        Endpoint endpoint = endpoint(request);
+        if (endpoint == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        long start = nanoTime.getAsLong();
+        long wait = endpoint.bucket(client(request), start).tryAcquire(start);
+        if (wait > 0) {
+            endpoint.limited.increment();
+            reject(response, wait);
+            return;
+        }
+        if (!endpoint.admit()) {
+            endpoint.shed.increment();
+            reject(response, SECONDS.toNanos(1));
+            return;
+        }
+
+        endpoint.allowed.increment();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            endpoint.complete(nanoTime.getAsLong() - start);
+        }
+    }
+
+    // The client is the address which sent the request, unless it is a trusted proxy. The addresses the proxies appended to
+    // the client header are then followed from the last one, and the first one which is not a trusted proxy is the client.
+    private String client(HttpServletRequest request) {
+        String client = request.getRemoteAddr();
+        String header = properties.getClientHeader() != null ? request.getHeader(properties.getClientHeader()) : null;
+        if (header == null || !trustedProxies.contains(client)) {
+            return client;
+        }
+
+        String[] forwardedFor = header.split(",");
+        for (int i = forwardedFor.length - 1; i >= 0; i--) {
+            String address = forwardedFor[i].trim();
+            if (address.isEmpty()) {
+                break;
+            }
+            client = address;
+            if (!trustedProxies.contains(address)) {
+                break;
+            }
+        }
+        return client;
+    }
+
+    private Endpoint endpoint(HttpServletRequest request) {
+        String path = urlPathHelper.getPathWithinApplication(request);
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.method.matches(request.getMethod()) && pathMatcher.match(endpoint.path, path)) {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+
+    private static void reject(HttpServletResponse response, long wait) {
+        // Retry-After is given in whole seconds, so the wait is rounded up to not invite a retry which is rejected again.
+        response.setHeader(RETRY_AFTER, Long.toString(Math.max(1, (wait + SECONDS.toNanos(1) - 1) / SECONDS.toNanos(1))));
+        response.setStatus(TOO_MANY_REQUESTS.value());
+    }
+
+    private final class Endpoint {
+
+        private final String name;
+        private final HttpMethod method;
+        private final String path;
+        private final ConcurrentMap<String, TokenBucket> buckets;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong latency = new AtomicLong();
+        private final LongAdder allowed = new LongAdder();
+        private final LongAdder limited = new LongAdder();
+        private final LongAdder shed = new LongAdder();
+
+        Endpoint(String name, HttpMethod method, String path) {
+            this.name = name;
+            this.method = method;
+            this.path = path;
+            // A bucket which was not used for the time it takes to refill it is full again, so it can be dropped.
+            long refill = (long) (SECONDS.toNanos(1) * properties.getBurst() / properties.getPermitsPerSecond());
+            this.buckets = CacheBuilder.newBuilder().expireAfterAccess(Math.max(refill, SECONDS.toNanos(1)), NANOSECONDS)
+                .maximumSize(MAX_CLIENTS).<String, TokenBucket> build().asMap();
+        }
+
+        TokenBucket bucket(String client, long now) {
+            return buckets.computeIfAbsent(client,
+                c -> new TokenBucket(properties.getPermitsPerSecond(), properties.getBurst(), now));
+        }
+
+        boolean admit() {
+            int current = inFlight.incrementAndGet();
+            // A write is always admitted if no other one is in flight, so that the latency is measured again once the
+            // endpoint was drained and the average can recover.
+            boolean overloaded = current > properties.getMaxInFlight() || current > 1 && properties.getMaxLatencyMillis() > 0
+                && latency.get() > MILLISECONDS.toNanos(properties.getMaxLatencyMillis());
+            if (overloaded) {
+                inFlight.decrementAndGet();
+            }
+            return !overloaded;
+        }
+
+        void complete(long elapsed) {
+            inFlight.decrementAndGet();
+            latency.accumulateAndGet(elapsed, (average, sample) -> average + (sample - average) / LATENCY_WEIGHT);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_NULL;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class BookChange {
+
+    public enum Type {
+            INSERTED, DELETED, INSERTED_ALL
+    }
+
+    private long sequence;
+    private Type type;
+    private String isbn;
+    private String title;
+    // The books inserted together through a batch, only set for changes of type INSERTED_ALL which carry no isbn and title.
+    @JsonInclude(NON_NULL)
+    private List<Book> books;
+
+    public BookChange(long sequence, Type type, String isbn, String title) {
+        this(sequence, type, isbn, title, null);
+    }
+}
@@ -0,0 +1,145 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.lang.Math.min;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Optional.empty;
+import static java.util.Optional.of;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongFunction;
+
+import com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookChange.Type;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+// Bounded feed of the changes applied to the books. Writers claim a sequence number and publish the change into the slot of a
+// ring buffer without any lock, the oldest changes are overwritten once the buffer is full. Readers never block the writers,
+// a reader which fell behind by more than the capacity is told so and needs to resync.
+@Slf4j
+public class BookChangeFeed {
+
+    private final AtomicReferenceArray<BookChange> slots;
+    private final int mask;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Queue<Runnable> listeners = new ConcurrentLinkedQueue<>();
+
+    public BookChangeFeed(int capacity) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two!");
+        }
+        slots = new AtomicReferenceArray<>(capacity);
+        mask = capacity - 1;
+    }
+
+    public BookChange publish(@NonNull Type type, @NonNull Book book) {
+        return publish(next -> new BookChange(next, type, book.getIsbn(), book.getTitle()));
+    }
+
+    // Publishes the books inserted together as a single change, so that a large batch occupies a single slot.
+    public BookChange publishAll(@NonNull List<Book> books) {
+        List<Book> copy = unmodifiableList(new ArrayList<>(books));
+        return publish(next -> new BookChange(next, Type.INSERTED_ALL, null, null, copy));
+    }
+
+    public long sequence() {
+        return sequence.get();
+    }
+
+    // Returns the changes following the given sequence number or an empty optional if they are not available anymore. The
+    // changes end early if a writer did not finish to publish the next one yet.
+    public Optional<List<BookChange>> read(long since, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive!");
+        }
+
+        long last = sequence.get();
+        if (since < 0 || since > last || last - since > slots.length()) {
+            return empty();
+        }
+
+        List<BookChange> changes = new ArrayList<>((int) min(limit, last - since));
+        for (long next = since + 1; next <= last && changes.size() < limit; next++) {
+            BookChange change = slots.get(index(next));
+            if (change == null || change.getSequence() < next) {
+                break;
+            }
+            if (change.getSequence() > next) {
+                // Overwritten by a writer while reading.
+                return empty();
+            }
+            changes.add(change);
+        }
+        return of(changes);
+    }
+
+    // Runs the listener once as soon as a change following the given sequence number is published. The listener runs on the
+    // thread of the writer, so it should only hand over the work.
+    public void await(long since, @NonNull Runnable listener) {
+        listeners.add(listener);
+        // The writer might have published and polled the listeners before the listener was added. A writer which only claimed
+        // the next sequence number runs the listener itself once its change is stored, running it here would only find no
+        // changes and await them again.
+        if (published(since + 1) && listeners.remove(listener)) {
+            listener.run();
+        }
+    }
+
+    public void cancel(@NonNull Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    private BookChange publish(LongFunction<BookChange> changeFactory) {
+        long next = sequence.incrementAndGet();
+        BookChange change = changeFactory.apply(next);
+        slots.set(index(next), change);
+
+        // Only the listeners waiting so far are run, a listener awaiting this change again is run by the next writer.
+        List<Runnable> awaiting = new ArrayList<>();
+        Runnable listener;
+        while ((listener = listeners.poll()) != null) {
+            awaiting.add(listener);
+        }
+        for (Runnable waiting : awaiting) {
+            try {
+                waiting.run();
+            } catch (RuntimeException e) {
+                log.warn("Listener failed on change {}!", next, e);
+            }
+        }
+        return change;
+    }
+
+    private boolean published(long sequence) {
+        BookChange change = slots.get(index(sequence));
+        return change != null && change.getSequence() >= sequence;
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence & mask);
+    }
+}
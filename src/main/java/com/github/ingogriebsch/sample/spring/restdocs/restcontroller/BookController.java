@@ -19,18 +19,54 @@
  */
 package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
 
+import static java.lang.Long.toHexString;
+import static java.lang.System.currentTimeMillis;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyList;
+import static java.util.stream.Collectors.toList;
+
+import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+
+import static com.fasterxml.jackson.databind.SerializationFeature.FLUSH_AFTER_WRITE_VALUE;
+import static com.google.common.base.Strings.nullToEmpty;
+import static com.google.common.hash.Hashing.murmur3_128;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.springframework.http.HttpHeaders.ACCEPT;
+import static org.springframework.http.HttpHeaders.LINK;
+import static org.springframework.http.HttpHeaders.VARY;
 import static org.springframework.http.HttpStatus.CREATED;
+import static org.springframework.http.HttpStatus.GONE;
+import static org.springframework.http.MediaType.APPLICATION_JSON_UTF8;
 import static org.springframework.http.MediaType.APPLICATION_JSON_UTF8_VALUE;
 import static org.springframework.http.ResponseEntity.badRequest;
 import static org.springframework.http.ResponseEntity.notFound;
 import static org.springframework.http.ResponseEntity.ok;
 import static org.springframework.http.ResponseEntity.status;
+import static org.springframework.web.servlet.support.ServletUriComponentsBuilder.fromCurrentRequest;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
-import java.util.Set;
+import java.util.stream.Stream;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.collect.ImmutableList;
+import io.micrometer.core.annotation.Timed;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -38,7 +74,10 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
 
 @RequiredArgsConstructor
 @RestController
@@ -47,29 +86,263 @@ public class BookController {
     static final String PATH_FIND_ALL = "/books";
     static final String PATH_FIND_ONE = "/books/{isbn}";
     static final String PATH_INSERT = "/books";
+    static final String PATH_INSERT_BATCH = "/books/batch";
+    static final String PATH_SEARCH = "/books/search";
+    static final String PATH_CHANGES = "/books/changes";
     static final String PATH_DELETE = "/books/{isbn}";
 
+    static final String PARAM_AFTER = "after";
+    static final String PARAM_ISBN_PREFIX = "isbnPrefix";
+    static final String PARAM_FROM = "from";
+    static final String PARAM_TO = "to";
+    static final String PARAM_LIMIT = "limit";
+    static final String PARAM_QUERY = "q";
+    static final String PARAM_SINCE = "since";
+
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    static final String APPLICATION_CBOR_VALUE = "application/cbor";
+    static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+    private static final int FIND_ALL_DEFAULT_LIMIT = 100;
+    private static final int INSERT_BATCH_CHUNK_SIZE = 1000;
+    private static final String SEARCH_DEFAULT_LIMIT = "10";
+    private static final String CHANGES_DEFAULT_LIMIT = "1000";
+    private static final long CHANGES_TIMEOUT_MILLIS = 30 * 1000;
+    private static final String METRIC_REQUESTS = "books.requests";
+    private static final long STREAMING_TIMEOUT_MILLIS = 5 * 60 * 1000;
+    // The representations of books in the order of the produced media types, the first one is the default.
+    private static final List<MediaType> BOOK_MEDIA_TYPES = ImmutableList.of(APPLICATION_JSON_UTF8,
+        MediaType.valueOf(APPLICATION_CBOR_VALUE), MediaType.valueOf(APPLICATION_SMILE_VALUE));
+    private static final List<MediaType> BOOK_STREAM_MEDIA_TYPES = ImmutableList.of(MediaType.valueOf(APPLICATION_NDJSON_VALUE));
+
     @NonNull
     private final BookService bookService;
+    @NonNull
+    private final ObjectMapper objectMapper;
+
+    // Distinguishes the versions of the store between restarts of the service.
+    private final String epoch = toHexString(currentTimeMillis());
+
+    @Timed(value = METRIC_REQUESTS, extraTags = { "operation", "find-all" }, histogram = true)
+    @GetMapping(path = PATH_FIND_ALL, produces = { APPLICATION_JSON_UTF8_VALUE, APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE })
+    public ResponseEntity<Collection<Book>> findAll(@RequestParam(name = PARAM_AFTER, required = false) String after,
+        @RequestParam(name = PARAM_LIMIT, required = false) Integer limit,
+        @RequestParam(name = PARAM_ISBN_PREFIX, required = false) String isbnPrefix,
+        @RequestParam(name = PARAM_FROM, required = false) String from,
+        @RequestParam(name = PARAM_TO, required = false) String to, WebRequest request, HttpServletResponse response) {
+        IsbnRange range = IsbnRange.of(isbnPrefix, from, to);
+        response.addHeader(VARY, ACCEPT);
+        // The version is read before any book, so the books returned are at least as new as the entity tag labeling them.
+        if (request.checkNotModified(etag(bookService.version(), negotiate(request, BOOK_MEDIA_TYPES)))) {
+            return null;
+        }
+
+        if (after == null && limit == null) {
+            if (range.equals(IsbnRange.ALL)) {
+                return ok(bookService.snapshot().stream().collect(toList()));
+            }
+            return ok(bookService.streamAll(range).collect(toList()));
+        }
+        // A page following another one is as large as the default page if no limit is given.
+        int pageSize = limit != null ? limit : FIND_ALL_DEFAULT_LIMIT;
+        if (pageSize < 1) {
+            return badRequest().build();
+        }
+
+        List<Book> books = bookService.findAll(range, after, pageSize);
+        if (books.size() < pageSize) {
+            return ok(books);
+        }
+
+        String next = fromCurrentRequest().replaceQueryParam(PARAM_AFTER, books.get(books.size() - 1).getIsbn()).build().encode()
+            .toUriString();
+        return ok().header(LINK, "<" + next + ">; rel=\"next\"").body(books);
+    }
+
+    @Timed(value = METRIC_REQUESTS, extraTags = { "operation", "find-all-streamed" }, histogram = true)
+    @GetMapping(path = PATH_FIND_ALL, produces = APPLICATION_NDJSON_VALUE)
+    public void findAllStreamed(@RequestParam(name = PARAM_LIMIT, required = false) Integer limit,
+        @RequestParam(name = PARAM_ISBN_PREFIX, required = false) String isbnPrefix,
+        @RequestParam(name = PARAM_FROM, required = false) String from,
+        @RequestParam(name = PARAM_TO, required = false) String to, WebRequest request, HttpServletRequest servletRequest,
+        HttpServletResponse response) throws IOException {
+        if (limit != null && limit < 1) {
+            response.sendError(SC_BAD_REQUEST);
+            return;
+        }
+        response.addHeader(VARY, ACCEPT);
+        if (request.checkNotModified(etag(bookService.version(), negotiate(request, BOOK_STREAM_MEDIA_TYPES)))) {
+            return;
+        }
+
+        response.setContentType(APPLICATION_NDJSON_VALUE);
+        Stream<Book> stream = bookService.streamAll(IsbnRange.of(isbnPrefix, from, to));
+        Iterator<Book> books = (limit != null ? stream.limit(limit) : stream).iterator();
+        if (servletRequest.isAsyncSupported() && supportsNonBlockingIo(servletRequest.getServletContext())) {
+            AsyncContext asyncContext = servletRequest.startAsync();
+            asyncContext.setTimeout(STREAMING_TIMEOUT_MILLIS);
+            ServletOutputStream outputStream = response.getOutputStream();
+            outputStream.setWriteListener(
+                new BookStreamWriteListener(asyncContext, outputStream, books, objectMapper.writerFor(Book.class)));
+            return;
+        }
+
+        ObjectWriter writer = objectMapper.writerFor(Book.class).without(FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.setRootValueSeparator(null);
+            while (books.hasNext()) {
+                writer.writeValue(generator, books.next());
+                generator.writeRaw('\n');
+            }
+        }
+    }
+
+    @Timed(value = METRIC_REQUESTS, extraTags = { "operation", "search" }, histogram = true)
+    @GetMapping(path = PATH_SEARCH, produces = { APPLICATION_JSON_UTF8_VALUE, APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE })
+    public ResponseEntity<List<Book>> search(@RequestParam(PARAM_QUERY) String query,
+        @RequestParam(name = PARAM_LIMIT, defaultValue = SEARCH_DEFAULT_LIMIT) int limit) {
+        if (isBlank(query) || limit < 1) {
+            return badRequest().build();
+        }
+        return ok(bookService.search(query, limit));
+    }
+
+    @Timed(value = METRIC_REQUESTS, extraTags = { "operation", "changes" }, histogram = true)
+    @GetMapping(path = PATH_CHANGES, produces = { APPLICATION_JSON_UTF8_VALUE, APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE })
+    public DeferredResult<ResponseEntity<BookChanges>> changes(@RequestParam(name = PARAM_SINCE, required = false) Long since,
+        @RequestParam(name = PARAM_LIMIT, defaultValue = CHANGES_DEFAULT_LIMIT) int limit) {
+        DeferredResult<ResponseEntity<BookChanges>> result = new DeferredResult<>(CHANGES_TIMEOUT_MILLIS);
+        if (limit < 1 || since != null && since < 0) {
+            result.setResult(badRequest().build());
+            return result;
+        }
+        if (since == null) {
+            // Tells the client where to start reading the changes from.
+            result.setResult(ok(new BookChanges(bookService.changeSequence(), emptyList())));
+            return result;
+        }
+
+        // Waits for changes if there are none yet, the request is answered without any changes once the timeout is reached.
+        Runnable listener = new Runnable() {
 
-    @GetMapping(path = PATH_FIND_ALL, produces = APPLICATION_JSON_UTF8_VALUE)
-    public Set<Book> findAll() {
-        return bookService.findAll();
+            @Override
+            public void run() {
+                if (!result.isSetOrExpired() && !changes(result, since, limit)) {
+                    bookService.awaitChanges(since, this);
+                }
+            }
+        };
+        result.onTimeout(() -> {
+            bookService.cancelAwaitChanges(listener);
+            result.setResult(ok(new BookChanges(since, emptyList())));
+        });
+        if (!changes(result, since, limit)) {
+            bookService.awaitChanges(since, listener);
+        }
+        return result;
     }
 
-    @GetMapping(path = PATH_FIND_ONE, produces = APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<Book> findOne(@PathVariable String isbn) {
-        return bookService.findOne(isbn).map(ResponseEntity::ok).orElse(notFound().build());
+    @Timed(value = METRIC_REQUESTS, extraTags = { "operation", "find-one" }, histogram = true)
+    @GetMapping(path = PATH_FIND_ONE, produces = { APPLICATION_JSON_UTF8_VALUE, APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE })
+    public ResponseEntity<Book> findOne(@PathVariable String isbn, WebRequest request, HttpServletResponse response) {
+        Optional<Book> book = bookService.findOne(isbn);
+        if (!book.isPresent()) {
+            return notFound().build();
+        }
+        response.addHeader(VARY, ACCEPT);
+        return request.checkNotModified(etag(book.get(), negotiate(request, BOOK_MEDIA_TYPES))) ? null : ok(book.get());
     }
 
-    @PostMapping(path = PATH_INSERT, produces = APPLICATION_JSON_UTF8_VALUE, consumes = APPLICATION_JSON_UTF8_VALUE)
+    @Timed(value = METRIC_REQUESTS, extraTags = { "operation", "insert" }, histogram = true)
+    @PostMapping(path = PATH_INSERT, produces = { APPLICATION_JSON_UTF8_VALUE, APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE },
+        consumes = { APPLICATION_JSON_UTF8_VALUE, APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE })
     public ResponseEntity<Book> insert(@RequestBody @Validated BookInsert bookInsert) {
         Optional<Book> inserted = bookService.insert(bookInsert);
         return inserted.isPresent() ? status(CREATED).body(inserted.get()) : badRequest().build();
     }
 
+    @Timed(value = METRIC_REQUESTS, extraTags = { "operation", "insert-batch" }, histogram = true)
+    @PostMapping(path = PATH_INSERT_BATCH,
+        produces = { APPLICATION_JSON_UTF8_VALUE, APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE },
+        consumes = { APPLICATION_JSON_UTF8_VALUE, APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE })
+    public List<BookInsertResult> insertAll(@RequestBody List<BookInsert> bookInserts) {
+        return bookService.insertAll(bookInserts);
+    }
+
+    @Timed(value = METRIC_REQUESTS, extraTags = { "operation", "insert-batch-streamed" }, histogram = true)
+    @PostMapping(path = PATH_INSERT_BATCH,
+        produces = { APPLICATION_JSON_UTF8_VALUE, APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE },
+        consumes = APPLICATION_NDJSON_VALUE)
+    public List<BookInsertResult> insertAllStreamed(HttpServletRequest request) throws IOException {
+        List<BookInsertResult> results = new ArrayList<>();
+        try (MappingIterator<BookInsert> bookInserts =
+            objectMapper.readerFor(BookInsert.class).readValues(request.getInputStream())) {
+            List<BookInsert> chunk = new ArrayList<>(INSERT_BATCH_CHUNK_SIZE);
+            while (bookInserts.hasNextValue()) {
+                chunk.add(bookInserts.nextValue());
+                if (chunk.size() == INSERT_BATCH_CHUNK_SIZE) {
+                    results.addAll(bookService.insertAll(chunk));
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                results.addAll(bookService.insertAll(chunk));
+            }
+        }
+        return results;
+    }
+
+    @Timed(value = METRIC_REQUESTS, extraTags = { "operation", "delete" }, histogram = true)
     @DeleteMapping(path = PATH_DELETE)
     public ResponseEntity<Void> delete(@PathVariable String isbn) {
         return bookService.delete(isbn) ? ok().build() : notFound().build();
     }
+
+    private boolean changes(DeferredResult<ResponseEntity<BookChanges>> result, long since, int limit) {
+        Optional<List<BookChange>> changes = bookService.changes(since, limit);
+        if (!changes.isPresent()) {
+            // The changes are not available anymore, the client needs to read all books again.
+            return result.setResult(status(GONE).build());
+        }
+        if (changes.get().isEmpty()) {
+            return false;
+        }
+
+        List<BookChange> list = changes.get();
+        return result.setResult(ok(new BookChanges(list.get(list.size() - 1).getSequence(), list)));
+    }
+
+    private static boolean supportsNonBlockingIo(ServletContext servletContext) {
+        // Non-blocking IO was introduced with Servlet 3.1.
+        return servletContext.getMajorVersion() > 3
+            || servletContext.getMajorVersion() == 3 && servletContext.getMinorVersion() >= 1;
+    }
+
+    // Picks the representation Spring MVC writes the response in, which is the first one of the producible media types the
+    // most specific accepted media type is compatible with.
+    private static MediaType negotiate(WebRequest request, List<MediaType> producible) {
+        String accept = request.getHeader(ACCEPT);
+        List<MediaType> accepted = isBlank(accept) ? new ArrayList<>() : MediaType.parseMediaTypes(accept);
+        MediaType.sortBySpecificityAndQuality(accepted);
+        for (MediaType mediaType : accepted) {
+            for (MediaType candidate : producible) {
+                if (mediaType.isCompatibleWith(candidate)) {
+                    return candidate;
+                }
+            }
+        }
+        return producible.get(0);
+    }
+
+    // The entity tags name the representation, so that a client switching it is never told that it still has the current
+    // one. They are weak, because a compressed response carries the same tag.
+    private String etag(long version, MediaType mediaType) {
+        return "W/\"" + epoch + "-" + toHexString(version) + "-" + mediaType.getSubtype() + "\"";
+    }
+
+    private static String etag(Book book, MediaType mediaType) {
+        return "W/\""
+            + murmur3_128().newHasher().putString(book.getIsbn(), UTF_8).putString(nullToEmpty(book.getTitle()), UTF_8).hash()
+            + "-" + mediaType.getSubtype() + "\"";
+    }
 }
@@ -0,0 +1,161 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.lang.Math.ceil;
+import static java.lang.Math.log;
+import static java.lang.Math.max;
+import static java.lang.Math.pow;
+import static java.lang.Math.round;
+import static java.lang.Math.toIntExact;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.NonNull;
+
+// A counting Bloom filter over the isbns of the store. Every isbn increments k of m counters, so a delete decrements them
+// again instead of rebuilding the filter. An isbn with any of its counters at zero is certainly not stored, otherwise it
+// might be. The four bit counters are packed into longs and updated through compare and swap, so neither readers nor
+// writers lock.
+final class BookFilter {
+
+    private static final int COUNTER_BITS = 4;
+    private static final int COUNTERS_PER_WORD = Long.SIZE / COUNTER_BITS;
+    // A counter which overflowed does not know how many isbns it counts anymore, it therefore sticks at its maximum.
+    private static final long SATURATED = (1L << COUNTER_BITS) - 1;
+
+    private final AtomicLongArray words;
+    private final long counters;
+    private final int hashes;
+    private final LongAdder occupied = new LongAdder();
+
+    BookFilter(long expectedBooks, double falsePositiveRate) {
+        if (expectedBooks < 1) {
+            throw new IllegalArgumentException("Expected books must be positive!");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1!");
+        }
+        long m = (long) ceil(-expectedBooks * log(falsePositiveRate) / (log(2) * log(2)));
+        words = new AtomicLongArray(toIntExact((m + COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD));
+        counters = (long) words.length() * COUNTERS_PER_WORD;
+        hashes = max(1, (int) round((double) m / expectedBooks * log(2)));
+    }
+
+    boolean mightContain(@NonNull String isbn) {
+        long hash = hash(isbn);
+        for (int i = 0; i < hashes; i++) {
+            if (counter(index(hash, i)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void add(@NonNull String isbn) {
+        long hash = hash(isbn);
+        for (int i = 0; i < hashes; i++) {
+            increment(index(hash, i));
+        }
+    }
+
+    void remove(@NonNull String isbn) {
+        long hash = hash(isbn);
+        for (int i = 0; i < hashes; i++) {
+            decrement(index(hash, i));
+        }
+    }
+
+    // The probability that an isbn which is not stored finds all of its counters occupied.
+    double falsePositiveRate() {
+        return pow((double) occupied.sum() / counters, hashes);
+    }
+
+    long memoryFootprint() {
+        return (long) words.length() * Long.BYTES;
+    }
+
+    private long counter(long index) {
+        return words.get((int) (index / COUNTERS_PER_WORD)) >>> shift(index) & SATURATED;
+    }
+
+    private void increment(long index) {
+        int word = (int) (index / COUNTERS_PER_WORD);
+        int shift = shift(index);
+        while (true) {
+            long value = words.get(word);
+            long counter = value >>> shift & SATURATED;
+            if (counter == SATURATED) {
+                return;
+            }
+            if (words.compareAndSet(word, value, value + (1L << shift))) {
+                if (counter == 0) {
+                    occupied.increment();
+                }
+                return;
+            }
+        }
+    }
+
+    private void decrement(long index) {
+        int word = (int) (index / COUNTERS_PER_WORD);
+        int shift = shift(index);
+        while (true) {
+            long value = words.get(word);
+            long counter = value >>> shift & SATURATED;
+            if (counter == 0 || counter == SATURATED) {
+                return;
+            }
+            if (words.compareAndSet(word, value, value - (1L << shift))) {
+                if (counter == 1) {
+                    occupied.decrement();
+                }
+                return;
+            }
+        }
+    }
+
+    // The k indexes are derived from the two halves of a single hash, which is as good as k independent hashes. The step is
+    // odd, so that it is never zero and the k indexes of an isbn do not fall onto the same counter.
+    private long index(long hash, int i) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return ((h1 + (long) i * h2) & Long.MAX_VALUE) % counters;
+    }
+
+    private static int shift(long index) {
+        return (int) (index % COUNTERS_PER_WORD) * COUNTER_BITS;
+    }
+
+    // FNV-1a over the characters followed by the finalizer of MurmurHash3, which spreads the similar isbns over all bits.
+    private static long hash(String isbn) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < isbn.length(); i++) {
+            hash = (hash ^ isbn.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
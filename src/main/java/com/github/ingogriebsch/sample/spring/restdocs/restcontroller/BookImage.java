@@ -0,0 +1,144 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.Spliterator.ORDERED;
+import static java.util.Spliterators.spliteratorUnknownSize;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+// A read-only file holding a catalog of books which is mapped into memory and loaded straight into a store on startup. The
+// books are trusted to be valid and canonical, so loading them skips everything an insert through the service does.
+@Slf4j
+public final class BookImage {
+
+    private static final int MAGIC = 0x424F4F49;
+    private static final int VERSION = 1;
+    // Magic, version and the number of books.
+    private static final int HEADER_SIZE = 16;
+
+    private BookImage() {
+    }
+
+    public static long write(@NonNull Path file, @NonNull Stream<Book> books) throws IOException {
+        long count = 0;
+        try (FileOutputStream stream = new FileOutputStream(file.toFile());
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(0);
+            for (Iterator<Book> iterator = books.iterator(); iterator.hasNext();) {
+                Book book = iterator.next();
+                write(output, book.getIsbn());
+                write(output, book.getTitle());
+                count++;
+            }
+            output.flush();
+            stream.getFD().sync();
+        }
+        // The count is written last and only once the books are durable, so an image which was not written completely is never
+        // loaded.
+        try (RandomAccessFile output = new RandomAccessFile(file.toFile(), "rw")) {
+            output.seek(8);
+            output.writeLong(count);
+            output.getFD().sync();
+        }
+        return count;
+    }
+
+    public static long load(@NonNull Path file, @NonNull BookStore bookStore) throws IOException {
+        long started = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Image '" + file + "' is too large to be mapped at once!");
+            }
+            MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Image '" + file + "' is not valid!");
+            }
+
+            long count = buffer.getLong();
+            if (count == 0 && buffer.hasRemaining()) {
+                throw new IOException("Image '" + file + "' is not complete!");
+            }
+            try {
+                for (long i = 0; i < count; i++) {
+                    bookStore.insert(new Book(read(file, buffer), read(file, buffer)));
+                }
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Image '" + file + "' is truncated!", e);
+            }
+
+            log.info("Loaded {} books from image '{}' in {} ms.", count, file, (System.nanoTime() - started) / 1_000_000);
+            return count;
+        }
+    }
+
+    // Builds an image from books given as newline delimited JSON, e.g. as returned by GET /books.
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: BookImage <books.ndjson> <books.img>");
+            System.exit(1);
+        }
+        try (InputStream input = Files.newInputStream(Paths.get(args[0]));
+            MappingIterator<Book> books = new ObjectMapper().readerFor(Book.class).readValues(input)) {
+            long count = write(Paths.get(args[1]), StreamSupport.stream(spliteratorUnknownSize(books, ORDERED), false));
+            System.out.println("Wrote " + count + " books to '" + args[1] + "'.");
+        }
+    }
+
+    private static void write(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String read(Path file, MappedByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Image '" + file + "' is corrupt!");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,49 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.NonNull;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(BookImportProperties.class)
+public class BookImportConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "book.import", name = "file")
+    public BookImporter bookImporter(@NonNull BookImportProperties properties,
+        @NonNull BookReplicationProperties replicationProperties, @NonNull BookService bookService,
+        @NonNull ObjectMapper objectMapper) {
+        if (replicationProperties.getLeaderUrl() != null) {
+            throw new IllegalStateException("A replica receives the books of its leader and can not import books itself!");
+        }
+        return new BookImporter(properties, bookService, objectMapper);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "book.import", name = "file")
+    public BookImportFilter bookImportFilter(@NonNull BookImporter bookImporter) {
+        return new BookImportFilter(bookImporter);
+    }
+}
@@ -0,0 +1,65 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PATH_FIND_ALL;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookImporter.State.COMPLETED;
+import static org.springframework.http.HttpHeaders.WARNING;
+import static org.springframework.http.HttpMethod.GET;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import lombok.NonNull;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+// Reads are answered while the books are imported, the warning tells the clients that the books they get might be incomplete.
+public class BookImportFilter extends OncePerRequestFilter {
+
+    static final String INCOMPLETE = "199 - \"Books are still being imported, the answer might be incomplete\"";
+
+    private final BookImporter importer;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    public BookImportFilter(@NonNull BookImporter importer) {
+        this.importer = importer;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        if (!COMPLETED.equals(importer.state()) && isRead(request)) {
+            response.setHeader(WARNING, INCOMPLETE);
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private boolean isRead(HttpServletRequest request) {
+        String path = urlPathHelper.getPathWithinApplication(request);
+        return GET.matches(request.getMethod()) && (PATH_FIND_ALL.equals(path) || pathMatcher.match(PATH_FIND_ALL + "/**", path));
+    }
+}
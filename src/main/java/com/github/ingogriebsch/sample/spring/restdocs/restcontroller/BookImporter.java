@@ -0,0 +1,333 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.lang.Math.min;
+import static java.lang.System.nanoTime;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Locale.ROOT;
+import static java.util.concurrent.ForkJoinPool.defaultForkJoinWorkerThreadFactory;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.io.CountingInputStream;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+
+// Imports a catalog in the background while the service already answers requests with the books imported so far. A reader
+// splits the file into batches of lines which the workers of a fork join pool parse, validate and insert, so the import
+// scales with the cores instead of being bound to the single thread reading the file.
+@Slf4j
+public class BookImporter implements HealthIndicator, MeterBinder, AutoCloseable {
+
+    public enum State {
+            IMPORTING, COMPLETED, FAILED
+    }
+
+    private final BookImportProperties properties;
+    private final BookService bookService;
+    private final ObjectReader objectReader;
+    private final Path file;
+    private final boolean csv;
+    private final LongAdder created = new LongAdder();
+    private final LongAdder duplicated = new LongAdder();
+    private final LongAdder invalid = new LongAdder();
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+    private final CompletableFuture<State> completion = new CompletableFuture<>();
+    private volatile State state = State.IMPORTING;
+    private volatile long size;
+    private volatile long read;
+    private volatile long started;
+    private volatile long finished;
+    private Thread thread;
+    private ForkJoinPool pool;
+
+    public BookImporter(@NonNull BookImportProperties properties, @NonNull BookService bookService,
+        @NonNull ObjectMapper objectMapper) {
+        if (properties.getFile() == null) {
+            throw new IllegalArgumentException("The file to import the books from is needed!");
+        }
+        if (properties.getParallelism() < 1 || properties.getBatchSize() < 1) {
+            throw new IllegalArgumentException("Parallelism and batch size must be positive!");
+        }
+        this.properties = properties;
+        this.bookService = bookService;
+        this.objectReader = objectMapper.readerFor(BookInsert.class);
+        this.file = Paths.get(properties.getFile());
+        this.csv = file.getFileName().toString().toLowerCase(ROOT).endsWith(".csv");
+    }
+
+    public State state() {
+        return state;
+    }
+
+    // Lines processed so far, whether the book was inserted, already available or invalid.
+    public long processed() {
+        return created.sum() + duplicated.sum() + invalid.sum();
+    }
+
+    // Share of the file read so far, the lines read last might still be processed.
+    public double progress() {
+        if (state == State.COMPLETED) {
+            return 1;
+        }
+        long size = this.size;
+        return size > 0 ? min(1, (double) read / size) : 0;
+    }
+
+    // Lines processed per second since the import started.
+    public double throughput() {
+        long started = this.started;
+        if (started == 0) {
+            return 0;
+        }
+        long elapsed = (finished != 0 ? finished : nanoTime()) - started;
+        return elapsed > 0 ? processed() * 1e9 / elapsed : 0;
+    }
+
+    public synchronized CompletableFuture<State> start() {
+        if (thread != null) {
+            throw new IllegalStateException("The import is already started!");
+        }
+        pool = new ForkJoinPool(properties.getParallelism(), BookImporter::worker, null, false);
+        thread = new Thread(this::importAll, "book-importer");
+        thread.setDaemon(true);
+        thread.start();
+        return completion;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder health;
+        switch (state) {
+            case COMPLETED:
+                health = Health.up();
+                break;
+            case FAILED:
+                health = Health.down().withDetail("error", String.valueOf(failure.get()));
+                break;
+            default:
+                // Not ready yet, the books answered with might be incomplete.
+                health = Health.outOfService();
+        }
+        return health.withDetail("file", file.toString()).withDetail("books", processed()).withDetail("progress", progress())
+            .withDetail("throughput", throughput()).build();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("books.import.books", created, LongAdder::sum).tag("status", "created")
+            .description("Books of the import which are processed").register(registry);
+        FunctionCounter.builder("books.import.books", duplicated, LongAdder::sum).tag("status", "duplicate")
+            .description("Books of the import which are processed").register(registry);
+        FunctionCounter.builder("books.import.books", invalid, LongAdder::sum).tag("status", "invalid")
+            .description("Books of the import which are processed").register(registry);
+        Gauge.builder("books.import.progress", this, BookImporter::progress).description("Share of the import file read so far")
+            .register(registry);
+        Gauge.builder("books.import.throughput", this, BookImporter::throughput).baseUnit("books/s")
+            .description("Books of the import processed per second").register(registry);
+    }
+
+    private void importAll() {
+        started = nanoTime();
+        log.info("Importing the books of '{}' with {} workers...", file, properties.getParallelism());
+        try {
+            size = Files.size(file);
+            read();
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+            finish(State.COMPLETED);
+            log.info("Imported {} books of '{}' in {} ms ({} books/s), {} of them were already available and {} invalid...",
+                processed(), file, NANOSECONDS.toMillis(finished - started), (long) throughput(), duplicated.sum(),
+                invalid.sum());
+        } catch (Exception e) {
+            failure.compareAndSet(null, e);
+            finish(State.FAILED);
+            log.error("Importing the books of '{}' failed after {} books!", file, processed(), e);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void read() throws IOException, InterruptedException {
+        // Bounds the lines which are read but not yet processed, the reader is usually faster than the workers.
+        int permits = 2 * properties.getParallelism();
+        Semaphore batches = new Semaphore(permits);
+        long interval = MILLISECONDS.toNanos(properties.getProgressIntervalMillis());
+        long reported = nanoTime();
+
+        try (CountingInputStream input = new CountingInputStream(Files.newInputStream(file));
+            BufferedReader reader = new BufferedReader(new InputStreamReader(input, UTF_8))) {
+            List<String> lines = new ArrayList<>(properties.getBatchSize());
+            boolean first = true;
+            String line;
+            while ((line = reader.readLine()) != null && failure.get() == null) {
+                read = input.getCount();
+                if (first && csv && isHeader(line)) {
+                    first = false;
+                    continue;
+                }
+                first = false;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                lines.add(line);
+                if (lines.size() == properties.getBatchSize()) {
+                    submit(lines, batches);
+                    lines = new ArrayList<>(properties.getBatchSize());
+                }
+                if (nanoTime() - reported > interval) {
+                    reported = nanoTime();
+                    log.info("Imported {} books of '{}' so far, {}% of the file are read ({} books/s)...", processed(), file,
+                        (long) (progress() * 100), (long) throughput());
+                }
+            }
+            if (!lines.isEmpty()) {
+                submit(lines, batches);
+            }
+            // Waits until the workers processed all batches.
+            batches.acquire(permits);
+        }
+    }
+
+    private void submit(List<String> lines, Semaphore batches) throws InterruptedException {
+        batches.acquire();
+        try {
+            pool.execute(() -> {
+                try {
+                    insert(lines);
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    batches.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            batches.release();
+            throw e;
+        }
+    }
+
+    private void insert(List<String> lines) {
+        List<BookInsert> bookInserts = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            bookInserts.add(csv ? parseCsv(line) : parseJson(line));
+        }
+        // Lines which can not be parsed are handed in as null and counted as invalid along with the ones failing validation.
+        for (BookInsertResult result : bookService.insertAll(bookInserts)) {
+            switch (result.getStatus()) {
+                case CREATED:
+                    created.increment();
+                    break;
+                case DUPLICATE:
+                    duplicated.increment();
+                    break;
+                default:
+                    invalid.increment();
+            }
+        }
+    }
+
+    private void finish(State state) {
+        finished = nanoTime();
+        this.state = state;
+        completion.complete(state);
+    }
+
+    private BookInsert parseJson(String line) {
+        try {
+            return objectReader.readValue(line);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static BookInsert parseCsv(String line) {
+        List<String> fields = fields(line);
+        return fields.size() == 2 ? new BookInsert(fields.get(0).trim(), fields.get(1).trim()) : null;
+    }
+
+    private static boolean isHeader(String line) {
+        return "isbn".equalsIgnoreCase(fields(line).get(0).trim());
+    }
+
+    // Splits a line of a CSV file into its fields. A field might be quoted to contain commas, a quote inside of it is doubled.
+    static List<String> fields(String line) {
+        List<String> fields = new ArrayList<>(2);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted && c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                field.append(c);
+                i++;
+            } else if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static ForkJoinWorkerThread worker(ForkJoinPool pool) {
+        ForkJoinWorkerThread worker = defaultForkJoinWorkerThreadFactory.newThread(pool);
+        worker.setName("book-importer-" + worker.getPoolIndex());
+        return worker;
+    }
+}
@@ -19,7 +19,7 @@
  */
 package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
 
-import javax.validation.constraints.Pattern;
+import javax.validation.constraints.NotNull;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -31,7 +31,8 @@ import org.hibernate.validator.constraints.NotBlank;
 @Data
 public class BookInsert {
 
-    @Pattern(regexp = "[0-9]{10}")
+    @Isbn
+    @NotNull
     private String isbn;
     @NotBlank
     private String title;
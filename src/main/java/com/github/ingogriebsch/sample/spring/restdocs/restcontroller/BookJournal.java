@@ -0,0 +1,221 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookStoreProperties.Journal.FsyncPolicy;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+class BookJournal implements Closeable {
+
+    private static final byte INSERT = 1;
+    private static final byte DELETE = 2;
+    // Each record starts with the length and the checksum of its payload so that a torn write is detected during replay.
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final FileChannel channel;
+    private final int segmentSize;
+    private final FsyncPolicy fsyncPolicy;
+    private final int fsyncBatchSize;
+    // Not a monitor, because a virtual thread waiting for the force would otherwise pin its carrier thread.
+    private final Lock forceLock = new ReentrantLock();
+
+    private MappedByteBuffer segment;
+    private long segmentOffset;
+    private long appended;
+    private volatile long forced;
+    private boolean closed;
+
+    BookJournal(Path file, int segmentSize, FsyncPolicy fsyncPolicy, int fsyncBatchSize) throws IOException {
+        this.channel = FileChannel.open(file, CREATE_NEW, READ, WRITE);
+        this.segmentSize = segmentSize;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncBatchSize = fsyncBatchSize;
+        this.segment = channel.map(READ_WRITE, 0, segmentSize);
+    }
+
+    synchronized long insert(Book book) throws IOException {
+        return append(INSERT, book.getIsbn(), book.getTitle());
+    }
+
+    synchronized long delete(String isbn) throws IOException {
+        return append(DELETE, isbn, "");
+    }
+
+    // Replaying the delete and the insert of the book replaces it.
+    synchronized long replace(Book book) throws IOException {
+        append(DELETE, book.getIsbn(), "");
+        return append(INSERT, book.getIsbn(), book.getTitle());
+    }
+
+    // Writers which have to wait for their record are grouped so that a single force covers all of them.
+    void sync(long sequence) {
+        if (FsyncPolicy.ALWAYS.equals(fsyncPolicy) || FsyncPolicy.BATCH.equals(fsyncPolicy) && sequence % fsyncBatchSize == 0) {
+            force(sequence);
+        }
+    }
+
+    void force() {
+        long sequence;
+        synchronized (this) {
+            sequence = appended;
+        }
+        force(sequence);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        segment.force();
+        forced = appended;
+        channel.close();
+    }
+
+    static long replay(Path file, BookStore bookStore) throws IOException {
+        long records = 0;
+        long remaining = Files.size(file);
+        CRC32 crc = new CRC32();
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                int length = input.readInt();
+                if (length <= 0) {
+                    break;
+                }
+                // A torn or corrupt length is checked before the payload is allocated, it can not exceed the journal.
+                remaining -= RECORD_HEADER_SIZE;
+                if (length > remaining) {
+                    log.warn("Journal '{}' contains a corrupt record after {} records. Ignoring the rest of it!", file, records);
+                    break;
+                }
+                remaining -= length;
+
+                int checksum = input.readInt();
+                byte[] payload = new byte[length];
+                input.readFully(payload);
+
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    log.warn("Journal '{}' contains a corrupt record after {} records. Ignoring the rest of it!", file, records);
+                    break;
+                }
+
+                apply(ByteBuffer.wrap(payload), bookStore);
+                records++;
+            }
+        } catch (EOFException e) {
+            log.warn("Journal '{}' ends with an incomplete record after {} records. Ignoring it!", file, records);
+        }
+        return records;
+    }
+
+    private long append(byte type, String isbn, String title) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Journal is already closed!");
+        }
+
+        byte[] isbnBytes = isbn.getBytes(UTF_8);
+        byte[] titleBytes = title.getBytes(UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(1 + 2 + isbnBytes.length + 4 + titleBytes.length);
+        payload.put(type).putShort((short) isbnBytes.length).put(isbnBytes).putInt(titleBytes.length).put(titleBytes);
+
+        CRC32 crc = new CRC32();
+        crc.update(payload.array());
+
+        if (segment.remaining() < RECORD_HEADER_SIZE + payload.capacity()) {
+            roll(RECORD_HEADER_SIZE + payload.capacity());
+        }
+        segment.putInt(payload.capacity()).putInt((int) crc.getValue()).put(payload.array());
+        return ++appended;
+    }
+
+    private void roll(int required) throws IOException {
+        // Everything written into the current segment needs to be durable before it is left behind.
+        segment.force();
+        segmentOffset += segment.position();
+        segment = channel.map(READ_WRITE, segmentOffset, Math.max(segmentSize, required));
+    }
+
+    private void force(long sequence) {
+        if (forced >= sequence) {
+            return;
+        }
+
+        forceLock.lock();
+        try {
+            if (forced >= sequence) {
+                return;
+            }
+
+            long target;
+            MappedByteBuffer current;
+            synchronized (this) {
+                target = appended;
+                current = segment;
+            }
+            current.force();
+            forced = target;
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    private static void apply(ByteBuffer payload, BookStore bookStore) {
+        byte type = payload.get();
+        String isbn = string(payload, payload.getShort());
+        String title = string(payload, payload.getInt());
+
+        if (type == INSERT) {
+            bookStore.insert(new Book(isbn, title));
+        } else if (type == DELETE) {
+            bookStore.delete(isbn);
+        }
+    }
+
+    private static String string(ByteBuffer buffer, int length) {
+        String value = new String(buffer.array(), buffer.position(), length, UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
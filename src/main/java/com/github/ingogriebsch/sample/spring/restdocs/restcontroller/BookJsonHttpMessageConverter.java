@@ -0,0 +1,145 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_JSON_UTF8;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Iterator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+@Component
+public class BookJsonHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> implements MeterBinder {
+
+    private final LoadingCache<Book, byte[]> cache;
+
+    public BookJsonHttpMessageConverter(@NonNull ObjectMapper objectMapper,
+        @Value("${book.json-cache.maximum-size:67108864}") long maximumSize) {
+        super(APPLICATION_JSON_UTF8, APPLICATION_JSON);
+
+        ObjectWriter writer = objectMapper.writerFor(Book.class);
+        // Books never change after they are inserted, therefore the book itself is the key and no invalidation is necessary.
+        cache = CacheBuilder.newBuilder().maximumWeight(maximumSize).weigher((Book book, byte[] json) -> json.length)
+            .recordStats().build(CacheLoader.from(book -> {
+                try {
+                    return writer.writeValueAsBytes(book);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        GuavaCacheMetrics.monitor(registry, cache, "books.json-cache");
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        return (Book.class.isAssignableFrom(clazz) || isBookCollection(type, clazz)) && canWrite(mediaType);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return false;
+    }
+
+    @Override
+    protected Object readInternal(Class<? extends Object> clazz, HttpInputMessage inputMessage)
+        throws IOException, HttpMessageNotReadableException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected Long getContentLength(Object object, MediaType contentType) throws IOException {
+        return object instanceof Book ? (long) json((Book) object).length : null;
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+        OutputStream body = outputMessage.getBody();
+        if (object instanceof Book) {
+            body.write(json((Book) object));
+            return;
+        }
+
+        body.write('[');
+        for (Iterator<?> books = ((Collection<?>) object).iterator(); books.hasNext();) {
+            body.write(json((Book) books.next()));
+            if (books.hasNext()) {
+                body.write(',');
+            }
+        }
+        body.write(']');
+    }
+
+    private byte[] json(Book book) {
+        return cache.getUnchecked(book);
+    }
+
+    private static boolean isBookCollection(Type type, Class<?> clazz) {
+        if (!Collection.class.isAssignableFrom(clazz) || !(type instanceof ParameterizedType)) {
+            return false;
+        }
+
+        Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+        return arguments.length == 1 && arguments[0] instanceof Class && Book.class.isAssignableFrom((Class<?>) arguments[0]);
+    }
+}
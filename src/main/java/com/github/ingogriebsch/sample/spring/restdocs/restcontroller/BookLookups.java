@@ -0,0 +1,159 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.NonNull;
+
+// Coalesces concurrent lookups of the same isbn into a single one of the store, the others wait for its result. The result
+// is kept for a short time afterwards, so a hot isbn is looked up once per time to live instead of once per request. An
+// isbn is invalidated after it was written, which drops its result as well as a lookup still in flight. Whoever comes
+// later therefore looks it up again, and the lookup in flight does not keep its outdated result.
+final class BookLookups {
+
+    private final Function<String, Optional<Book>> loader;
+    // Only holds the lookups in flight, their results are kept by the bounded cache.
+    private final ConcurrentMap<String, CompletableFuture<Optional<Book>>> flights = new ConcurrentHashMap<>();
+    // Evicts the least recently used results once it is full, null if results are not kept.
+    private final Cache<String, Optional<Book>> results;
+    private final LongAdder loaded = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder cached = new LongAdder();
+
+    BookLookups(@NonNull Function<String, Optional<Book>> loader, long timeToLiveMillis, int maxEntries) {
+        this(loader, timeToLiveMillis, maxEntries, System::nanoTime);
+    }
+
+    BookLookups(@NonNull Function<String, Optional<Book>> loader, long timeToLiveMillis, int maxEntries,
+        @NonNull LongSupplier nanoTime) {
+        if (timeToLiveMillis < 0 || maxEntries < 0) {
+            throw new IllegalArgumentException("Time to live and max entries must not be negative!");
+        }
+        this.loader = loader;
+        this.results = timeToLiveMillis > 0 && maxEntries > 0
+            ? CacheBuilder.newBuilder().expireAfterWrite(MILLISECONDS.toNanos(timeToLiveMillis), NANOSECONDS)
+                .maximumSize(maxEntries).ticker(new Ticker() {
+
+                    @Override
+                    public long read() {
+                        return nanoTime.getAsLong();
+                    }
+                }).<String, Optional<Book>> build()
+            : null;
+    }
+
+    Optional<Book> find(@NonNull String isbn) {
+        while (true) {
+            Optional<Book> result = results != null ? results.getIfPresent(isbn) : null;
+            if (result != null) {
+                cached.increment();
+                return result;
+            }
+
+            CompletableFuture<Optional<Book>> flight = flights.get(isbn);
+            if (flight != null) {
+                (flight.isDone() ? cached : coalesced).increment();
+                return join(flight);
+            }
+
+            flight = new CompletableFuture<>();
+            if (flights.putIfAbsent(isbn, flight) == null) {
+                return load(isbn, flight);
+            }
+        }
+    }
+
+    // Needs to be called after the isbn was written to the store. The flight is removed before the result, so that a lookup
+    // in flight either does not keep its result at all or keeps it before it is dropped here.
+    void invalidate(@NonNull String isbn) {
+        flights.remove(isbn);
+        if (results != null) {
+            results.invalidate(isbn);
+        }
+    }
+
+    long loaded() {
+        return loaded.sum();
+    }
+
+    long coalesced() {
+        return coalesced.sum();
+    }
+
+    long cached() {
+        return cached.sum();
+    }
+
+    // Share of the lookups which did not ask the store themselves.
+    double coalescingRatio() {
+        long shared = coalesced.sum() + cached.sum();
+        long all = shared + loaded.sum();
+        return all > 0 ? (double) shared / all : 0;
+    }
+
+    private Optional<Book> load(String isbn, CompletableFuture<Optional<Book>> flight) {
+        loaded.increment();
+        Optional<Book> book;
+        try {
+            book = loader.apply(isbn);
+        } catch (RuntimeException e) {
+            flights.remove(isbn, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+        flight.complete(book);
+
+        // The flight is removed and its result kept in one step, which an invalidation of the isbn waits for. The result is
+        // only kept if the flight was not invalidated meanwhile, an invalidation which follows drops it from the cache again.
+        flights.computeIfPresent(isbn, (key, current) -> {
+            if (current != flight) {
+                return current;
+            }
+            if (results != null) {
+                results.put(isbn, book);
+            }
+            return null;
+        });
+        return book;
+    }
+
+    private static Optional<Book> join(CompletableFuture<Optional<Book>> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            // The waiters see the exception of the lookup they waited for.
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+
+// The view of a leader on its replicas. A replica asking for the changes since a sequence number has applied all changes
+// up to it, which is all the leader needs to know to wait for writes to be replicated.
+public class BookReplicas implements MeterBinder {
+
+    private final BookService bookService;
+    private final ConcurrentMap<String, AtomicLong> sequences = new ConcurrentHashMap<>();
+    private volatile MeterRegistry registry;
+
+    public BookReplicas(@NonNull BookService bookService) {
+        this.bookService = bookService;
+    }
+
+    public void acknowledge(@NonNull String replica, long sequence) {
+        sequences.computeIfAbsent(replica, this::register).accumulateAndGet(sequence, Math::max);
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    public int acknowledged(long sequence) {
+        return (int) sequences.values().stream().filter(s -> s.get() >= sequence).count();
+    }
+
+    // Returns false if not enough replicas have applied the sequence in time.
+    public boolean await(long sequence, int acks, long timeoutMillis) throws InterruptedException {
+        long deadline = nanoTime() + MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (this) {
+            while (acknowledged(sequence) < acks) {
+                long remaining = deadline - nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                NANOSECONDS.timedWait(this, remaining);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        sequences.forEach((replica, sequence) -> lag(registry, replica, sequence));
+    }
+
+    private AtomicLong register(String replica) {
+        AtomicLong sequence = new AtomicLong(-1);
+        MeterRegistry registry = this.registry;
+        if (registry != null) {
+            lag(registry, replica, sequence);
+        }
+        return sequence;
+    }
+
+    private void lag(MeterRegistry registry, String replica, AtomicLong sequence) {
+        Gauge.builder("books.replication.lag", sequence, s -> Math.max(0, bookService.changeSequence() - s.get()))
+            .tags("replica", replica).description("Changes the replica has not applied yet").register(registry);
+    }
+}
@@ -0,0 +1,51 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.NonNull;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(BookReplicationProperties.class)
+public class BookReplicationConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "book.replication", name = "leader-url")
+    public BookReplicator bookReplicator(@NonNull BookReplicationProperties properties, @NonNull BookService bookService,
+        @NonNull ObjectMapper objectMapper) {
+        return new BookReplicator(properties, bookService, objectMapper);
+    }
+
+    @Bean
+    public BookReplicas bookReplicas(@NonNull BookService bookService) {
+        return new BookReplicas(bookService);
+    }
+
+    @Bean
+    public BookReplicationFilter bookReplicationFilter(@NonNull BookReplicationProperties properties,
+        @NonNull BookService bookService, @NonNull BookReplicas bookReplicas, ObjectProvider<BookReplicator> bookReplicator) {
+        return new BookReplicationFilter(properties, bookService, bookReplicas, bookReplicator.getIfAvailable());
+    }
+}
@@ -0,0 +1,263 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PARAM_SINCE;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PATH_CHANGES;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PATH_FIND_ALL;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookReplicationProperties.ReadConsistency.READ_YOUR_WRITES;
+import static org.springframework.http.HttpHeaders.ACCEPT;
+import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
+import static org.springframework.http.HttpMethod.DELETE;
+import static org.springframework.http.HttpMethod.GET;
+import static org.springframework.http.HttpMethod.POST;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UrlPathHelper;
+
+// Makes a group of nodes look like a single one to the clients. Writes are only executed by the leader, a replica forwards
+// them. The response to a write carries the sequence number of the leader after it was applied, which a client can hand in
+// to any replica as a session token to read its own writes.
+@Slf4j
+public class BookReplicationFilter extends OncePerRequestFilter implements MeterBinder {
+
+    static final String HEADER_SEQUENCE = "Book-Sequence";
+    static final String HEADER_REPLICA = "Book-Replica";
+    static final String HEADER_FORWARDED_FOR = "X-Forwarded-For";
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final int READ_TIMEOUT_MILLIS = 60000;
+
+    private final BookReplicationProperties properties;
+    private final BookService bookService;
+    private final BookReplicas replicas;
+    private final BookReplicator replicator;
+    private final RestTemplate restTemplate;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+    private final LongAdder unacknowledged = new LongAdder();
+
+    // The replicator is only given if the node is a replica.
+    public BookReplicationFilter(@NonNull BookReplicationProperties properties, @NonNull BookService bookService,
+        @NonNull BookReplicas replicas, BookReplicator replicator) {
+        this.properties = properties;
+        this.bookService = bookService;
+        this.replicas = replicas;
+        this.replicator = replicator;
+
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        requestFactory.setReadTimeout(READ_TIMEOUT_MILLIS);
+        // Streams large batches to the leader instead of holding them in memory.
+        requestFactory.setBufferRequestBody(false);
+        this.restTemplate = new RestTemplate(requestFactory);
+        // The answer of the leader is handed to the client as it is, errors included.
+        this.restTemplate.setErrorHandler(new DefaultResponseErrorHandler() {
+
+            @Override
+            public boolean hasError(ClientHttpResponse response) {
+                return false;
+            }
+        });
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("books.replication.write-timeouts", unacknowledged, LongAdder::sum)
+            .description("Writes answered before enough replicas had applied them").register(registry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        String path = urlPathHelper.getPathWithinApplication(request);
+        if (isWrite(request, path)) {
+            if (replicator != null) {
+                forward(request, response, path);
+            } else {
+                SequencingResponse sequencing = new SequencingResponse(response);
+                filterChain.doFilter(request, sequencing);
+                sequencing.sequence();
+            }
+            return;
+        }
+
+        if (replicator != null && READ_YOUR_WRITES.equals(properties.getReadConsistency())) {
+            String token = request.getHeader(HEADER_SEQUENCE);
+            if (token != null && !caughtUp(token, response)) {
+                return;
+            }
+        }
+        String replica = request.getHeader(HEADER_REPLICA);
+        String since = request.getParameter(PARAM_SINCE);
+        if (replica != null && since != null && GET.matches(request.getMethod()) && PATH_CHANGES.equals(path)) {
+            try {
+                replicas.acknowledge(replica, Long.parseLong(since));
+            } catch (NumberFormatException e) {
+                // Rejected by the controller.
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private boolean isWrite(HttpServletRequest request, String path) {
+        return (POST.matches(request.getMethod()) || DELETE.matches(request.getMethod()))
+            && (PATH_FIND_ALL.equals(path) || pathMatcher.match(PATH_FIND_ALL + "/**", path));
+    }
+
+    private boolean caughtUp(String token, HttpServletResponse response) throws IOException {
+        long sequence;
+        try {
+            sequence = Long.parseLong(token);
+        } catch (NumberFormatException e) {
+            response.sendError(BAD_REQUEST.value(), "Malformed header " + HEADER_SEQUENCE);
+            return false;
+        }
+
+        try {
+            if (replicator.await(sequence, properties.getReadTimeoutMillis())) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // The replica is lagging behind, the client may retry or ask another node.
+        response.setHeader(RETRY_AFTER, "1");
+        response.setStatus(SERVICE_UNAVAILABLE.value());
+        return false;
+    }
+
+    private void forward(HttpServletRequest request, HttpServletResponse response, String path) throws IOException {
+        URI uri = UriComponentsBuilder.fromHttpUrl(properties.getLeaderUrl()).path(path).query(request.getQueryString())
+            .build(true).toUri();
+        try {
+            restTemplate.execute(uri, HttpMethod.resolve(request.getMethod()), forwarded -> {
+                copyHeader(request.getHeader(CONTENT_TYPE), CONTENT_TYPE, forwarded.getHeaders()::set);
+                copyHeader(request.getHeader(ACCEPT), ACCEPT, forwarded.getHeaders()::set);
+                // The leader limits the rate of the client instead of the replica, if it trusts the replica as a proxy.
+                forwarded.getHeaders().set(HEADER_FORWARDED_FOR, forwardedFor(request));
+                StreamUtils.copy(request.getInputStream(), forwarded.getBody());
+            }, answer -> {
+                response.setStatus(answer.getRawStatusCode());
+                copyHeader(answer.getHeaders().getFirst(CONTENT_TYPE), CONTENT_TYPE, response::setHeader);
+                copyHeader(answer.getHeaders().getFirst(RETRY_AFTER), RETRY_AFTER, response::setHeader);
+                copyHeader(answer.getHeaders().getFirst(HEADER_SEQUENCE), HEADER_SEQUENCE, response::setHeader);
+                StreamUtils.copy(answer.getBody(), response.getOutputStream());
+                return null;
+            });
+        } catch (RestClientException e) {
+            log.warn("Forwarding the write to '{}' failed!", uri, e);
+            if (!response.isCommitted()) {
+                response.reset();
+                response.setHeader(RETRY_AFTER, "1");
+                response.setStatus(SERVICE_UNAVAILABLE.value());
+            }
+        }
+    }
+
+    private static String forwardedFor(HttpServletRequest request) {
+        String forwardedFor = request.getHeader(HEADER_FORWARDED_FOR);
+        return forwardedFor != null ? forwardedFor + ", " + request.getRemoteAddr() : request.getRemoteAddr();
+    }
+
+    private static void copyHeader(String value, String name, BiConsumer<String, String> setter) {
+        if (value != null) {
+            setter.accept(name, value);
+        }
+    }
+
+    // Adds the sequence number to the response of a write right before it is committed, waiting for the replicas to apply
+    // the write first if this is asked for.
+    private final class SequencingResponse extends HttpServletResponseWrapper {
+
+        private boolean sequenced;
+
+        SequencingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            sequence();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            sequence();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            sequence();
+            super.flushBuffer();
+        }
+
+        void sequence() {
+            if (sequenced || isCommitted()) {
+                return;
+            }
+            sequenced = true;
+
+            long sequence = bookService.changeSequence();
+            if (properties.getWriteAcks() > 0 && getStatus() < 300) {
+                try {
+                    if (!replicas.await(sequence, properties.getWriteAcks(), properties.getWriteTimeoutMillis())) {
+                        unacknowledged.increment();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            setHeader(HEADER_SEQUENCE, Long.toString(sequence));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.UUID.randomUUID;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("book.replication")
+@Data
+public class BookReplicationProperties {
+
+    public enum ReadConsistency {
+            LOCAL, READ_YOUR_WRITES
+    }
+
+    // The node replicates the books of the leader behind this url, otherwise it is a leader itself.
+    private String leaderUrl;
+    private String replicaId = randomUUID().toString();
+    private ReadConsistency readConsistency = ReadConsistency.READ_YOUR_WRITES;
+    // How long a read waits for the replica to catch up with the session token of the client.
+    private long readTimeoutMillis = 1000;
+    // Replicas which need to have applied a write before it is answered, 0 answers as soon as the leader applied it.
+    private int writeAcks = 0;
+    private long writeTimeoutMillis = 1000;
+    private int batchSize = 1000;
+    private long retryIntervalMillis = 1000;
+}
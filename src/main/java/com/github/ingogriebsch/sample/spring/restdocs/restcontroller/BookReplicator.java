@@ -0,0 +1,255 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.lang.System.nanoTime;
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.stream.Collectors.toList;
+
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.APPLICATION_NDJSON_VALUE;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PATH_CHANGES;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PATH_FIND_ALL;
+import static org.springframework.http.HttpMethod.GET;
+import static org.springframework.http.HttpStatus.GONE;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+// Follows the change feed of the leader and applies its changes to the local store. The sequence number of the leader the
+// replica has applied is what a client hands in as its session token to read its own writes.
+@Slf4j
+public class BookReplicator implements SmartLifecycle, MeterBinder {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    // Longer than the leader holds back a request for changes if there are none.
+    private static final int READ_TIMEOUT_MILLIS = 60000;
+
+    private final BookReplicationProperties properties;
+    private final BookService bookService;
+    private final ObjectMapper objectMapper;
+    private final RestTemplate restTemplate;
+    private final Object monitor = new Object();
+    // The sequence number of the leader up to which all changes are applied, negative until the books are loaded.
+    private volatile long sequence = -1;
+    private volatile boolean running;
+    private Thread thread;
+
+    public BookReplicator(@NonNull BookReplicationProperties properties, @NonNull BookService bookService,
+        @NonNull ObjectMapper objectMapper) {
+        this(properties, bookService, objectMapper, restTemplate());
+    }
+
+    BookReplicator(@NonNull BookReplicationProperties properties, @NonNull BookService bookService,
+        @NonNull ObjectMapper objectMapper, @NonNull RestTemplate restTemplate) {
+        if (properties.getLeaderUrl() == null) {
+            throw new IllegalArgumentException("The url of the leader is needed to replicate its books!");
+        }
+        this.properties = properties;
+        this.bookService = bookService;
+        this.objectMapper = objectMapper;
+        this.restTemplate = restTemplate;
+    }
+
+    public long sequence() {
+        return sequence;
+    }
+
+    // Returns false if the changes up to the sequence number are not applied in time.
+    public boolean await(long sequence, long timeoutMillis) throws InterruptedException {
+        long deadline = nanoTime() + MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (monitor) {
+            while (this.sequence < sequence) {
+                long remaining = deadline - nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                NANOSECONDS.timedWait(monitor, remaining);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("books.replication.sequence", this, BookReplicator::sequence)
+            .description("Sequence number of the leader the replica has applied all changes up to").register(registry);
+    }
+
+    @Override
+    public synchronized void start() {
+        running = true;
+        thread = new Thread(this::replicate, "book-replicator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        stop();
+        callback.run();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return true;
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    private void replicate() {
+        while (running) {
+            try {
+                if (sequence < 0) {
+                    load();
+                }
+                poll();
+            } catch (HttpClientErrorException e) {
+                if (!GONE.equals(e.getStatusCode())) {
+                    retry(e);
+                } else {
+                    // The replica fell too far behind to catch up through the changes.
+                    log.warn("Changes since {} are not available anymore, loading all books of the leader again...", sequence);
+                    sequence = -1;
+                }
+            } catch (RuntimeException e) {
+                // Neither the leader nor the local store failing to apply a change may stop the replica from following.
+                retry(e);
+            }
+        }
+    }
+
+    private void retry(RuntimeException e) {
+        if (!running) {
+            return;
+        }
+        log.warn("Replicating the books of '{}' failed, retrying...", properties.getLeaderUrl(), e);
+        try {
+            MILLISECONDS.sleep(properties.getRetryIntervalMillis());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private void load() {
+        // Reading the sequence number first is safe, changes made while loading the books are applied again.
+        long since = restTemplate.getForObject(properties.getLeaderUrl() + PATH_CHANGES, BookChanges.class).getSequence();
+
+        Set<String> isbns = new HashSet<>();
+        restTemplate.execute(properties.getLeaderUrl() + PATH_FIND_ALL, GET,
+            request -> request.getHeaders().setAccept(singletonList(MediaType.valueOf(APPLICATION_NDJSON_VALUE))), response -> {
+                try (MappingIterator<Book> books = objectMapper.readerFor(Book.class).readValues(response.getBody())) {
+                    while (books.hasNextValue()) {
+                        Book book = books.nextValue();
+                        isbns.add(book.getIsbn());
+                        put(book.getIsbn(), book.getTitle());
+                    }
+                }
+                return null;
+            });
+
+        // Books the leader deleted while the replica was not following its changes.
+        List<String> deleted = bookService.streamAll().map(Book::getIsbn).filter(i -> !isbns.contains(i)).collect(toList());
+        deleted.forEach(bookService::delete);
+
+        log.info("Loaded {} books of '{}' at sequence {}...", isbns.size(), properties.getLeaderUrl(), since);
+        advance(since);
+    }
+
+    private void poll() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(singletonList(APPLICATION_JSON));
+        headers.set(BookReplicationFilter.HEADER_REPLICA, properties.getReplicaId());
+
+        BookChanges changes = restTemplate.exchange(properties.getLeaderUrl() + PATH_CHANGES + "?since={since}&limit={limit}",
+            GET, new HttpEntity<>(headers), BookChanges.class, sequence, properties.getBatchSize()).getBody();
+        for (BookChange change : changes.getChanges()) {
+            switch (change.getType()) {
+                case INSERTED:
+                    put(change.getIsbn(), change.getTitle());
+                    break;
+                case DELETED:
+                    bookService.delete(change.getIsbn());
+                    break;
+                case INSERTED_ALL:
+                    change.getBooks().forEach(b -> put(b.getIsbn(), b.getTitle()));
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown type of change '" + change.getType() + "'!");
+            }
+        }
+        advance(changes.getSequence());
+    }
+
+    // Applying a change twice leaves the store as it is, which is what makes loading and polling safe to repeat.
+    private void put(String isbn, String title) {
+        bookService.upsert(new BookInsert(isbn, title));
+    }
+
+    private static RestTemplate restTemplate() {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        requestFactory.setReadTimeout(READ_TIMEOUT_MILLIS);
+        return new RestTemplate(requestFactory);
+    }
+
+    private void advance(long sequence) {
+        synchronized (monitor) {
+            this.sequence = sequence;
+            monitor.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static org.springframework.beans.factory.config.BeanDefinition.ROLE_APPLICATION;
+
+import lombok.NonNull;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(BookServerProperties.class)
+public class BookServerConfiguration {
+
+    @Bean
+    public TomcatExecutorCustomizer tomcatExecutorCustomizer(@NonNull BookServerProperties properties) {
+        return new TomcatExecutorCustomizer(properties.getExecutionMode());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "book.server.rate-limit", name = "enabled", matchIfMissing = true)
+    public BookAdmissionFilter bookAdmissionFilter(@NonNull BookServerProperties properties) {
+        return new BookAdmissionFilter(properties.getRateLimit());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "book.server.startup", name = "lazy")
+    public static BeanFactoryPostProcessor lazyInitialization() {
+        // Boot only offers this from 2.2 on. Beans the container needs to start, like filters and meter binders, are still
+        // created eagerly because they are asked for.
+        return beanFactory -> {
+            for (String name : beanFactory.getBeanDefinitionNames()) {
+                BeanDefinition definition = beanFactory.getBeanDefinition(name);
+                if (definition.getRole() == ROLE_APPLICATION && definition instanceof AbstractBeanDefinition) {
+                    ((AbstractBeanDefinition) definition).setLazyInit(true);
+                }
+            }
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "book.server.startup", name = "training-run")
+    public BookTrainingRun bookTrainingRun() {
+        return new BookTrainingRun();
+    }
+}
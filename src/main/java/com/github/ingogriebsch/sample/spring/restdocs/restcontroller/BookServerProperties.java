@@ -0,0 +1,65 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("book.server")
+@Data
+public class BookServerProperties {
+
+    public enum ExecutionMode {
+            PLATFORM, VIRTUAL
+    }
+
+    private ExecutionMode executionMode = ExecutionMode.PLATFORM;
+    private RateLimit rateLimit = new RateLimit();
+    private StartupOptions startup = new StartupOptions();
+
+    @Data
+    public static class RateLimit {
+
+        private boolean enabled = true;
+        // Writes each client may send per second to each of the write endpoints, bursts of up to the capacity are allowed.
+        private double permitsPerSecond = 100;
+        private int burst = 200;
+        // Writes which are executed at the same time per endpoint, further ones are shed instead of occupying a thread.
+        private int maxInFlight = 64;
+        // Average latency of the writes per endpoint above which further ones are shed, 0 disables this check.
+        private long maxLatencyMillis = 0;
+        // Header naming the addresses a request was forwarded for, which is only trusted if the request was sent by one of
+        // the trusted proxies, e.g. a load balancer or a replica forwarding its writes.
+        private String clientHeader = "X-Forwarded-For";
+        private List<String> trustedProxies = new ArrayList<>();
+    }
+
+    @Data
+    public static class StartupOptions {
+
+        // Creates the beans on first use, which defers everything the first request does not need.
+        private boolean lazy = false;
+        // Sends each endpoint a request once it is ready and exits, which is how the classes of a CDS archive are recorded.
+        private boolean trainingRun = false;
+    }
+}
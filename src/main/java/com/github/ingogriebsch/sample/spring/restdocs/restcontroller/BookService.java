@@ -19,48 +19,418 @@
  */
 package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
 
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.Arrays.asList;
 import static java.util.Optional.empty;
 import static java.util.Optional.of;
+import static java.util.Optional.ofNullable;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
 
-import java.util.HashSet;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookChange.Type.DELETED;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookChange.Type.INSERTED;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookInsertResult.Status.CREATED;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookInsertResult.Status.DUPLICATE;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookInsertResult.Status.INVALID;
+import static com.google.common.util.concurrent.Striped.lock;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Stream;
+
+import javax.validation.Validator;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.Striped;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.Getter;
 import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+@Slf4j
 @Service
-public class BookService {
+public class BookService implements MeterBinder {
+
+    private static final int LOCK_STRIPES = 64;
+    private static final int CHANGE_FEED_CAPACITY = 1 << 16;
+    // Small enough that a batch only holds a few of the stripes at once.
+    private static final int INSERT_CHUNK_SIZE = 16;
 
-    private final Set<Book> books = new HashSet<>();
+    private final BookStore bookStore;
+    private final Validator validator;
+    // Answers lookups of isbns which are not stored without asking the store, null if disabled.
+    private final BookFilter filter;
+    // Shares the lookups of the same isbn in front of the store, null if disabled.
+    private final BookLookups lookups;
+
+    private final NavigableSet<String> isbns = new ConcurrentSkipListSet<>();
+    private final TitleIndex titleIndex = new TitleIndex();
+    private final BookChangeFeed changeFeed = new BookChangeFeed(CHANGE_FEED_CAPACITY);
+    private final Striped<Lock> locks = lock(LOCK_STRIPES);
+    private final LongAdder missedLookups = new LongAdder();
+    private final LongAdder duplicatedInserts = new LongAdder();
+    private final LongAdder filteredLookups = new LongAdder();
+    private final LongAdder falsePositiveLookups = new LongAdder();
+
+    public BookService(@NonNull BookStore bookStore, @NonNull Validator validator) {
+        this(bookStore, validator, new BookStoreProperties());
+    }
+
+    @Autowired
+    public BookService(@NonNull BookStore bookStore, @NonNull Validator validator, @NonNull BookStoreProperties properties) {
+        this.bookStore = bookStore;
+        this.validator = validator;
+        canonicalize(bookStore);
+        BookStoreProperties.Filter filter = properties.getFilter();
+        this.filter = filter.isEnabled()
+            ? new BookFilter(max(filter.getExpectedBooks(), bookStore.size()), filter.getFalsePositiveRate()) : null;
+        BookStoreProperties.Lookups lookups = properties.getLookups();
+        this.lookups = lookups.isCoalesce()
+            ? new BookLookups(bookStore::find, lookups.getTimeToLiveMillis(), lookups.getMaxEntries()) : null;
+        bookStore.stream().forEach(p -> {
+            isbns.add(p.getIsbn());
+            titleIndex.add(p);
+            if (this.filter != null) {
+                this.filter.add(p.getIsbn());
+            }
+        });
+    }
 
     public Set<Book> findAll() {
-        return books;
+        return bookStore.stream().collect(toSet());
+    }
+
+    public BookSnapshot snapshot() {
+        Optional<BookSnapshot> snapshot = bookStore.view();
+        if (snapshot.isPresent()) {
+            return snapshot.get();
+        }
+        // The version is taken before the books are copied, so the copy is at least as new as the version it is labeled with.
+        long version = version();
+        return new CopiedBookSnapshot(version, bookStore.stream().collect(toMap(Book::getIsbn, identity())));
+    }
+
+    public List<Book> findAll(String after, int limit) {
+        return findAll(IsbnRange.ALL, after, limit);
+    }
+
+    public List<Book> findAll(@NonNull IsbnRange range, String after, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive!");
+        }
+        return stream(range, after).limit(limit).collect(toList());
+    }
+
+    public Stream<Book> streamAll() {
+        return streamAll(IsbnRange.ALL);
+    }
+
+    public Stream<Book> streamAll(@NonNull IsbnRange range) {
+        return stream(range, null);
+    }
+
+    public List<Book> search(@NonNull String query, int limit) {
+        return titleIndex.search(query, limit).stream().map(bookStore::find).filter(Optional::isPresent).map(Optional::get)
+            .collect(toList());
     }
 
     public Optional<Book> findOne(@NonNull String isbn) {
-        return books.stream().filter(p -> p.getIsbn().equals(isbn)).limit(1).findAny();
+        isbn = key(isbn);
+        if (filter != null && !filter.mightContain(isbn)) {
+            filteredLookups.increment();
+            missedLookups.increment();
+            return empty();
+        }
+        Optional<Book> book = lookups != null ? lookups.find(isbn) : bookStore.find(isbn);
+        if (!book.isPresent()) {
+            missedLookups.increment();
+            if (filter != null) {
+                falsePositiveLookups.increment();
+            }
+        }
+        return book;
+    }
+
+    public long count() {
+        return bookStore.size();
+    }
+
+    public long version() {
+        // A snapshot knows the version of exactly its books. Otherwise every insert, replace, delete and batch of inserts
+        // publishes exactly one change, so the sequence number of the latest one versions the books.
+        return bookStore.view().map(BookSnapshot::getVersion).orElseGet(changeFeed::sequence);
+    }
+
+    public long changeSequence() {
+        return changeFeed.sequence();
+    }
+
+    public Optional<List<BookChange>> changes(long since, int limit) {
+        return changeFeed.read(since, limit);
+    }
+
+    public void awaitChanges(long since, @NonNull Runnable listener) {
+        changeFeed.await(since, listener);
+    }
+
+    public void cancelAwaitChanges(@NonNull Runnable listener) {
+        changeFeed.cancel(listener);
     }
 
     public Optional<Book> insert(@NonNull BookInsert bookInsert) {
-        String isbn = bookInsert.getIsbn();
-        for (Book p : books) {
-            if (p.getIsbn().equals(isbn)) {
+        Book book = book(bookInsert);
+        // The ordered index is updated while holding the lock of the isbn so that it never runs out of sync with the store.
+        Lock lock = locks.get(book.getIsbn());
+        lock.lock();
+        try {
+            if (!bookStore.insert(book)) {
+                duplicatedInserts.increment();
                 return empty();
             }
+            isbns.add(book.getIsbn());
+            titleIndex.add(book);
+            if (filter != null) {
+                filter.add(book.getIsbn());
+            }
+            if (lookups != null) {
+                lookups.invalidate(book.getIsbn());
+            }
+            changeFeed.publish(INSERTED, book);
+            return of(book);
+        } finally {
+            lock.unlock();
         }
+    }
 
+    // Inserts the book or replaces the title of the book stored under its isbn. Returns an empty optional if the book is
+    // already stored as it is. Either way a single change is published, so readers never miss a book which is replaced.
+    public Optional<Book> upsert(@NonNull BookInsert bookInsert) {
         Book book = book(bookInsert);
-        books.add(book);
-        return of(book);
+        Lock lock = locks.get(book.getIsbn());
+        lock.lock();
+        try {
+            Optional<Book> stored = bookStore.find(book.getIsbn());
+            if (!stored.isPresent()) {
+                return insert(bookInsert);
+            }
+            if (stored.get().equals(book) || !bookStore.replace(book)) {
+                return empty();
+            }
+            titleIndex.remove(stored.get());
+            titleIndex.add(book);
+            if (lookups != null) {
+                lookups.invalidate(book.getIsbn());
+            }
+            changeFeed.publish(INSERTED, book);
+            return of(book);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Validates the whole batch before it is applied in chunks, each under the locks of only its own isbns. The books inserted
+    // through a chunk are published as a single change while its locks are still held, so that a concurrent write of one of
+    // them is published in the order it was applied and a large import does not overwrite the changes the replicas did not read
+    // yet.
+    public List<BookInsertResult> insertAll(@NonNull Collection<BookInsert> bookInserts) {
+        BookInsertResult[] results = new BookInsertResult[bookInserts.size()];
+        List<Book> books = new ArrayList<>(bookInserts.size());
+        // The position of the result of each valid book.
+        int[] positions = new int[bookInserts.size()];
+        int i = 0;
+        for (BookInsert bookInsert : bookInserts) {
+            if (bookInsert == null || !validator.validate(bookInsert).isEmpty()) {
+                results[i] = new BookInsertResult(bookInsert != null ? bookInsert.getIsbn() : null, INVALID);
+            } else {
+                Book book = book(bookInsert);
+                results[i] = new BookInsertResult(book.getIsbn(), DUPLICATE);
+                positions[books.size()] = i;
+                books.add(book);
+            }
+            i++;
+        }
+
+        for (int from = 0; from < books.size(); from += INSERT_CHUNK_SIZE) {
+            int to = min(from + INSERT_CHUNK_SIZE, books.size());
+            for (int b : insertChunk(books.subList(from, to), from)) {
+                results[positions[b]].setStatus(CREATED);
+            }
+        }
+        return asList(results);
     }
 
     public boolean delete(@NonNull String isbn) {
-        return books.removeIf(p -> isbn.equals(p.getIsbn()));
+        isbn = key(isbn);
+        Lock lock = locks.get(isbn);
+        lock.lock();
+        try {
+            Optional<Book> book = bookStore.find(isbn);
+            if (!book.isPresent() || !bookStore.delete(isbn)) {
+                return false;
+            }
+            isbns.remove(isbn);
+            titleIndex.remove(book.get());
+            if (filter != null) {
+                filter.remove(isbn);
+            }
+            if (lookups != null) {
+                lookups.invalidate(isbn);
+            }
+            changeFeed.publish(DELETED, book.get());
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("books.lookups.missed", missedLookups, LongAdder::sum)
+            .description("Lookups of books which are not available").register(registry);
+        FunctionCounter.builder("books.inserts.duplicated", duplicatedInserts, LongAdder::sum)
+            .description("Inserts of books which are already available").register(registry);
+        Gauge.builder("books.store.size", bookStore, BookStore::size).description("Books available in the store")
+            .register(registry);
+        Gauge.builder("books.store.memory", bookStore, BookStore::memoryFootprint).baseUnit("bytes")
+            .description("Estimated memory occupied by the books in the store").register(registry);
+        Gauge.builder("books.changes.sequence", changeFeed, BookChangeFeed::sequence)
+            .description("Sequence number of the latest change of the books").register(registry);
+        Gauge.builder("books.search.terms", titleIndex, TitleIndex::terms).description("Distinct terms of the title index")
+            .register(registry);
+        if (filter != null) {
+            FunctionCounter.builder("books.filter.lookups", filteredLookups, LongAdder::sum).tag("result", "filtered")
+                .description("Lookups of books the filter answered without asking the store").register(registry);
+            FunctionCounter.builder("books.filter.lookups", falsePositiveLookups, LongAdder::sum).tag("result", "false-positive")
+                .description("Lookups of books the filter passed to the store which did not find them").register(registry);
+            Gauge.builder("books.filter.false-positive-rate", filter, BookFilter::falsePositiveRate)
+                .description("Estimated probability that the filter passes the lookup of a book which is not available")
+                .register(registry);
+            Gauge.builder("books.filter.memory", filter, BookFilter::memoryFootprint).baseUnit("bytes")
+                .description("Memory occupied by the filter").register(registry);
+        }
+        if (lookups != null) {
+            FunctionCounter.builder("books.lookups", lookups, BookLookups::loaded).tag("result", "loaded")
+                .description("Lookups of books which asked the store").register(registry);
+            FunctionCounter.builder("books.lookups", lookups, BookLookups::coalesced).tag("result", "coalesced")
+                .description("Lookups of books which waited for the lookup of the same isbn in flight").register(registry);
+            FunctionCounter.builder("books.lookups", lookups, BookLookups::cached).tag("result", "cached")
+                .description("Lookups of books which reused the recent result of the same isbn").register(registry);
+            Gauge.builder("books.lookups.coalescing-ratio", lookups, BookLookups::coalescingRatio)
+                .description("Share of the lookups of books which did not ask the store themselves").register(registry);
+        }
+    }
+
+    // Returns the positions of the books which were inserted, offset by the position of the chunk inside its batch.
+    private List<Integer> insertChunk(List<Book> chunk, int offset) {
+        // The locks are handed out in a fixed order, so chunks with overlapping stripes do not deadlock.
+        ImmutableList<Lock> chunkLocks = ImmutableSet.copyOf(locks.bulkGet(chunk.stream().map(Book::getIsbn).collect(toList())))
+            .asList();
+        chunkLocks.forEach(Lock::lock);
+        List<Book> inserted = new ArrayList<>(chunk.size());
+        List<Integer> positions = new ArrayList<>(chunk.size());
+        try {
+            for (int b = 0; b < chunk.size(); b++) {
+                Book book = chunk.get(b);
+                if (!bookStore.insert(book)) {
+                    duplicatedInserts.increment();
+                    continue;
+                }
+                isbns.add(book.getIsbn());
+                titleIndex.add(book);
+                if (filter != null) {
+                    filter.add(book.getIsbn());
+                }
+                if (lookups != null) {
+                    lookups.invalidate(book.getIsbn());
+                }
+                inserted.add(book);
+                positions.add(offset + b);
+            }
+        } finally {
+            // The books inserted before a store failed are published as well.
+            if (!inserted.isEmpty()) {
+                changeFeed.publishAll(inserted);
+            }
+            chunkLocks.reverse().forEach(Lock::unlock);
+        }
+        return positions;
+    }
+
+    private Stream<Book> stream(IsbnRange range, String after) {
+        if (after != null) {
+            range = range.intersect(new IsbnRange(after + '\0', null));
+        }
+        return range.apply(isbns).stream().map(bookStore::find).filter(Optional::isPresent).map(Optional::get);
     }
 
     private static Book book(BookInsert bookInsert) {
-        return new Book(bookInsert.getIsbn(), bookInsert.getTitle());
+        String isbn = Isbns.canonical(bookInsert.getIsbn());
+        if (isbn == null) {
+            throw new IllegalArgumentException("Isbn must be a valid ISBN-10 or ISBN-13!");
+        }
+        return new Book(isbn, bookInsert.getTitle());
+    }
+
+    // Books are stored under their canonical isbn, isbns which are not valid are looked up as they are.
+    private static String key(String isbn) {
+        String canonical = Isbns.canonical(isbn);
+        return canonical != null ? canonical : isbn;
     }
 
+    // Moves books which were stored before isbns have been canonicalized to their canonical isbn.
+    private static void canonicalize(BookStore bookStore) {
+        List<Book> books = bookStore.stream().filter(b -> !b.getIsbn().equals(key(b.getIsbn()))).collect(toList());
+        for (Book book : books) {
+            String isbn = key(book.getIsbn());
+            // Moving the book would fail after it has been deleted, so both are kept.
+            if (bookStore.find(isbn).isPresent()) {
+                log.warn("Book '{}' is stored under its canonical isbn '{}' as well. Keeping both of them!", book.getIsbn(),
+                    isbn);
+                continue;
+            }
+            bookStore.delete(book.getIsbn());
+            bookStore.insert(new Book(isbn, book.getTitle()));
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static final class CopiedBookSnapshot implements BookSnapshot {
+
+        @Getter
+        private final long version;
+        private final Map<String, Book> books;
+
+        @Override
+        public Optional<Book> find(@NonNull String isbn) {
+            return ofNullable(books.get(isbn));
+        }
+
+        @Override
+        public Stream<Book> stream() {
+            return books.values().stream();
+        }
+
+        @Override
+        public int size() {
+            return books.size();
+        }
+    }
 }
@@ -0,0 +1,51 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.Optional.empty;
+
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface BookStore {
+
+    Optional<Book> find(String isbn);
+
+    boolean insert(Book book);
+
+    boolean delete(String isbn);
+
+    // Replaces the book stored under the same isbn, returns false if none is stored. Stores which are not able to replace it at
+    // once delete and insert it, so readers might briefly miss it.
+    default boolean replace(Book book) {
+        return delete(book.getIsbn()) && insert(book);
+    }
+
+    Stream<Book> stream();
+
+    int size();
+
+    long memoryFootprint();
+
+    // Only stores which are able to hand out a consistent view of all their books without copying them return one.
+    default Optional<BookSnapshot> view() {
+        return empty();
+    }
+}
@@ -0,0 +1,63 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import java.nio.file.Paths;
+
+import com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookStoreProperties.Type;
+import lombok.NonNull;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(BookStoreProperties.class)
+public class BookStoreConfiguration {
+
+    @Bean
+    public BookStore bookStore(@NonNull BookStoreProperties properties) throws Exception {
+        BookStore bookStore = newBookStore(properties.getType(), properties.getShards());
+        if (properties.getJournal().isEnabled()) {
+            bookStore = new JournalingBookStore(properties.getJournal(), bookStore);
+        }
+        // Books recovered from the journal are newer than the ones of the image.
+        if (properties.getImage() != null && bookStore.size() == 0) {
+            BookImage.load(Paths.get(properties.getImage()), bookStore);
+        }
+        return bookStore;
+    }
+
+    static BookStore newBookStore(@NonNull Type type, int shards) {
+        return shards > 1 ? new ShardedBookStore(shards, () -> newBookStore(type)) : newBookStore(type);
+    }
+
+    static BookStore newBookStore(@NonNull Type type) {
+        switch (type) {
+            case COMPACT:
+                return new CompactBookStore();
+            case OFF_HEAP:
+                return new OffHeapBookStore();
+            case SNAPSHOT:
+                return new SnapshotBookStore();
+            default:
+                return new InMemoryBookStore();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("book.store")
+@Data
+public class BookStoreProperties {
+
+    public enum Type {
+            HEAP, COMPACT, OFF_HEAP, SNAPSHOT
+    }
+
+    private Type type = Type.HEAP;
+    // Number of independent stores the books are partitioned into, only worth it for write heavy workloads.
+    private int shards = 1;
+    // Image of a catalog which is loaded on startup if the store is still empty, see BookImage on how to build one.
+    private String image;
+    private Journal journal = new Journal();
+    private Filter filter = new Filter();
+    private Lookups lookups = new Lookups();
+
+    @Data
+    public static class Journal {
+
+        public enum FsyncPolicy {
+                ALWAYS, BATCH, INTERVAL
+        }
+
+        private boolean enabled = false;
+        private String directory = "data";
+        private FsyncPolicy fsyncPolicy = FsyncPolicy.ALWAYS;
+        private int fsyncBatchSize = 64;
+        private long fsyncIntervalMillis = 1000;
+        private int segmentSize = 16 * 1024 * 1024;
+        private long snapshotIntervalMillis = 5 * 60 * 1000;
+    }
+
+    @Data
+    public static class Filter {
+
+        private boolean enabled = true;
+        // The filter is sized for this many books, more books raise its false positive rate above the configured one.
+        private long expectedBooks = 1_000_000;
+        private double falsePositiveRate = 0.01;
+    }
+
+    @Data
+    public static class Lookups {
+
+        // Concurrent lookups of the same isbn share a single one of the store, only worth it for a store which is slow to read.
+        private boolean coalesce = false;
+        // How long the result of a lookup is reused for further lookups of the same isbn, 0 only shares the lookups in flight.
+        private long timeToLiveMillis = 100;
+        private int maxEntries = 1024;
+    }
+}
@@ -0,0 +1,75 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@RequiredArgsConstructor
+class BookStreamWriteListener implements WriteListener {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    @NonNull
+    private final AsyncContext asyncContext;
+    @NonNull
+    private final ServletOutputStream outputStream;
+    @NonNull
+    private final Iterator<Book> books;
+    @NonNull
+    private final ObjectWriter writer;
+
+    private final ByteArrayOutputStream chunk = new ByteArrayOutputStream(CHUNK_SIZE);
+
+    @Override
+    public void onWritePossible() throws IOException {
+        // Called by the container whenever the client is able to take more data, so a slow client never holds a thread.
+        while (outputStream.isReady()) {
+            if (!books.hasNext()) {
+                asyncContext.complete();
+                return;
+            }
+
+            chunk.reset();
+            while (books.hasNext() && chunk.size() < CHUNK_SIZE) {
+                chunk.write(writer.writeValueAsBytes(books.next()));
+                chunk.write('\n');
+            }
+            chunk.writeTo(outputStream);
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        log.debug("Streaming of books was aborted!", t);
+        asyncContext.complete();
+    }
+}
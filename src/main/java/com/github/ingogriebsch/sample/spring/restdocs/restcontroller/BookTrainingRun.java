@@ -0,0 +1,76 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.Collections.singletonList;
+
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.APPLICATION_NDJSON_VALUE;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PARAM_QUERY;
+import static org.springframework.boot.SpringApplication.exit;
+import static org.springframework.http.HttpMethod.GET;
+import static org.springframework.http.MediaType.APPLICATION_JSON_UTF8;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+// Exercises the endpoints once the service is ready and exits, so that a JVM started with -XX:ArchiveClassesAtExit records
+// the classes needed to answer requests and not only the ones needed to start.
+@Slf4j
+public class BookTrainingRun implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final String ISBN = "9780306406157";
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        ConfigurableApplicationContext context = event.getApplicationContext();
+        String url = "http://localhost:" + ((EmbeddedWebApplicationContext) context).getEmbeddedServletContainer().getPort();
+        RestTemplate restTemplate = new RestTemplate();
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(APPLICATION_JSON_UTF8);
+            restTemplate.postForEntity(url + "/books",
+                new HttpEntity<>("{\"isbn\":\"" + ISBN + "\",\"title\":\"Training\"}", headers), String.class);
+            restTemplate.getForObject(url + "/books", String.class);
+            restTemplate.exchange(url + "/books", GET, accept(MediaType.valueOf(APPLICATION_NDJSON_VALUE)), String.class);
+            restTemplate.getForObject(url + "/books/{isbn}", String.class, ISBN);
+            restTemplate.getForObject(url + "/books/search?" + PARAM_QUERY + "={query}", String.class, "training");
+            restTemplate.getForObject(url + "/books/changes", String.class);
+            restTemplate.delete(url + "/books/{isbn}", ISBN);
+            log.info("Finished the training run, exiting...");
+        } catch (RestClientException e) {
+            log.warn("Training run failed, the recorded classes might be incomplete!", e);
+        }
+        System.exit(exit(context));
+    }
+
+    private static HttpEntity<Void> accept(MediaType mediaType) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(singletonList(mediaType));
+        return new HttpEntity<>(headers);
+    }
+}
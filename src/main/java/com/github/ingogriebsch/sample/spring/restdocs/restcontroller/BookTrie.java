@@ -0,0 +1,344 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.lang.Integer.bitCount;
+import static java.lang.System.arraycopy;
+import static java.util.Optional.ofNullable;
+import static java.util.Spliterator.DISTINCT;
+import static java.util.Spliterator.IMMUTABLE;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterators.spliterator;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import lombok.NonNull;
+
+// Immutable hash array mapped trie of books keyed by their isbn. A change only copies the nodes on the path to the changed
+// book and shares all others with the trie it was derived from, so it costs a few small arrays instead of a copy of all
+// books while every trie stays a consistent snapshot.
+public final class BookTrie implements BookSnapshot {
+
+    static final BookTrie EMPTY = new BookTrie(BitmapNode.EMPTY, 0, 0, 0);
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    // Once all bits of the hash are used up, books with the same hash are kept side by side in a collision node.
+    private static final int MAX_SHIFT = 32;
+    private static final int MAX_DEPTH = MAX_SHIFT / BITS + 2;
+    // Rough estimate of the heap occupied by the book, the two strings without their characters and its share of the nodes.
+    private static final int ENTRY_OVERHEAD = 24 + 2 * (24 + 16) + 16;
+
+    private final Node root;
+    private final int size;
+    private final long version;
+    private final long memoryFootprint;
+
+    private BookTrie(Node root, int size, long version, long memoryFootprint) {
+        this.root = root;
+        this.size = size;
+        this.version = version;
+        this.memoryFootprint = memoryFootprint;
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public Optional<Book> find(@NonNull String isbn) {
+        return ofNullable(root.find(hash(isbn), 0, isbn));
+    }
+
+    @Override
+    public Stream<Book> stream() {
+        return StreamSupport.stream(spliterator(new BookIterator(root), size, DISTINCT | IMMUTABLE | NONNULL), false);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public long memoryFootprint() {
+        return memoryFootprint;
+    }
+
+    // Returns this trie if a book with the same isbn is already contained.
+    public BookTrie with(@NonNull Book book) {
+        Node node = root.with(hash(book.getIsbn()), 0, book);
+        return node == root ? this : new BookTrie(node, size + 1, version + 1, memoryFootprint + memoryFootprint(book));
+    }
+
+    // Returns this trie if no book with the isbn is contained.
+    public BookTrie without(@NonNull String isbn) {
+        int hash = hash(isbn);
+        Book book = root.find(hash, 0, isbn);
+        if (book == null) {
+            return this;
+        }
+        Node node = root.without(hash, 0, isbn);
+        return new BookTrie(node != null ? node : BitmapNode.EMPTY, size - 1, version + 1,
+            memoryFootprint - memoryFootprint(book));
+    }
+
+    static int hash(String isbn) {
+        // Isbns mostly differ in their last characters, spreading the hash keeps the upper levels of the trie balanced.
+        int hash = isbn.hashCode() * 0x9E3779B9;
+        return hash ^ hash >>> 16;
+    }
+
+    private static long memoryFootprint(Book book) {
+        return ENTRY_OVERHEAD + 2L * (book.getIsbn().length() + (book.getTitle() != null ? book.getTitle().length() : 0));
+    }
+
+    private static Node pair(Book first, int firstHash, Book second, int secondHash, int shift) {
+        if (shift >= MAX_SHIFT) {
+            return new CollisionNode(firstHash, new Object[] { first, second });
+        }
+
+        int firstIndex = firstHash >>> shift & MASK;
+        int secondIndex = secondHash >>> shift & MASK;
+        if (firstIndex == secondIndex) {
+            return new BitmapNode(1 << firstIndex, new Object[] { pair(first, firstHash, second, secondHash, shift + BITS) });
+        }
+        return new BitmapNode(1 << firstIndex | 1 << secondIndex,
+            firstIndex < secondIndex ? new Object[] { first, second } : new Object[] { second, first });
+    }
+
+    private static Object[] insert(Object[] entries, int index, Object entry) {
+        Object[] result = new Object[entries.length + 1];
+        arraycopy(entries, 0, result, 0, index);
+        result[index] = entry;
+        arraycopy(entries, index, result, index + 1, entries.length - index);
+        return result;
+    }
+
+    private static Object[] replace(Object[] entries, int index, Object entry) {
+        Object[] result = entries.clone();
+        result[index] = entry;
+        return result;
+    }
+
+    private static Object[] remove(Object[] entries, int index) {
+        Object[] result = new Object[entries.length - 1];
+        arraycopy(entries, 0, result, 0, index);
+        arraycopy(entries, index + 1, result, index, result.length - index);
+        return result;
+    }
+
+    // The entries of a node are either books or child nodes.
+    private interface Node {
+
+        Book find(int hash, int shift, String isbn);
+
+        // Returns this node if nothing has changed.
+        Node with(int hash, int shift, Book book);
+
+        // Returns null if the node has become empty.
+        Node without(int hash, int shift, String isbn);
+
+        Object[] entries();
+    }
+
+    private static final class BitmapNode implements Node {
+
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] entries;
+
+        BitmapNode(int bitmap, Object[] entries) {
+            this.bitmap = bitmap;
+            this.entries = entries;
+        }
+
+        @Override
+        public Book find(int hash, int shift, String isbn) {
+            int bit = 1 << (hash >>> shift & MASK);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+
+            Object entry = entries[index(bit)];
+            if (entry instanceof Node) {
+                return ((Node) entry).find(hash, shift + BITS, isbn);
+            }
+            return ((Book) entry).getIsbn().equals(isbn) ? (Book) entry : null;
+        }
+
+        @Override
+        public Node with(int hash, int shift, Book book) {
+            int bit = 1 << (hash >>> shift & MASK);
+            int index = index(bit);
+            if ((bitmap & bit) == 0) {
+                return new BitmapNode(bitmap | bit, insert(entries, index, book));
+            }
+
+            Object entry = entries[index];
+            if (entry instanceof Node) {
+                Node node = ((Node) entry).with(hash, shift + BITS, book);
+                return node == entry ? this : new BitmapNode(bitmap, replace(entries, index, node));
+            }
+
+            Book existing = (Book) entry;
+            if (existing.getIsbn().equals(book.getIsbn())) {
+                return this;
+            }
+            return new BitmapNode(bitmap,
+                replace(entries, index, pair(existing, hash(existing.getIsbn()), book, hash, shift + BITS)));
+        }
+
+        @Override
+        public Node without(int hash, int shift, String isbn) {
+            int bit = 1 << (hash >>> shift & MASK);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+
+            int index = index(bit);
+            Object entry = entries[index];
+            if (entry instanceof Node) {
+                Node node = ((Node) entry).without(hash, shift + BITS, isbn);
+                if (node == entry) {
+                    return this;
+                }
+                if (node == null) {
+                    return bitmap == bit ? null : new BitmapNode(bitmap ^ bit, remove(entries, index));
+                }
+                // A child left with a single book is pulled up, so that the trie does not keep paths leading to one book.
+                Object[] children = node.entries();
+                return new BitmapNode(bitmap,
+                    replace(entries, index, children.length == 1 && children[0] instanceof Book ? children[0] : node));
+            }
+
+            if (!((Book) entry).getIsbn().equals(isbn)) {
+                return this;
+            }
+            return bitmap == bit ? null : new BitmapNode(bitmap ^ bit, remove(entries, index));
+        }
+
+        @Override
+        public Object[] entries() {
+            return entries;
+        }
+
+        private int index(int bit) {
+            return bitCount(bitmap & bit - 1);
+        }
+    }
+
+    private static final class CollisionNode implements Node {
+
+        private final int hash;
+        private final Object[] books;
+
+        CollisionNode(int hash, Object[] books) {
+            this.hash = hash;
+            this.books = books;
+        }
+
+        @Override
+        public Book find(int hash, int shift, String isbn) {
+            int index = indexOf(isbn);
+            return index < 0 ? null : (Book) books[index];
+        }
+
+        @Override
+        public Node with(int hash, int shift, Book book) {
+            return indexOf(book.getIsbn()) < 0 ? new CollisionNode(this.hash, insert(books, books.length, book)) : this;
+        }
+
+        @Override
+        public Node without(int hash, int shift, String isbn) {
+            int index = indexOf(isbn);
+            if (index < 0) {
+                return this;
+            }
+            return books.length == 1 ? null : new CollisionNode(this.hash, remove(books, index));
+        }
+
+        @Override
+        public Object[] entries() {
+            return books;
+        }
+
+        private int indexOf(String isbn) {
+            for (int i = 0; i < books.length; i++) {
+                if (((Book) books[i]).getIsbn().equals(isbn)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    // Walks the trie depth first with an explicit stack, the nodes never change so no care needs to be taken of writers.
+    private static final class BookIterator implements Iterator<Book> {
+
+        private final Object[][] entries = new Object[MAX_DEPTH][];
+        private final int[] positions = new int[MAX_DEPTH];
+        private int depth;
+        private Book next;
+
+        BookIterator(Node root) {
+            entries[0] = root.entries();
+            next = advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Book next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Book book = next;
+            next = advance();
+            return book;
+        }
+
+        private Book advance() {
+            while (depth >= 0) {
+                if (positions[depth] == entries[depth].length) {
+                    depth--;
+                    continue;
+                }
+
+                Object entry = entries[depth][positions[depth]++];
+                if (entry instanceof Book) {
+                    return (Book) entry;
+                }
+                depth++;
+                entries[depth] = ((Node) entry).entries();
+                positions[depth] = 0;
+            }
+            return null;
+        }
+    }
+}
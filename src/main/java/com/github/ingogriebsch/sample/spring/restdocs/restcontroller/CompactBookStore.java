@@ -0,0 +1,394 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Optional.empty;
+import static java.util.Optional.of;
+
+import java.util.Optional;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import lombok.NonNull;
+
+// Keeps isbns as primitive keys of an open addressing table and packs all titles into a single byte arena, so that a book
+// costs a few slots of primitive arrays instead of a map entry, a book and two strings.
+public class CompactBookStore implements BookStore {
+
+    private static final long EMPTY = 0;
+    // The number of digits is kept in the upper bits of a key so that leading zeros are not lost.
+    private static final int LENGTH_SHIFT = 59;
+    private static final int MAX_DIGITS = 17;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int INITIAL_ARENA_SIZE = 16 * 1024;
+    private static final int MAX_ARENA_SIZE = Integer.MAX_VALUE - 8;
+
+    private final StampedLock lock = new StampedLock();
+
+    private Table table = new Table(INITIAL_CAPACITY);
+    private byte[] arena = new byte[INITIAL_ARENA_SIZE];
+    private int arenaLength;
+    private int garbage;
+    private int size;
+
+    @Override
+    public Optional<Book> find(@NonNull String isbn) {
+        long key = key(isbn);
+        if (key == EMPTY) {
+            return empty();
+        }
+
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            Optional<Book> book = read(isbn, key);
+            if (lock.validate(stamp)) {
+                return book;
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return read(isbn, key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean insert(@NonNull Book book) {
+        long key = key(book.getIsbn());
+        if (key == EMPTY) {
+            throw new IllegalArgumentException(
+                "Isbn '" + book.getIsbn() + "' cannot be stored, it needs to consist of 1 to " + MAX_DIGITS + " digits!");
+        }
+        byte[] title = book.getTitle() != null ? book.getTitle().getBytes(UTF_8) : null;
+
+        long stamp = lock.writeLock();
+        try {
+            if (table.slot(key) >= 0) {
+                return false;
+            }
+            if (size + 1 > table.threshold) {
+                table = table.resize(table.keys.length * 2);
+            }
+            table.put(key, append(title));
+            size++;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean delete(@NonNull String isbn) {
+        long key = key(isbn);
+        if (key == EMPTY) {
+            return false;
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            int slot = table.slot(key);
+            if (slot < 0) {
+                return false;
+            }
+            garbage += recordLength(arena, table.offsets[slot]);
+            table.remove(slot);
+            size--;
+            if (garbage > INITIAL_ARENA_SIZE && garbage > arenaLength / 2) {
+                compact();
+            }
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean replace(@NonNull Book book) {
+        long key = key(book.getIsbn());
+        if (key == EMPTY) {
+            return false;
+        }
+        byte[] title = book.getTitle() != null ? book.getTitle().getBytes(UTF_8) : null;
+
+        long stamp = lock.writeLock();
+        try {
+            int slot = table.slot(key);
+            if (slot < 0) {
+                return false;
+            }
+            garbage += recordLength(arena, table.offsets[slot]);
+            table.offsets[slot] = append(title);
+            if (garbage > INITIAL_ARENA_SIZE && garbage > arenaLength / 2) {
+                compact();
+            }
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Stream<Book> stream() {
+        // The keys are copied up front, so each book which is available during the whole traversal is returned once.
+        long[] keys;
+        long stamp = lock.readLock();
+        try {
+            keys = new long[size];
+            int i = 0;
+            for (long key : table.keys) {
+                if (key != EMPTY) {
+                    keys[i++] = key;
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return LongStream.of(keys).mapToObj(CompactBookStore::isbn).map(this::find).filter(Optional::isPresent)
+            .map(Optional::get);
+    }
+
+    @Override
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public long memoryFootprint() {
+        long stamp = lock.readLock();
+        try {
+            return table.keys.length * (long) (Long.BYTES + Integer.BYTES) + arena.length;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Might be called without holding the lock, therefore every access is checked against the bounds of the arrays.
+    private Optional<Book> read(String isbn, long key) {
+        Table table = this.table;
+        byte[] arena = this.arena;
+
+        int slot = table.slot(key);
+        if (slot < 0) {
+            return empty();
+        }
+
+        int offset = table.offsets[slot];
+        int header = offset >= 0 && offset < arena.length ? varIntLength(arena, offset) : 0;
+        if (header == 0) {
+            return empty();
+        }
+        int length = varInt(arena, offset) - 1;
+        if (length < 0) {
+            return of(new Book(isbn, null));
+        }
+        // Computed in long arithmetic, because a length torn by a concurrent compaction may overflow an int.
+        if ((long) offset + header + length > arena.length) {
+            return empty();
+        }
+        return of(new Book(isbn, new String(arena, offset + header, length, UTF_8)));
+    }
+
+    private int append(byte[] title) {
+        int length = title != null ? title.length : -1;
+        ensureArenaCapacity(5 + Math.max(length, 0));
+
+        int offset = arenaLength;
+        arenaLength = writeVarInt(arena, arenaLength, length + 1);
+        if (title != null) {
+            System.arraycopy(title, 0, arena, arenaLength, title.length);
+            arenaLength += title.length;
+        }
+        return offset;
+    }
+
+    private void ensureArenaCapacity(int required) {
+        if (arenaLength + required <= arena.length) {
+            return;
+        }
+        if ((long) arenaLength + required > MAX_ARENA_SIZE) {
+            throw new IllegalStateException("The titles of the books exceed the maximum size of the arena!");
+        }
+        byte[] grown = new byte[(int) Math.min(MAX_ARENA_SIZE, Math.max(arenaLength + required, arena.length * 3L / 2))];
+        System.arraycopy(arena, 0, grown, 0, arenaLength);
+        arena = grown;
+    }
+
+    private void compact() {
+        int live = arenaLength - garbage;
+        byte[] compacted = new byte[Math.max(INITIAL_ARENA_SIZE, live + live / 2)];
+        int length = 0;
+        for (int slot = 0; slot < table.keys.length; slot++) {
+            if (table.keys[slot] != EMPTY) {
+                int offset = table.offsets[slot];
+                int recordLength = recordLength(arena, offset);
+                System.arraycopy(arena, offset, compacted, length, recordLength);
+                table.offsets[slot] = length;
+                length += recordLength;
+            }
+        }
+        arena = compacted;
+        arenaLength = length;
+        garbage = 0;
+    }
+
+    static long key(String isbn) {
+        int length = isbn.length();
+        if (length == 0 || length > MAX_DIGITS) {
+            return EMPTY;
+        }
+
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = isbn.charAt(i);
+            if (c < '0' || c > '9') {
+                return EMPTY;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return (long) length << LENGTH_SHIFT | value;
+    }
+
+    static String isbn(long key) {
+        char[] digits = new char[(int) (key >>> LENGTH_SHIFT)];
+        long value = key & (1L << LENGTH_SHIFT) - 1;
+        for (int i = digits.length - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(digits);
+    }
+
+    private static int recordLength(byte[] arena, int offset) {
+        return varIntLength(arena, offset) + Math.max(varInt(arena, offset) - 1, 0);
+    }
+
+    private static int writeVarInt(byte[] buffer, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[offset++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        buffer[offset++] = (byte) value;
+        return offset;
+    }
+
+    private static int varInt(byte[] buffer, int offset) {
+        int value = 0;
+        for (int shift = 0; offset < buffer.length && shift < 32; shift += 7) {
+            byte b = buffer[offset++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+
+    // Returns 0 if the arena does not contain a complete length at the given offset.
+    private static int varIntLength(byte[] buffer, int offset) {
+        for (int i = offset; i < buffer.length && i - offset < 5; i++) {
+            if (buffer[i] >= 0) {
+                return i - offset + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static final class Table {
+
+        private final long[] keys;
+        private final int[] offsets;
+        private final int mask;
+        private final int threshold;
+
+        private Table(int capacity) {
+            keys = new long[capacity];
+            offsets = new int[capacity];
+            mask = capacity - 1;
+            threshold = capacity / 4 * 3;
+        }
+
+        // Returns the slot of the given key or -1. The probing is bounded so that it terminates even during a concurrent
+        // modification.
+        private int slot(long key) {
+            for (int i = index(key), probes = 0; probes < keys.length; i = i + 1 & mask, probes++) {
+                long candidate = keys[i];
+                if (candidate == key) {
+                    return i;
+                }
+                if (candidate == EMPTY) {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        private void put(long key, int offset) {
+            int i = index(key);
+            while (keys[i] != EMPTY) {
+                i = i + 1 & mask;
+            }
+            keys[i] = key;
+            offsets[i] = offset;
+        }
+
+        // Shifts the following entries of the cluster back instead of leaving a tombstone behind.
+        private void remove(int slot) {
+            int hole = slot;
+            for (int i = slot + 1 & mask; keys[i] != EMPTY; i = i + 1 & mask) {
+                if ((i - index(keys[i]) & mask) >= (i - hole & mask)) {
+                    keys[hole] = keys[i];
+                    offsets[hole] = offsets[i];
+                    hole = i;
+                }
+            }
+            keys[hole] = EMPTY;
+            offsets[hole] = 0;
+        }
+
+        private Table resize(int capacity) {
+            Table resized = new Table(capacity);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) {
+                    resized.put(keys[i], offsets[i]);
+                }
+            }
+            return resized;
+        }
+
+        private int index(long key) {
+            // Finalizer of MurmurHash3 to spread the mostly sequential isbns over the whole table.
+            key ^= key >>> 33;
+            key *= 0xff51afd7ed558ccdL;
+            key ^= key >>> 33;
+            key *= 0xc4ceb9fe1a85ec53L;
+            key ^= key >>> 33;
+            return (int) key & mask;
+        }
+    }
+}
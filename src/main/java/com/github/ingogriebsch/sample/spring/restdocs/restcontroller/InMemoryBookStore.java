@@ -0,0 +1,93 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.Optional.ofNullable;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import lombok.NonNull;
+
+public class InMemoryBookStore implements BookStore {
+
+    // Rough estimate of the heap occupied by a map entry, the book and the two strings without their characters.
+    private static final int ENTRY_OVERHEAD = 32 + 24 + 2 * (24 + 16);
+
+    private final ConcurrentMap<String, Book> books = new ConcurrentHashMap<>();
+    // Updated by every insert and delete, an adder avoids that all writers contend for the same value.
+    private final LongAdder memoryFootprint = new LongAdder();
+
+    @Override
+    public Optional<Book> find(@NonNull String isbn) {
+        return ofNullable(books.get(isbn));
+    }
+
+    @Override
+    public boolean insert(@NonNull Book book) {
+        if (books.putIfAbsent(book.getIsbn(), book) != null) {
+            return false;
+        }
+        memoryFootprint.add(memoryFootprint(book));
+        return true;
+    }
+
+    @Override
+    public boolean delete(@NonNull String isbn) {
+        Book book = books.remove(isbn);
+        if (book == null) {
+            return false;
+        }
+        memoryFootprint.add(-memoryFootprint(book));
+        return true;
+    }
+
+    @Override
+    public boolean replace(@NonNull Book book) {
+        Book previous = books.replace(book.getIsbn(), book);
+        if (previous == null) {
+            return false;
+        }
+        memoryFootprint.add(memoryFootprint(book) - memoryFootprint(previous));
+        return true;
+    }
+
+    @Override
+    public Stream<Book> stream() {
+        return books.values().stream();
+    }
+
+    @Override
+    public int size() {
+        return books.size();
+    }
+
+    @Override
+    public long memoryFootprint() {
+        return memoryFootprint.sum();
+    }
+
+    private static long memoryFootprint(Book book) {
+        return ENTRY_OVERHEAD + 2L * (book.getIsbn().length() + (book.getTitle() != null ? book.getTitle().length() : 0));
+    }
+}
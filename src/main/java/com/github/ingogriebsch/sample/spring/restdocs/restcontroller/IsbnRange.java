@@ -0,0 +1,85 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import java.util.NavigableSet;
+
+import lombok.NonNull;
+import lombok.Value;
+
+// A range of isbns in their natural order. The lower bound is inclusive, the upper bound exclusive and a missing bound means
+// that the range is not limited on that side.
+@Value
+public class IsbnRange {
+
+    public static final IsbnRange ALL = new IsbnRange(null, null);
+
+    String from;
+    String to;
+
+    public static IsbnRange of(String prefix, String from, String to) {
+        IsbnRange range = new IsbnRange(from, to);
+        return prefix != null ? range.intersect(prefix(prefix)) : range;
+    }
+
+    public static IsbnRange prefix(@NonNull String prefix) {
+        return new IsbnRange(prefix, successor(prefix));
+    }
+
+    public boolean isEmpty() {
+        return from != null && to != null && from.compareTo(to) >= 0;
+    }
+
+    public IsbnRange intersect(@NonNull IsbnRange other) {
+        return new IsbnRange(max(from, other.from), min(to, other.to));
+    }
+
+    NavigableSet<String> apply(@NonNull NavigableSet<String> isbns) {
+        if (isEmpty()) {
+            return isbns.subSet("", true, "", false);
+        }
+        if (from != null && to != null) {
+            return isbns.subSet(from, true, to, false);
+        }
+        if (from != null) {
+            return isbns.tailSet(from, true);
+        }
+        return to != null ? isbns.headSet(to, false) : isbns;
+    }
+
+    // The smallest string which is greater than all strings starting with the given prefix, or null if there is none.
+    private static String successor(String prefix) {
+        for (int i = prefix.length() - 1; i >= 0; i--) {
+            char c = prefix.charAt(i);
+            if (c != Character.MAX_VALUE) {
+                return prefix.substring(0, i) + (char) (c + 1);
+            }
+        }
+        return null;
+    }
+
+    private static String max(String a, String b) {
+        return a == null ? b : b == null ? a : a.compareTo(b) >= 0 ? a : b;
+    }
+
+    private static String min(String a, String b) {
+        return a == null ? b : b == null ? a : a.compareTo(b) <= 0 ? a : b;
+    }
+}
@@ -0,0 +1,137 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+// Validates and converts ISBN-10 and ISBN-13 numbers. Hyphens and spaces between the digits are ignored. The validation walks
+// the characters once and does not allocate, the canonical form of an isbn is the ISBN-13 without any separators.
+public final class Isbns {
+
+    private static final int ISBN_10_LENGTH = 10;
+    private static final int ISBN_13_LENGTH = 13;
+    private static final String ISBN_10_PREFIX = "978";
+
+    private Isbns() {
+    }
+
+    public static boolean isValid(CharSequence isbn) {
+        return length(isbn) > 0;
+    }
+
+    // Returns the canonical ISBN-13 of the given isbn or null if it is not valid.
+    public static String canonical(CharSequence isbn) {
+        int length = length(isbn);
+        if (length == ISBN_13_LENGTH && isbn.length() == ISBN_13_LENGTH) {
+            return isbn.toString();
+        }
+        if (length == 0) {
+            return null;
+        }
+
+        StringBuilder canonical = new StringBuilder(ISBN_13_LENGTH);
+        if (length == ISBN_10_LENGTH) {
+            canonical.append(ISBN_10_PREFIX);
+        }
+        for (int i = 0; i < isbn.length() && canonical.length() < ISBN_13_LENGTH - 1; i++) {
+            char c = isbn.charAt(i);
+            if (!isSeparator(c)) {
+                canonical.append(c);
+            }
+        }
+        return canonical.append(checkDigit13(canonical)).toString();
+    }
+
+    // Returns the ISBN-10 of the given isbn or null if it is not valid or has no ISBN-10 representation.
+    public static String isbn10(CharSequence isbn) {
+        String canonical = canonical(isbn);
+        if (canonical == null || !canonical.startsWith(ISBN_10_PREFIX)) {
+            return null;
+        }
+
+        StringBuilder isbn10 = new StringBuilder(ISBN_10_LENGTH).append(canonical, ISBN_10_PREFIX.length(), ISBN_13_LENGTH - 1);
+        return isbn10.append(checkDigit10(isbn10)).toString();
+    }
+
+    static char checkDigit13(CharSequence digits) {
+        int sum = 0;
+        for (int i = 0; i < ISBN_13_LENGTH - 1; i++) {
+            sum += (digits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return (char) ('0' + (10 - sum % 10) % 10);
+    }
+
+    static char checkDigit10(CharSequence digits) {
+        int sum = 0;
+        for (int i = 0; i < ISBN_10_LENGTH - 1; i++) {
+            sum += (digits.charAt(i) - '0') * (ISBN_10_LENGTH - i);
+        }
+        int check = (11 - sum % 11) % 11;
+        return check == 10 ? 'X' : (char) ('0' + check);
+    }
+
+    // Returns the number of digits of the given isbn if it is a valid ISBN-10 or ISBN-13, otherwise 0.
+    private static int length(CharSequence isbn) {
+        if (isbn == null || isbn.length() == 0 || isSeparator(isbn.charAt(0)) || isSeparator(isbn.charAt(isbn.length() - 1))) {
+            return 0;
+        }
+
+        int digits = 0, sum10 = 0, sum13 = 0, prefix = 0;
+        boolean checkX = false;
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (isSeparator(c)) {
+                continue;
+            }
+
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if ((c == 'X' || c == 'x') && digits == ISBN_10_LENGTH - 1) {
+                // Only allowed as the check digit of an ISBN-10, where it stands for 10.
+                digit = 10;
+                checkX = true;
+            } else {
+                return 0;
+            }
+            if (digits == ISBN_13_LENGTH) {
+                return 0;
+            }
+
+            sum10 += digit * (ISBN_10_LENGTH - digits);
+            sum13 += digit * (digits % 2 == 0 ? 1 : 3);
+            if (digits < ISBN_10_PREFIX.length()) {
+                prefix = prefix * 10 + digit;
+            }
+            digits++;
+        }
+
+        if (digits == ISBN_10_LENGTH) {
+            return sum10 % 11 == 0 ? digits : 0;
+        }
+        // An ISBN-13 is an EAN-13 starting with one of the book land prefixes 978 or 979.
+        if (digits == ISBN_13_LENGTH && !checkX && (prefix == 978 || prefix == 979)) {
+            return sum13 % 10 == 0 ? digits : 0;
+        }
+        return 0;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '-' || c == ' ';
+    }
+}
@@ -0,0 +1,403 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.lang.Long.parseLong;
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.move;
+import static java.nio.file.Files.newDirectoryStream;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookStoreProperties.Journal.FsyncPolicy.BATCH;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookStoreProperties.Journal.FsyncPolicy.INTERVAL;
+import static com.google.common.util.concurrent.Striped.lock;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookStoreProperties.Journal;
+import com.google.common.io.CountingInputStream;
+import com.google.common.util.concurrent.Striped;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+public class JournalingBookStore implements BookStore, Closeable {
+
+    private static final Pattern JOURNAL = Pattern.compile("journal-(\\d+)\\.log");
+    private static final Pattern SNAPSHOT = Pattern.compile("snapshot-(\\d+)\\.bin");
+    private static final int SNAPSHOT_MAGIC = 0x424F4F4B;
+    private static final int LOCK_STRIPES = 64;
+
+    private final BookStore books;
+    // Writes of the same isbn are journaled in the order they are applied, writes of different isbns do not wait for each other.
+    private final Striped<Lock> writeLocks = lock(LOCK_STRIPES);
+    // Writers share the journal, taking a snapshot switches it exclusively.
+    private final ReadWriteLock journalLock = new ReentrantReadWriteLock();
+    private final Object snapshotLock = new Object();
+    private final Path directory;
+    private final Journal properties;
+    private final ScheduledExecutorService scheduler;
+
+    private BookJournal journal;
+    private long generation;
+
+    public JournalingBookStore(@NonNull Journal properties) throws IOException {
+        this(properties, new InMemoryBookStore());
+    }
+
+    public JournalingBookStore(@NonNull Journal properties, @NonNull BookStore books) throws IOException {
+        if (books.size() > 0) {
+            throw new IllegalArgumentException("The store which is recovered from the journal needs to be empty!");
+        }
+        this.books = books;
+        this.properties = properties;
+        this.directory = createDirectories(Paths.get(properties.getDirectory()));
+
+        recover();
+
+        scheduler = newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "book-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // A batch which is not completed by further writes is forced after the interval as well.
+        if (INTERVAL.equals(properties.getFsyncPolicy()) || BATCH.equals(properties.getFsyncPolicy())) {
+            scheduler.scheduleWithFixedDelay(() -> journal().force(), properties.getFsyncIntervalMillis(),
+                properties.getFsyncIntervalMillis(), MILLISECONDS);
+        }
+        if (properties.getSnapshotIntervalMillis() > 0) {
+            scheduler.scheduleWithFixedDelay(this::snapshotQuietly, properties.getSnapshotIntervalMillis(),
+                properties.getSnapshotIntervalMillis(), MILLISECONDS);
+        }
+    }
+
+    @Override
+    public Optional<Book> find(@NonNull String isbn) {
+        return books.find(isbn);
+    }
+
+    @Override
+    public boolean insert(@NonNull Book book) {
+        BookJournal journal;
+        long sequence;
+        Lock writeLock = writeLocks.get(book.getIsbn());
+        journalLock.readLock().lock();
+        writeLock.lock();
+        try {
+            if (!books.insert(book)) {
+                return false;
+            }
+            journal = this.journal;
+            sequence = journal.insert(book);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writeLock.unlock();
+            journalLock.readLock().unlock();
+        }
+        journal.sync(sequence);
+        return true;
+    }
+
+    @Override
+    public boolean delete(@NonNull String isbn) {
+        BookJournal journal;
+        long sequence;
+        Lock writeLock = writeLocks.get(isbn);
+        journalLock.readLock().lock();
+        writeLock.lock();
+        try {
+            if (!books.delete(isbn)) {
+                return false;
+            }
+            journal = this.journal;
+            sequence = journal.delete(isbn);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writeLock.unlock();
+            journalLock.readLock().unlock();
+        }
+        journal.sync(sequence);
+        return true;
+    }
+
+    @Override
+    public boolean replace(@NonNull Book book) {
+        BookJournal journal;
+        long sequence;
+        Lock writeLock = writeLocks.get(book.getIsbn());
+        journalLock.readLock().lock();
+        writeLock.lock();
+        try {
+            if (!books.replace(book)) {
+                return false;
+            }
+            journal = this.journal;
+            sequence = journal.replace(book);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writeLock.unlock();
+            journalLock.readLock().unlock();
+        }
+        journal.sync(sequence);
+        return true;
+    }
+
+    @Override
+    public Stream<Book> stream() {
+        return books.stream();
+    }
+
+    @Override
+    public int size() {
+        return books.size();
+    }
+
+    @Override
+    public long memoryFootprint() {
+        return books.memoryFootprint();
+    }
+
+    @Override
+    public Optional<BookSnapshot> view() {
+        return books.view();
+    }
+
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            long started = System.nanoTime();
+
+            // Writes continue against the next generation of the journal while the snapshot is taken. Replaying that journal
+            // on top of the snapshot is safe, because inserts of known and deletes of unknown books are simply ignored.
+            BookJournal previous;
+            long snapshotGeneration;
+            journalLock.writeLock().lock();
+            try {
+                previous = journal;
+                snapshotGeneration = generation + 1;
+                journal = openJournal(snapshotGeneration);
+                generation = snapshotGeneration;
+            } finally {
+                journalLock.writeLock().unlock();
+            }
+            previous.close();
+
+            Path snapshot = directory.resolve(format("snapshot-%d.bin", snapshotGeneration));
+            Path temporary = directory.resolve(snapshot.getFileName() + ".tmp");
+            long count = writeSnapshot(temporary);
+            move(temporary, snapshot, ATOMIC_MOVE);
+
+            for (Path file : files(JOURNAL).headMap(snapshotGeneration).values()) {
+                deleteIfExists(file);
+            }
+            for (Path file : files(SNAPSHOT).headMap(snapshotGeneration).values()) {
+                deleteIfExists(file);
+            }
+
+            log.info("Took snapshot '{}' containing {} books in {} ms.", snapshot, count,
+                NANOSECONDS.toMillis(System.nanoTime() - started));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshot();
+        journal().close();
+    }
+
+    private void recover() throws IOException {
+        long started = System.nanoTime();
+
+        // The latest snapshot which is complete is loaded, older ones are only used if the latest one is damaged.
+        long snapshotGeneration = 0;
+        long snapshotBooks = 0;
+        for (Entry<Long, Path> snapshot : files(SNAPSHOT).descendingMap().entrySet()) {
+            Optional<Long> loaded = readSnapshot(snapshot.getValue());
+            if (loaded.isPresent()) {
+                snapshotGeneration = snapshot.getKey();
+                snapshotBooks = loaded.get();
+                break;
+            }
+        }
+
+        long records = 0;
+        SortedMap<Long, Path> journals = files(JOURNAL);
+        for (Path file : journals.tailMap(snapshotGeneration).values()) {
+            records += BookJournal.replay(file, books);
+        }
+
+        generation = Math.max(snapshotGeneration, journals.isEmpty() ? 0 : journals.lastKey()) + 1;
+        journal = openJournal(generation);
+
+        log.info("Recovered {} books from a snapshot containing {} books and {} journal records in {} ms.", books.size(),
+            snapshotBooks, records, NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    private BookJournal openJournal(long generation) throws IOException {
+        return new BookJournal(directory.resolve(format("journal-%d.log", generation)), properties.getSegmentSize(),
+            properties.getFsyncPolicy(), properties.getFsyncBatchSize());
+    }
+
+    private BookJournal journal() {
+        journalLock.readLock().lock();
+        try {
+            return journal;
+        } finally {
+            journalLock.readLock().unlock();
+        }
+    }
+
+    private long writeSnapshot(Path file) throws IOException {
+        long count = 0;
+        try (FileOutputStream stream = new FileOutputStream(file.toFile());
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(stream), new CRC32());
+            DataOutputStream output = new DataOutputStream(checked)) {
+            output.writeInt(SNAPSHOT_MAGIC);
+            for (Iterator<Book> iterator = books.stream().iterator(); iterator.hasNext();) {
+                Book book = iterator.next();
+                output.writeByte(1);
+                write(output, book.getIsbn());
+                write(output, book.getTitle());
+                count++;
+            }
+            output.writeByte(0);
+            output.writeLong(count);
+            // The checksum covers everything written before it.
+            output.writeInt((int) checked.getChecksum().getValue());
+            output.flush();
+            stream.getFD().sync();
+        }
+        return count;
+    }
+
+    private Optional<Long> readSnapshot(Path file) throws IOException {
+        BookStore snapshot = new InMemoryBookStore();
+        try (CountingInputStream counting = new CountingInputStream(new BufferedInputStream(Files.newInputStream(file)));
+            CheckedInputStream checked = new CheckedInputStream(counting, new CRC32());
+            DataInputStream input = new DataInputStream(checked)) {
+            long size = Files.size(file);
+            if (input.readInt() != SNAPSHOT_MAGIC) {
+                log.warn("Snapshot '{}' is not valid. Ignoring it!", file);
+                return Optional.empty();
+            }
+            while (input.readByte() != 0) {
+                snapshot.insert(new Book(read(input, size - counting.getCount()), read(input, size - counting.getCount())));
+            }
+            if (input.readLong() != snapshot.size()) {
+                log.warn("Snapshot '{}' is not complete. Ignoring it!", file);
+                return Optional.empty();
+            }
+            int checksum = (int) checked.getChecksum().getValue();
+            if (input.readInt() != checksum) {
+                throw new StreamCorruptedException("Checksum does not match!");
+            }
+        } catch (EOFException e) {
+            log.warn("Snapshot '{}' is truncated. Ignoring it!", file);
+            return Optional.empty();
+        } catch (StreamCorruptedException e) {
+            log.warn("Snapshot '{}' is corrupt. Ignoring it!", file);
+            return Optional.empty();
+        }
+
+        snapshot.stream().forEach(books::insert);
+        return Optional.of((long) snapshot.size());
+    }
+
+    private TreeMap<Long, Path> files(Pattern pattern) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                Matcher matcher = pattern.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    files.put(parseLong(matcher.group(1)), file);
+                }
+            }
+        }
+        return files;
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (Exception e) {
+            log.error("Taking a snapshot failed!", e);
+        }
+    }
+
+    private static void write(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    // The length is checked before the string is allocated, a corrupt one could otherwise exhaust the heap.
+    private static String read(DataInputStream input, long remaining) throws IOException {
+        int length = input.readInt();
+        if (length < 0 || length > remaining - 4) {
+            throw new StreamCorruptedException("Length " + length + " exceeds the snapshot!");
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,396 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.nio.ByteBuffer.allocateDirect;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Optional.empty;
+import static java.util.Optional.of;
+
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.CompactBookStore.key;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import lombok.NonNull;
+
+// Keeps the hash index and the titles in direct buffers, so that the heap (and therefore the garbage collector) does not
+// grow with the catalog. Books are only decoded when they are accessed.
+public class OffHeapBookStore implements BookStore {
+
+    private static final long EMPTY = 0;
+    private static final int NO_TITLE = -1;
+    private static final int SLOT_SIZE = Long.BYTES * 2;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int INITIAL_PAGE_SIZE = 64 * 1024;
+    private static final int DEFAULT_PAGE_SIZE = 64 * 1024 * 1024;
+
+    private final StampedLock lock = new StampedLock();
+    private final int maxPageSize;
+
+    private Index index = new Index(INITIAL_CAPACITY);
+    private Titles titles;
+    private long garbage;
+    private int size;
+
+    public OffHeapBookStore() {
+        this(DEFAULT_PAGE_SIZE);
+    }
+
+    OffHeapBookStore(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+        this.titles = new Titles(maxPageSize);
+    }
+
+    @Override
+    public Optional<Book> find(@NonNull String isbn) {
+        long key = key(isbn);
+        if (key == EMPTY) {
+            return empty();
+        }
+
+        long stamp = lock.readLock();
+        try {
+            long slot = index.slot(key);
+            return slot < 0 ? empty() : of(new Book(isbn, titles.read(index.offset(slot))));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean insert(@NonNull Book book) {
+        long key = key(book.getIsbn());
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Isbn '" + book.getIsbn() + "' cannot be stored, it needs to consist of digits!");
+        }
+        byte[] title = book.getTitle() != null ? book.getTitle().getBytes(UTF_8) : null;
+
+        long stamp = lock.writeLock();
+        try {
+            if (index.slot(key) >= 0) {
+                return false;
+            }
+            if (size + 1 > index.threshold) {
+                index = index.resize(index.capacity * 2);
+            }
+            index.put(key, titles.append(title));
+            size++;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean delete(@NonNull String isbn) {
+        long key = key(isbn);
+        if (key == EMPTY) {
+            return false;
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            long slot = index.slot(key);
+            if (slot < 0) {
+                return false;
+            }
+            garbage += titles.recordLength(index.offset(slot));
+            index.remove(slot);
+            size--;
+            if (garbage > INITIAL_PAGE_SIZE && garbage > titles.length() / 2) {
+                compact();
+            }
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean replace(@NonNull Book book) {
+        long key = key(book.getIsbn());
+        if (key == EMPTY) {
+            return false;
+        }
+        byte[] title = book.getTitle() != null ? book.getTitle().getBytes(UTF_8) : null;
+
+        long stamp = lock.writeLock();
+        try {
+            long slot = index.slot(key);
+            if (slot < 0) {
+                return false;
+            }
+            garbage += titles.recordLength(index.offset(slot));
+            index.offset(slot, titles.append(title));
+            if (garbage > INITIAL_PAGE_SIZE && garbage > titles.length() / 2) {
+                compact();
+            }
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Stream<Book> stream() {
+        // The keys are copied up front, so each book which is available during the whole traversal is returned once.
+        long[] keys;
+        long stamp = lock.readLock();
+        try {
+            keys = new long[size];
+            int i = 0;
+            for (long slot = 0; slot < index.capacity; slot++) {
+                long key = index.key(slot);
+                if (key != EMPTY) {
+                    keys[i++] = key;
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return LongStream.of(keys).mapToObj(CompactBookStore::isbn).map(this::find).filter(Optional::isPresent)
+            .map(Optional::get);
+    }
+
+    @Override
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public long memoryFootprint() {
+        long stamp = lock.readLock();
+        try {
+            return index.capacity * SLOT_SIZE + titles.capacity();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void compact() {
+        Titles compacted = new Titles(maxPageSize);
+        for (long slot = 0; slot < index.capacity; slot++) {
+            if (index.key(slot) != EMPTY) {
+                index.offset(slot, compacted.copy(titles, index.offset(slot)));
+            }
+        }
+        titles = compacted;
+        garbage = 0;
+    }
+
+    // Slots of 16 bytes holding the key and the offset of the title, spread over pages so that the index is not limited
+    // by the maximum size of a single buffer.
+    private static final class Index {
+
+        private static final int SLOTS_PER_PAGE = 1 << 20;
+
+        private final ByteBuffer[] pages;
+        private final long capacity;
+        private final long mask;
+        private final long threshold;
+
+        private Index(long capacity) {
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            this.threshold = capacity / 4 * 3;
+            pages = new ByteBuffer[(int) ((capacity + SLOTS_PER_PAGE - 1) / SLOTS_PER_PAGE)];
+            for (int i = 0; i < pages.length; i++) {
+                pages[i] = allocateDirect((int) Math.min(capacity, SLOTS_PER_PAGE) * SLOT_SIZE);
+            }
+        }
+
+        private long slot(long key) {
+            for (long i = index(key);; i = i + 1 & mask) {
+                long candidate = key(i);
+                if (candidate == key) {
+                    return i;
+                }
+                if (candidate == EMPTY) {
+                    return -1;
+                }
+            }
+        }
+
+        private void put(long key, long offset) {
+            long i = index(key);
+            while (key(i) != EMPTY) {
+                i = i + 1 & mask;
+            }
+            key(i, key);
+            offset(i, offset);
+        }
+
+        // Shifts the following entries of the cluster back instead of leaving a tombstone behind.
+        private void remove(long slot) {
+            long hole = slot;
+            for (long i = slot + 1 & mask; key(i) != EMPTY; i = i + 1 & mask) {
+                if ((i - index(key(i)) & mask) >= (i - hole & mask)) {
+                    key(hole, key(i));
+                    offset(hole, offset(i));
+                    hole = i;
+                }
+            }
+            key(hole, EMPTY);
+            offset(hole, 0);
+        }
+
+        private Index resize(long capacity) {
+            Index resized = new Index(capacity);
+            for (long i = 0; i < this.capacity; i++) {
+                long key = key(i);
+                if (key != EMPTY) {
+                    resized.put(key, offset(i));
+                }
+            }
+            return resized;
+        }
+
+        private long key(long slot) {
+            return page(slot).getLong(position(slot));
+        }
+
+        private void key(long slot, long key) {
+            page(slot).putLong(position(slot), key);
+        }
+
+        private long offset(long slot) {
+            return page(slot).getLong(position(slot) + Long.BYTES);
+        }
+
+        private void offset(long slot, long offset) {
+            page(slot).putLong(position(slot) + Long.BYTES, offset);
+        }
+
+        private ByteBuffer page(long slot) {
+            return pages[(int) (slot / SLOTS_PER_PAGE)];
+        }
+
+        private static int position(long slot) {
+            return (int) (slot % SLOTS_PER_PAGE) * SLOT_SIZE;
+        }
+
+        private long index(long key) {
+            // Finalizer of MurmurHash3 to spread the mostly sequential isbns over the whole index.
+            key ^= key >>> 33;
+            key *= 0xff51afd7ed558ccdL;
+            key ^= key >>> 33;
+            key *= 0xc4ceb9fe1a85ec53L;
+            key ^= key >>> 33;
+            return key & mask;
+        }
+    }
+
+    // Length prefixed UTF-8 titles appended to pages which double in size up to the configured size. An offset holds the
+    // index of the page in its upper and the position inside of the page in its lower half, a record never spans two pages.
+    private static final class Titles {
+
+        private final int maxPageSize;
+        private final List<ByteBuffer> pages = new ArrayList<>();
+        private long length;
+        private long capacity;
+
+        private Titles(int maxPageSize) {
+            this.maxPageSize = maxPageSize;
+        }
+
+        private long append(byte[] title) {
+            ByteBuffer page = page(Integer.BYTES + (title != null ? title.length : 0));
+            long offset = offset(page);
+            page.putInt(title != null ? title.length : NO_TITLE);
+            if (title != null) {
+                page.put(title);
+            }
+            length += page.position() - (int) offset;
+            return offset;
+        }
+
+        private long copy(Titles source, long offset) {
+            ByteBuffer record = source.record(offset);
+            ByteBuffer page = page(record.remaining());
+            long copied = offset(page);
+            length += record.remaining();
+            page.put(record);
+            return copied;
+        }
+
+        private String read(long offset) {
+            ByteBuffer record = record(offset);
+            int titleLength = record.getInt();
+            if (titleLength == NO_TITLE) {
+                return null;
+            }
+            byte[] title = new byte[titleLength];
+            record.get(title);
+            return new String(title, UTF_8);
+        }
+
+        private int recordLength(long offset) {
+            return record(offset).remaining();
+        }
+
+        private long length() {
+            return length;
+        }
+
+        private long capacity() {
+            return capacity;
+        }
+
+        private long offset(ByteBuffer page) {
+            return (long) (pages.size() - 1) << 32 | page.position();
+        }
+
+        private ByteBuffer record(long offset) {
+            ByteBuffer page = pages.get((int) (offset >>> 32));
+            int position = (int) offset;
+            int titleLength = page.getInt(position);
+            ByteBuffer record = page.duplicate();
+            record.limit(position + Integer.BYTES + Math.max(titleLength, 0)).position(position);
+            return record;
+        }
+
+        private ByteBuffer page(int recordLength) {
+            if (recordLength > maxPageSize) {
+                throw new IllegalArgumentException(
+                    "The title of a book must not exceed " + (maxPageSize - Integer.BYTES) + " bytes!");
+            }
+
+            ByteBuffer page = pages.isEmpty() ? null : pages.get(pages.size() - 1);
+            if (page == null || page.remaining() < recordLength) {
+                int pageSize = page == null ? INITIAL_PAGE_SIZE : (int) Math.min(maxPageSize, page.capacity() * 2L);
+                page = allocateDirect(Math.max(Math.min(pageSize, maxPageSize), recordLength));
+                pages.add(page);
+                capacity += page.capacity();
+            }
+            return page;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import lombok.NonNull;
+
+// Partitions the books by the hash of their isbn into independent stores, so that writers of different shards never contend
+// for the same lock or counter. Streaming the books concatenates the weakly consistent streams of the shards one after the
+// other without locking all of them.
+public class ShardedBookStore implements BookStore {
+
+    private final BookStore[] shards;
+
+    public ShardedBookStore(int shards, @NonNull Supplier<BookStore> shard) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("Shards must be positive!");
+        }
+        this.shards = new BookStore[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = shard.get();
+        }
+    }
+
+    @Override
+    public Optional<Book> find(@NonNull String isbn) {
+        return shard(isbn).find(isbn);
+    }
+
+    @Override
+    public boolean insert(@NonNull Book book) {
+        return shard(book.getIsbn()).insert(book);
+    }
+
+    @Override
+    public boolean delete(@NonNull String isbn) {
+        return shard(isbn).delete(isbn);
+    }
+
+    @Override
+    public boolean replace(@NonNull Book book) {
+        return shard(book.getIsbn()).replace(book);
+    }
+
+    @Override
+    public Stream<Book> stream() {
+        return Arrays.stream(shards).flatMap(BookStore::stream);
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (BookStore shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    @Override
+    public long memoryFootprint() {
+        long memoryFootprint = 0;
+        for (BookStore shard : shards) {
+            memoryFootprint += shard.memoryFootprint();
+        }
+        return memoryFootprint;
+    }
+
+    int shards() {
+        return shards.length;
+    }
+
+    private BookStore shard(String isbn) {
+        // Spreads the hash code, the isbns only differ in a few digits and therefore in the lower bits of their hash code.
+        int hash = isbn.hashCode() * 0x9E3779B9;
+        return shards[(int) ((hash & 0xFFFFFFFFL) * shards.length >>> 32)];
+    }
+}
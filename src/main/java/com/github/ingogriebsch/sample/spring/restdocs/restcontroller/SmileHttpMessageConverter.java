@@ -0,0 +1,45 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.APPLICATION_SMILE_VALUE;
+import static org.springframework.http.MediaType.valueOf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+
+@Component
+public class SmileHttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+
+    public SmileHttpMessageConverter() {
+        super(objectMapper(), valueOf(APPLICATION_SMILE_VALUE));
+        setDefaultCharset(null);
+    }
+
+    private static ObjectMapper objectMapper() {
+        // Configured with the same defaults as the object mapper used for json.
+        ObjectMapper objectMapper = new ObjectMapper(new SmileFactory());
+        Jackson2ObjectMapperBuilder.json().configure(objectMapper);
+        return objectMapper;
+    }
+}
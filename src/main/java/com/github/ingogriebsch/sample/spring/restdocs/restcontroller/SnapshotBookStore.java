@@ -0,0 +1,89 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.Optional.of;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+import lombok.NonNull;
+
+// Keeps the books in an immutable trie which is swapped on every change. Readers never lock and always see a consistent
+// snapshot, writers derive a new trie from the current one and retry if another writer was faster.
+public class SnapshotBookStore implements BookStore {
+
+    private final AtomicReference<BookTrie> books = new AtomicReference<>(BookTrie.EMPTY);
+
+    @Override
+    public Optional<Book> find(@NonNull String isbn) {
+        return books.get().find(isbn);
+    }
+
+    @Override
+    public boolean insert(@NonNull Book book) {
+        return update(t -> t.with(book));
+    }
+
+    @Override
+    public boolean delete(@NonNull String isbn) {
+        return update(t -> t.without(isbn));
+    }
+
+    @Override
+    public boolean replace(@NonNull Book book) {
+        return update(t -> t.find(book.getIsbn()).isPresent() ? t.without(book.getIsbn()).with(book) : t);
+    }
+
+    @Override
+    public Stream<Book> stream() {
+        return books.get().stream();
+    }
+
+    @Override
+    public int size() {
+        return books.get().size();
+    }
+
+    @Override
+    public long memoryFootprint() {
+        return books.get().memoryFootprint();
+    }
+
+    @Override
+    public Optional<BookSnapshot> view() {
+        return of(books.get());
+    }
+
+    private boolean update(UnaryOperator<BookTrie> change) {
+        while (true) {
+            BookTrie current = books.get();
+            BookTrie next = change.apply(current);
+            if (next == current) {
+                return false;
+            }
+            if (books.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+}
@@ -19,13 +19,13 @@
  */
 package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
 
-import static com.google.common.collect.Sets.newHashSet;
-
-import java.util.Optional;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookInsertResult.Status.CREATED;
+import static com.google.common.collect.Lists.newArrayList;
 
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
 
@@ -36,18 +36,39 @@ public class Startup implements CommandLineRunner {
 
     @NonNull
     private final BookService bookService;
+    @NonNull
+    private final BookReplicationProperties replicationProperties;
+    @NonNull
+    private final ObjectProvider<BookImporter> bookImporter;
 
     @Override
     public void run(String... args) throws Exception {
-        newHashSet(new BookInsert("0345391802", "The Hitchhiker's Guide to the Galaxy"),
-            new BookInsert("9781451673319", "Fahrenheit 451"), new BookInsert("0062225677", "The Color of Magic")).stream()
-                .forEach(p -> insert(p));
+        if (replicationProperties.getLeaderUrl() != null) {
+            log.info("Replicating the books of '{}', skipping the seed data...", replicationProperties.getLeaderUrl());
+            return;
+        }
+        BookImporter bookImporter = this.bookImporter.getIfAvailable();
+        if (bookImporter != null) {
+            // Does not wait for the import, the service answers with the books imported so far until it is completed.
+            bookImporter.start();
+            return;
+        }
+        if (bookService.count() > 0) {
+            log.info("Store already contains {} books, skipping the seed data...", bookService.count());
+            return;
+        }
+
+        bookService
+            .insertAll(newArrayList(new BookInsert("0345391802", "The Hitchhiker's Guide to the Galaxy"),
+                new BookInsert("9781451673319", "Fahrenheit 451"), new BookInsert("0062225677", "The Color of Magic")))
+            .stream().forEach(p -> log(p));
     }
 
-    private void insert(BookInsert bookInsert) {
-        Optional<Book> book = bookService.insert(bookInsert);
-        if (book.isPresent()) {
-            log.info("Inserting book '{}'...", book.get());
+    private static void log(BookInsertResult result) {
+        if (CREATED.equals(result.getStatus())) {
+            log.info("Inserted book with isbn '{}'...", result.getIsbn());
+        } else {
+            log.warn("Skipped book with isbn '{}' because it is {}!", result.getIsbn(), result.getStatus());
         }
     }
 
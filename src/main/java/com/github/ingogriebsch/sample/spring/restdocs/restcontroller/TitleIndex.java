@@ -0,0 +1,236 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.Collections.emptyList;
+import static java.util.Comparator.comparing;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+
+// Inverted index over the titles of the books. Each query token matches the terms it is a prefix of, a book needs to match
+// all tokens and is ranked by the rarity of the matched terms and how close they are to the tokens.
+public class TitleIndex {
+
+    // Bounds the work of a query, so that very short prefixes and very common terms do not scan the whole catalog.
+    private static final int MAX_EXPANSIONS = 64;
+    private static final int MAX_CANDIDATES = 10_000;
+
+    private static final Comparator<Hit> RANKING = comparing(Hit::getScore).reversed().thenComparing(Hit::getIsbn);
+
+    private final ConcurrentMap<String, Posting> postings = new ConcurrentHashMap<>();
+    private final NavigableSet<String> terms = new ConcurrentSkipListSet<>();
+    private final AtomicInteger documents = new AtomicInteger();
+
+    public void add(@NonNull Book book) {
+        for (String term : tokenize(book.getTitle())) {
+            // The terms are only changed while holding the lock of the posting, so both never run out of sync.
+            postings.compute(term, (t, posting) -> {
+                if (posting == null) {
+                    posting = new Posting();
+                    terms.add(t);
+                }
+                if (posting.isbns.add(book.getIsbn())) {
+                    posting.size++;
+                }
+                return posting;
+            });
+        }
+        documents.incrementAndGet();
+    }
+
+    public void remove(@NonNull Book book) {
+        for (String term : tokenize(book.getTitle())) {
+            postings.computeIfPresent(term, (t, posting) -> {
+                if (posting.isbns.remove(book.getIsbn())) {
+                    posting.size--;
+                }
+                if (posting.size > 0) {
+                    return posting;
+                }
+                terms.remove(t);
+                return null;
+            });
+        }
+        documents.decrementAndGet();
+    }
+
+    public List<String> search(@NonNull String query, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive!");
+        }
+
+        List<List<Expansion>> tokens = new ArrayList<>();
+        for (String token : tokenize(query)) {
+            List<Expansion> expansions = expand(token);
+            if (expansions.isEmpty()) {
+                return emptyList();
+            }
+            tokens.add(expansions);
+        }
+        if (tokens.isEmpty()) {
+            return emptyList();
+        }
+
+        // The token with the fewest candidates drives the evaluation, the others are only checked for membership. Its expansions
+        // are visited from the heaviest to the lightest and their books in the order of their isbn, so the evaluation stops as
+        // soon as no remaining book is able to make it into the result.
+        List<Expansion> driver = tokens.stream().min(comparing(TitleIndex::candidates)).get();
+        double others = tokens.stream().filter(t -> t != driver).mapToDouble(t -> t.get(0).weight).sum();
+        PriorityQueue<Hit> hits = new PriorityQueue<>(limit + 1, RANKING.reversed());
+        Set<String> evaluated = driver.size() > 1 ? new HashSet<>() : null;
+        int candidates = 0;
+        for (Expansion expansion : driver) {
+            double bound = expansion.weight + others;
+            for (String isbn : expansion.isbns) {
+                Hit worst = hits.size() == limit ? hits.peek() : null;
+                if (worst != null
+                    && (bound < worst.getScore() || bound == worst.getScore() && isbn.compareTo(worst.getIsbn()) > 0)) {
+                    break;
+                }
+                if (evaluated != null && !evaluated.add(isbn)) {
+                    continue;
+                }
+                if (++candidates > MAX_CANDIDATES) {
+                    return ranked(hits);
+                }
+
+                double score = score(tokens, isbn);
+                if (score > 0) {
+                    hits.offer(new Hit(isbn, score));
+                    if (hits.size() > limit) {
+                        hits.poll();
+                    }
+                }
+            }
+        }
+        return ranked(hits);
+    }
+
+    public int terms() {
+        return postings.size();
+    }
+
+    static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null) {
+            return tokens;
+        }
+
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean letterOrDigit = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (letterOrDigit && start < 0) {
+                start = i;
+            } else if (!letterOrDigit && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private List<Expansion> expand(String token) {
+        double documents = Math.max(this.documents.get(), 1);
+        List<Expansion> expansions = new ArrayList<>();
+        for (String term : terms.subSet(token, true, token + Character.MAX_VALUE, false)) {
+            Posting posting = postings.get(term);
+            int size = posting != null ? posting.size : 0;
+            if (size > 0) {
+                // Rare terms weigh more than common ones, a term which is much longer than the token weighs less.
+                double idf = Math.log(1 + documents / size);
+                expansions.add(new Expansion(posting.isbns, size, idf * token.length() / term.length()));
+            }
+            if (expansions.size() == MAX_EXPANSIONS) {
+                break;
+            }
+        }
+        expansions.sort(comparing((Expansion e) -> e.weight).reversed());
+        return expansions;
+    }
+
+    private static double score(List<List<Expansion>> tokens, String isbn) {
+        double score = 0;
+        for (List<Expansion> expansions : tokens) {
+            double best = 0;
+            for (Expansion expansion : expansions) {
+                if (expansion.weight > best && expansion.isbns.contains(isbn)) {
+                    best = expansion.weight;
+                }
+            }
+            if (best == 0) {
+                return 0;
+            }
+            score += best;
+        }
+        return score;
+    }
+
+    private static long candidates(List<Expansion> expansions) {
+        return expansions.stream().mapToLong(e -> e.size).sum();
+    }
+
+    private static List<String> ranked(PriorityQueue<Hit> hits) {
+        List<Hit> ranked = new ArrayList<>(hits);
+        ranked.sort(RANKING);
+        List<String> isbns = new ArrayList<>(ranked.size());
+        ranked.forEach(hit -> isbns.add(hit.getIsbn()));
+        return isbns;
+    }
+
+    @RequiredArgsConstructor
+    private static final class Expansion {
+
+        private final NavigableSet<String> isbns;
+        private final int size;
+        private final double weight;
+    }
+
+    // The isbns are ordered so that a query is able to stop early, their number is tracked separately because counting the
+    // elements of a skip list needs to traverse it.
+    private static final class Posting {
+
+        private final NavigableSet<String> isbns = new ConcurrentSkipListSet<>();
+        // Only changed inside the compute functions of the postings, which are serialized per term.
+        private volatile int size;
+    }
+
+    @Value
+    private static class Hit {
+
+        String isbn;
+        double score;
+    }
+}
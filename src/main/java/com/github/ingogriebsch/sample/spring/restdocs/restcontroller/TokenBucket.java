@@ -0,0 +1,59 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// A token bucket kept as the single point in time at which it would be full again, so that taking a token is one compare
+// and set instead of a refill under a lock. This is known as the generic cell rate algorithm.
+public class TokenBucket {
+
+    // The time it takes to refill one token.
+    private final long interval;
+    // How far the bucket may be drawn into the future, which is the time it takes to refill all tokens but one.
+    private final long tolerance;
+    private final AtomicLong full;
+
+    public TokenBucket(double tokensPerSecond, int capacity, long now) {
+        if (tokensPerSecond <= 0 || capacity < 1) {
+            throw new IllegalArgumentException("Tokens per second and capacity must be positive!");
+        }
+        this.interval = (long) (SECONDS.toNanos(1) / tokensPerSecond);
+        this.tolerance = interval * (capacity - 1);
+        this.full = new AtomicLong(now);
+    }
+
+    // Returns 0 if a token was taken, otherwise the nanos to wait until the next one is available.
+    public long tryAcquire(long now) {
+        while (true) {
+            long current = full.get();
+            long start = Math.max(current, now);
+            long wait = start - tolerance - now;
+            if (wait > 0) {
+                return wait;
+            }
+            if (full.compareAndSet(current, start + interval)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.lang.System.getProperty;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookServerProperties.ExecutionMode;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.embedded.ConfigurableEmbeddedServletContainer;
+import org.springframework.boot.context.embedded.EmbeddedServletContainerCustomizer;
+import org.springframework.boot.context.embedded.tomcat.TomcatEmbeddedServletContainerFactory;
+
+@Slf4j
+public class TomcatExecutorCustomizer implements EmbeddedServletContainerCustomizer, DisposableBean {
+
+    private final ExecutorService executor;
+
+    public TomcatExecutorCustomizer(@NonNull ExecutionMode executionMode) {
+        // Tomcat keeps its own pool of platform threads unless it is handed an executor.
+        executor = executionMode == ExecutionMode.VIRTUAL ? newVirtualThreadPerTaskExecutor() : null;
+    }
+
+    @Override
+    public void customize(ConfigurableEmbeddedServletContainer container) {
+        if (executor == null) {
+            return;
+        }
+        if (!(container instanceof TomcatEmbeddedServletContainerFactory)) {
+            throw new IllegalStateException("Virtual threads are only supported for an embedded Tomcat!");
+        }
+
+        ((TomcatEmbeddedServletContainerFactory) container).addConnectorCustomizers(connector -> {
+            ProtocolHandler protocolHandler = connector.getProtocolHandler();
+            if (protocolHandler instanceof AbstractProtocol) {
+                ((AbstractProtocol<?>) protocolHandler).setExecutor(executor);
+            }
+        });
+        log.info("Requests are executed on virtual threads.");
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        // Looked up reflectively so that the service still compiles and runs on Java 8.
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(
+                "Virtual threads need Java 21 or later, but the service is running on Java " + getProperty("java.version") + "!",
+                e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads could not be created!", e);
+        }
+    }
+}
@@ -19,18 +19,71 @@
  */
 package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
 import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.Application.main;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookImporter.State.IMPORTING;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.SpringApplication.run;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.test.context.junit4.SpringRunner;
 
 @RunWith(SpringRunner.class)
 public class ApplicationTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void main_should_load_context() {
         main(new String[] { "--server.port=0" });
     }
 
+    @Test
+    public void main_should_load_context_lazily_from_an_image() throws Exception {
+        Path image = folder.newFile().toPath();
+        BookImage.write(image, Stream.of(new Book("9780062225672", "The Color of Magic")));
+
+        ConfigurableApplicationContext context = run(Application.class, "--server.port=0", "--spring.jmx.enabled=false",
+            "--book.server.startup.lazy=true", "--book.store.image=" + image);
+        try {
+            assertThat(context.getBean(BookService.class).findOne("9780062225672").isPresent()).isTrue();
+            // The image is not seeded with the books every other empty store starts with.
+            assertThat(context.getBean(BookService.class).count()).isEqualTo(1);
+        } finally {
+            context.close();
+        }
+    }
+
+    @Test
+    public void main_should_import_books_in_the_background() throws Exception {
+        Path file = folder.newFile("books.csv").toPath();
+        Files.write(file, asList("isbn,title", "0062225677,The Color of Magic", "9781451673319,Fahrenheit 451"), UTF_8);
+
+        ConfigurableApplicationContext context =
+            run(Application.class, "--server.port=0", "--spring.jmx.enabled=false", "--book.import.file=" + file);
+        try {
+            BookImporter importer = context.getBean(BookImporter.class);
+            for (int i = 0; i < 100 && IMPORTING.equals(importer.state()); i++) {
+                MILLISECONDS.sleep(100);
+            }
+            assertThat(importer.health().getStatus().getCode()).isEqualTo("UP");
+            // The import replaces the seed data.
+            assertThat(context.getBean(BookService.class).count()).isEqualTo(2);
+        } finally {
+            context.close();
+        }
+    }
+
 }
@@ -0,0 +1,201 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+
+import com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookServerProperties.RateLimit;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class BookAdmissionFilterTest {
+
+    private final AtomicLong nanoTime = new AtomicLong();
+    private RateLimit properties;
+
+    @Before
+    public void before() {
+        properties = new RateLimit();
+        properties.setPermitsPerSecond(1);
+        properties.setBurst(2);
+    }
+
+    @Test
+    public void should_limit_each_client_per_endpoint() throws Exception {
+        BookAdmissionFilter filter = new BookAdmissionFilter(properties, nanoTime::get);
+
+        assertThat(filter(filter, "POST", "/books", "10.0.0.1").getStatus()).isEqualTo(200);
+        assertThat(filter(filter, "POST", "/books", "10.0.0.1").getStatus()).isEqualTo(200);
+
+        MockHttpServletResponse response = filter(filter, "POST", "/books", "10.0.0.1");
+        assertThat(response.getStatus()).isEqualTo(429);
+        assertThat(response.getHeader(RETRY_AFTER)).isEqualTo("1");
+
+        assertThat(filter(filter, "POST", "/books", "10.0.0.2").getStatus()).isEqualTo(200);
+        assertThat(filter(filter, "DELETE", "/books/9780345391803", "10.0.0.1").getStatus()).isEqualTo(200);
+        assertThat(filter(filter, "POST", "/books/batch", "10.0.0.1").getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    public void should_admit_client_again_once_tokens_are_refilled() throws Exception {
+        BookAdmissionFilter filter = new BookAdmissionFilter(properties, nanoTime::get);
+        filter(filter, "POST", "/books", "10.0.0.1");
+        filter(filter, "POST", "/books", "10.0.0.1");
+        assertThat(filter(filter, "POST", "/books", "10.0.0.1").getStatus()).isEqualTo(429);
+
+        nanoTime.addAndGet(MILLISECONDS.toNanos(1000));
+        assertThat(filter(filter, "POST", "/books", "10.0.0.1").getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    public void should_limit_each_client_a_trusted_proxy_forwarded_for() throws Exception {
+        properties.setTrustedProxies(newArrayList("10.0.0.8", "10.0.0.9"));
+        BookAdmissionFilter filter = new BookAdmissionFilter(properties, nanoTime::get);
+
+        for (int i = 0; i < 2; i++) {
+            assertThat(filter(filter, "POST", "/books", "10.0.0.9", "10.0.0.1").getStatus()).isEqualTo(200);
+        }
+        assertThat(filter(filter, "POST", "/books", "10.0.0.9", "10.0.0.1").getStatus()).isEqualTo(429);
+
+        // The addresses are followed from the last one and skip the trusted proxies, e.g. a replica behind a load balancer.
+        assertThat(filter(filter, "POST", "/books", "10.0.0.9", "10.0.0.2").getStatus()).isEqualTo(200);
+        assertThat(filter(filter, "POST", "/books", "10.0.0.9", "10.0.0.1, 10.0.0.2, 10.0.0.8").getStatus()).isEqualTo(200);
+        assertThat(filter(filter, "POST", "/books", "10.0.0.9", "10.0.0.2, 10.0.0.8").getStatus()).isEqualTo(429);
+    }
+
+    @Test
+    public void should_not_trust_the_client_header_of_other_clients() throws Exception {
+        properties.setTrustedProxies(newArrayList("10.0.0.9"));
+        BookAdmissionFilter filter = new BookAdmissionFilter(properties, nanoTime::get);
+
+        assertThat(filter(filter, "POST", "/books", "10.0.0.1", "10.0.0.2").getStatus()).isEqualTo(200);
+        assertThat(filter(filter, "POST", "/books", "10.0.0.1", "10.0.0.3").getStatus()).isEqualTo(200);
+        assertThat(filter(filter, "POST", "/books", "10.0.0.1", "10.0.0.4").getStatus()).isEqualTo(429);
+    }
+
+    @Test
+    public void should_not_limit_reads() throws Exception {
+        BookAdmissionFilter filter = new BookAdmissionFilter(properties, nanoTime::get);
+        for (int i = 0; i < 10; i++) {
+            assertThat(filter(filter, "GET", "/books", "10.0.0.1").getStatus()).isEqualTo(200);
+            assertThat(filter(filter, "GET", "/books/9780345391803", "10.0.0.1").getStatus()).isEqualTo(200);
+        }
+    }
+
+    @Test
+    public void should_shed_writes_if_too_many_are_in_flight() throws Exception {
+        properties.setBurst(10);
+        properties.setMaxInFlight(1);
+        BookAdmissionFilter filter = new BookAdmissionFilter(properties, nanoTime::get);
+
+        MockHttpServletResponse[] nested = new MockHttpServletResponse[1];
+        FilterChain chain = (request, response) -> nested[0] = filter(filter, "POST", "/books", "10.0.0.2");
+        MockHttpServletRequest request = request("POST", "/books", "10.0.0.1");
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertThat(nested[0].getStatus()).isEqualTo(429);
+        assertThat(nested[0].getHeader(RETRY_AFTER)).isEqualTo("1");
+        assertThat(filter(filter, "POST", "/books", "10.0.0.2").getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    public void should_shed_concurrent_writes_if_latency_is_too_high() throws Exception {
+        properties.setBurst(10);
+        properties.setMaxLatencyMillis(100);
+        BookAdmissionFilter filter = new BookAdmissionFilter(properties, nanoTime::get);
+
+        // A single slow write pulls the average above the threshold.
+        FilterChain slow = (request, response) -> nanoTime.addAndGet(MILLISECONDS.toNanos(10_000));
+        filter.doFilter(request("POST", "/books", "10.0.0.1"), new MockHttpServletResponse(), slow);
+
+        MockHttpServletResponse[] nested = new MockHttpServletResponse[1];
+        FilterChain chain = (request, response) -> nested[0] = filter(filter, "POST", "/books", "10.0.0.2");
+        filter.doFilter(request("POST", "/books", "10.0.0.1"), new MockHttpServletResponse(), chain);
+        assertThat(nested[0].getStatus()).isEqualTo(429);
+
+        // Without any other write in flight a write is admitted to measure the latency again.
+        assertThat(filter(filter, "POST", "/books", "10.0.0.2").getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    public void bindTo_should_expose_decisions_per_endpoint() throws Exception {
+        BookAdmissionFilter filter = new BookAdmissionFilter(properties, nanoTime::get);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        filter.bindTo(registry);
+
+        for (int i = 0; i < 3; i++) {
+            filter(filter, "POST", "/books", "10.0.0.1");
+        }
+
+        assertThat(
+            registry.get("books.admission.decisions").tags("endpoint", "insert", "decision", "allowed").functionCounter().count())
+                .isEqualTo(2);
+        assertThat(
+            registry.get("books.admission.decisions").tags("endpoint", "insert", "decision", "limited").functionCounter().count())
+                .isEqualTo(1);
+        assertThat(
+            registry.get("books.admission.decisions").tags("endpoint", "delete", "decision", "shed").functionCounter().count())
+                .isEqualTo(0);
+        assertThat(registry.get("books.admission.in-flight").tags("endpoint", "insert").gauge().value()).isEqualTo(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_should_throw_exception_if_burst_is_not_positive() throws Exception {
+        properties.setBurst(0);
+        new BookAdmissionFilter(properties);
+    }
+
+    private static MockHttpServletResponse filter(BookAdmissionFilter filter, String method, String path, String client)
+        throws IOException, ServletException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request(method, path, client), response, new MockFilterChain());
+        return response;
+    }
+
+    private static MockHttpServletResponse filter(BookAdmissionFilter filter, String method, String path, String proxy,
+        String forwardedFor) throws IOException, ServletException {
+        MockHttpServletRequest request = request(method, path, proxy);
+        request.addHeader("X-Forwarded-For", forwardedFor);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private static MockHttpServletRequest request(String method, String path, String client) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.setRemoteAddr(client);
+        return request;
+    }
+}
@@ -0,0 +1,175 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookChange.Type.DELETED;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookChange.Type.INSERTED;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class BookChangeFeedTest {
+
+    private static final Book book = new Book("9780345391803", "The Hitchhiker's Guide to the Galaxy");
+
+    private BookChangeFeed changeFeed;
+
+    @Before
+    public void before() {
+        changeFeed = new BookChangeFeed(4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_should_throw_exception_if_capacity_is_not_power_of_two() throws Exception {
+        new BookChangeFeed(3);
+    }
+
+    @Test
+    public void read_should_return_changes_following_the_given_sequence() throws Exception {
+        changeFeed.publish(INSERTED, book);
+        changeFeed.publish(DELETED, book);
+        changeFeed.publish(INSERTED, book);
+
+        assertThat(changeFeed.sequence()).isEqualTo(3);
+        assertThat(changeFeed.read(0, 10).get()).containsExactly(new BookChange(1, INSERTED, book.getIsbn(), book.getTitle()),
+            new BookChange(2, DELETED, book.getIsbn(), book.getTitle()),
+            new BookChange(3, INSERTED, book.getIsbn(), book.getTitle()));
+        assertThat(changeFeed.read(1, 1).get()).extracting(BookChange::getSequence).containsExactly(2L);
+        assertThat(changeFeed.read(3, 10).get()).isEmpty();
+    }
+
+    @Test
+    public void read_should_return_empty_optional_if_changes_are_overwritten() throws Exception {
+        for (int i = 0; i < 6; i++) {
+            changeFeed.publish(INSERTED, book);
+        }
+
+        assertThat(changeFeed.read(1, 10).isPresent()).isFalse();
+        assertThat(changeFeed.read(2, 10).get()).extracting(BookChange::getSequence).containsExactly(3L, 4L, 5L, 6L);
+    }
+
+    @Test
+    public void read_should_return_empty_optional_if_sequence_is_unknown() throws Exception {
+        changeFeed.publish(INSERTED, book);
+
+        assertThat(changeFeed.read(2, 10).isPresent()).isFalse();
+        assertThat(changeFeed.read(-1, 10).isPresent()).isFalse();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void read_should_throw_exception_if_limit_is_not_positive() throws Exception {
+        changeFeed.read(0, 0);
+    }
+
+    @Test
+    public void await_should_run_listener_once_if_change_is_published() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        changeFeed.await(0, calls::incrementAndGet);
+        assertThat(calls.get()).isEqualTo(0);
+
+        changeFeed.publish(INSERTED, book);
+        changeFeed.publish(DELETED, book);
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void await_should_run_listener_immediately_if_change_is_already_published() throws Exception {
+        changeFeed.publish(INSERTED, book);
+
+        AtomicInteger calls = new AtomicInteger();
+        changeFeed.await(0, calls::incrementAndGet);
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void cancel_should_prevent_listener_from_running() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Runnable listener = calls::incrementAndGet;
+        changeFeed.await(0, listener);
+        changeFeed.cancel(listener);
+
+        changeFeed.publish(INSERTED, book);
+        assertThat(calls.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void publish_should_not_run_listener_again_which_awaits_a_later_change() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Runnable listener = new Runnable() {
+
+            @Override
+            public void run() {
+                calls.incrementAndGet();
+                changeFeed.await(changeFeed.sequence(), this);
+            }
+        };
+        changeFeed.await(0, listener);
+
+        changeFeed.publish(INSERTED, book);
+        assertThat(calls.get()).isEqualTo(1);
+
+        changeFeed.publish(INSERTED, book);
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void read_should_return_contiguous_changes_if_published_concurrently() throws Exception {
+        int writers = 4;
+        int changes = 10000;
+        changeFeed = new BookChangeFeed(1 << 16);
+
+        ExecutorService executor = newFixedThreadPool(writers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < changes; i++) {
+                        changeFeed.publish(INSERTED, book);
+                    }
+                }));
+            }
+
+            long since = 0;
+            while (since < writers * changes) {
+                Optional<List<BookChange>> read = changeFeed.read(since, 100);
+                assertThat(read.isPresent()).isTrue();
+                for (BookChange change : read.get()) {
+                    assertThat(change.getSequence()).isEqualTo(++since);
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get(30, SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -19,18 +19,45 @@
  */
 package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
 
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Optional.of;
 import static java.util.stream.Collectors.toList;
 
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookChange.Type.DELETED;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookChange.Type.INSERTED;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.APPLICATION_CBOR_VALUE;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.APPLICATION_NDJSON_VALUE;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.APPLICATION_SMILE_VALUE;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PARAM_AFTER;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PARAM_FROM;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PARAM_ISBN_PREFIX;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PARAM_LIMIT;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PARAM_QUERY;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PARAM_SINCE;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PARAM_TO;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PATH_CHANGES;
 import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PATH_DELETE;
 import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PATH_FIND_ALL;
 import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PATH_FIND_ONE;
 import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PATH_INSERT;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PATH_INSERT_BATCH;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PATH_SEARCH;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookInsertResult.Status.CREATED;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookInsertResult.Status.DUPLICATE;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookInsertResult.Status.INVALID;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookReplicationFilter.HEADER_SEQUENCE;
+import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Sets.newHashSet;
 import static org.apache.commons.lang3.StringUtils.join;
 import static org.mockito.BDDMockito.given;
 import static org.springframework.http.HttpHeaders.ACCEPT;
+import static org.springframework.http.HttpHeaders.CONTENT_LENGTH;
 import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
+import static org.springframework.http.HttpHeaders.ETAG;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+import static org.springframework.http.HttpHeaders.LINK;
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
 import static org.springframework.http.MediaType.APPLICATION_JSON_UTF8;
 import static org.springframework.restdocs.headers.HeaderDocumentation.headerWithName;
 import static org.springframework.restdocs.headers.HeaderDocumentation.requestHeaders;
@@ -42,18 +69,24 @@ import static org.springframework.restdocs.mockmvc.RestDocumentationRequestBuild
 import static org.springframework.restdocs.operation.preprocess.Preprocessors.preprocessRequest;
 import static org.springframework.restdocs.operation.preprocess.Preprocessors.preprocessResponse;
 import static org.springframework.restdocs.operation.preprocess.Preprocessors.prettyPrint;
+import static org.springframework.restdocs.operation.preprocess.Preprocessors.removeHeaders;
+import static org.springframework.restdocs.payload.JsonFieldType.ARRAY;
 import static org.springframework.restdocs.payload.PayloadDocumentation.fieldWithPath;
 import static org.springframework.restdocs.payload.PayloadDocumentation.requestFields;
 import static org.springframework.restdocs.payload.PayloadDocumentation.responseFields;
 import static org.springframework.restdocs.request.RequestDocumentation.parameterWithName;
 import static org.springframework.restdocs.request.RequestDocumentation.pathParameters;
+import static org.springframework.restdocs.request.RequestDocumentation.requestParameters;
 import static org.springframework.restdocs.snippet.Attributes.key;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
+import java.util.List;
 import java.util.Set;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookServerProperties.RateLimit;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -65,9 +98,12 @@ import org.springframework.restdocs.JUnitRestDocumentation;
 import org.springframework.restdocs.constraints.ConstraintDescriptions;
 import org.springframework.restdocs.mockmvc.RestDocumentationRequestBuilders;
 import org.springframework.restdocs.mockmvc.RestDocumentationResultHandler;
+import org.springframework.restdocs.operation.preprocess.ContentModifyingOperationPreprocessor;
+import org.springframework.restdocs.operation.preprocess.OperationPreprocessor;
 import org.springframework.restdocs.snippet.Snippet;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.web.context.WebApplicationContext;
 
@@ -100,9 +136,13 @@ public class BookControllerDoc {
 
     @Test
     public void findAll() throws Exception {
-        Set<Book> books = newHashSet(new Book("0345391802", "The Hitchhiker's Guide to the Galaxy"),
-            new Book("9781451673319", "Fahrenheit 451"), new Book("0062225677", "The Color of Magic"));
-        given(bookService.findAll()).willReturn(books);
+        Set<Book> books = newHashSet(new Book("9780345391803", "The Hitchhiker's Guide to the Galaxy"),
+            new Book("9781451673319", "Fahrenheit 451"), new Book("9780062225672", "The Color of Magic"));
+        BookTrie snapshot = BookTrie.EMPTY;
+        for (Book book : books) {
+            snapshot = snapshot.with(book);
+        }
+        given(bookService.snapshot()).willReturn(snapshot);
 
         ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL).accept(APPLICATION_JSON_UTF8));
         actions.andExpect(status().isOk());
@@ -111,7 +151,8 @@ public class BookControllerDoc {
             requestHeaders(headerWithName(ACCEPT).description("The content type the client is able to understand."));
 
         Snippet responseHeaders =
-            responseHeaders(headerWithName(CONTENT_TYPE).description("The content type of the content returned."));
+            responseHeaders(headerWithName(CONTENT_TYPE).description("The content type of the content returned."),
+                headerWithName(ETAG).description("The entity tag of the content returned."));
 
         Snippet responseFields = responseFields(fieldWithPath("[].isbn").description("The isbn of the book."),
             fieldWithPath("[].title").description("The title of the book."));
@@ -119,9 +160,157 @@ public class BookControllerDoc {
         actions.andDo(documentationHandler.document(requestHeaders, responseFields, responseHeaders));
     }
 
+    @Test
+    public void findAllAsCbor() throws Exception {
+        findAllAs(APPLICATION_CBOR_VALUE);
+    }
+
+    @Test
+    public void findAllAsSmile() throws Exception {
+        findAllAs(APPLICATION_SMILE_VALUE);
+    }
+
+    @Test
+    public void findAllPaged() throws Exception {
+        List<Book> books = newArrayList(new Book("9780062225672", "The Color of Magic"),
+            new Book("9780345391803", "The Hitchhiker's Guide to the Galaxy"));
+        given(bookService.findAll(IsbnRange.ALL, "9780000000000", 2)).willReturn(books);
+
+        ResultActions actions = mockMvc.perform(
+            get(PATH_FIND_ALL).param(PARAM_AFTER, "9780000000000").param(PARAM_LIMIT, "2").accept(APPLICATION_JSON_UTF8));
+        actions.andExpect(status().isOk());
+
+        Snippet requestParameters = requestParameters(parameterWithName(PARAM_AFTER)
+            .description("The isbn of the last book of the previous page. The page starts with the book following it.")
+            .optional(),
+            parameterWithName(PARAM_LIMIT)
+                .description("The maximum number of books returned with the page. Defaults to 100 if only `after` is given."));
+
+        Snippet requestHeaders =
+            requestHeaders(headerWithName(ACCEPT).description("The content type the client is able to understand."));
+
+        Snippet responseHeaders =
+            responseHeaders(headerWithName(CONTENT_TYPE).description("The content type of the content returned."),
+                headerWithName(ETAG).description("The entity tag of the content returned."),
+                headerWithName(LINK).description("The link to the next page. Only available if the page is full.").optional());
+
+        actions.andDo(documentationHandler.document(requestParameters, requestHeaders, responseHeaders));
+    }
+
+    @Test
+    public void findAllInRange() throws Exception {
+        List<Book> books = newArrayList(new Book("9780345391803", "The Hitchhiker's Guide to the Galaxy"),
+            new Book("9780345418913", "Lord of Light"));
+        given(bookService.findAll(IsbnRange.of("9780345", null, "9780346"), null, 2)).willReturn(books);
+
+        ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL).param(PARAM_ISBN_PREFIX, "9780345").param(PARAM_TO, "9780346")
+            .param(PARAM_LIMIT, "2").accept(APPLICATION_JSON_UTF8));
+        actions.andExpect(status().isOk());
+
+        Snippet requestParameters =
+            requestParameters(
+                parameterWithName(PARAM_ISBN_PREFIX).description("The leading digits of the isbns of the books returned.")
+                    .optional(),
+                parameterWithName(PARAM_FROM).description("The smallest isbn of the books returned.").optional(),
+                parameterWithName(PARAM_TO).description("The isbn which all returned books precede.").optional(),
+                parameterWithName(PARAM_AFTER).description("The isbn of the last book of the previous page.").optional(),
+                parameterWithName(PARAM_LIMIT).description("The maximum number of books returned with the page.").optional());
+
+        Snippet requestHeaders =
+            requestHeaders(headerWithName(ACCEPT).description("The content type the client is able to understand."));
+
+        Snippet responseHeaders =
+            responseHeaders(headerWithName(CONTENT_TYPE).description("The content type of the content returned."),
+                headerWithName(ETAG).description("The entity tag of the content returned."),
+                headerWithName(LINK).description("The link to the next page. Only available if the page is full.").optional());
+
+        actions.andDo(documentationHandler.document(requestParameters, requestHeaders, responseHeaders));
+    }
+
+    @Test
+    public void findAllStreamed() throws Exception {
+        List<Book> books = newArrayList(new Book("9780062225672", "The Color of Magic"),
+            new Book("9780345391803", "The Hitchhiker's Guide to the Galaxy"));
+        given(bookService.streamAll(IsbnRange.ALL)).willReturn(books.stream());
+
+        ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL).accept(APPLICATION_NDJSON_VALUE));
+        actions.andExpect(status().isOk());
+
+        Snippet requestHeaders =
+            requestHeaders(headerWithName(ACCEPT).description("The content type the client is able to understand."));
+
+        Snippet responseHeaders =
+            responseHeaders(headerWithName(CONTENT_TYPE).description("The content type of the content returned."),
+                headerWithName(ETAG).description("The entity tag of the content returned."));
+
+        // Pretty printing is not able to handle newline delimited JSON, therefore the response is documented as is.
+        actions.andDo(document("book/{method-name}", preprocessRequest(prettyPrint()), requestHeaders, responseHeaders));
+    }
+
+    @Test
+    public void changes() throws Exception {
+        List<BookChange> changes = newArrayList(new BookChange(8, INSERTED, "9780062225672", "The Color of Magic"),
+            new BookChange(9, DELETED, "9780345391803", "The Hitchhiker's Guide to the Galaxy"));
+        given(bookService.changes(7, 100)).willReturn(of(changes));
+
+        MvcResult result =
+            mockMvc.perform(get(PATH_CHANGES).param(PARAM_SINCE, "7").param(PARAM_LIMIT, "100").accept(APPLICATION_JSON_UTF8))
+                .andReturn();
+        ResultActions actions = mockMvc.perform(asyncDispatch(result));
+        actions.andExpect(status().isOk());
+
+        Snippet requestParameters = requestParameters(parameterWithName(PARAM_SINCE).description(
+            "The sequence number of the last change known to the client. If missing, no changes but the sequence number to start from are returned.")
+            .optional(),
+            parameterWithName(PARAM_LIMIT).description("The maximum number of changes returned. Defaults to 1000.").optional());
+
+        Snippet requestHeaders =
+            requestHeaders(headerWithName(ACCEPT).description("The content type the client is able to understand."));
+
+        Snippet responseHeaders =
+            responseHeaders(headerWithName(CONTENT_TYPE).description("The content type of the content returned."));
+
+        Snippet responseFields =
+            responseFields(fieldWithPath("sequence").description("The sequence number to pass with the next request."),
+                fieldWithPath("changes")
+                    .description("The changes following the given sequence number, ordered by their sequence number."),
+                fieldWithPath("changes[].sequence").description("The sequence number of the change."),
+                fieldWithPath("changes[].type")
+                    .description("The type of the change, either `INSERTED`, `DELETED` or `INSERTED_ALL`."),
+                fieldWithPath("changes[].isbn").description("The canonical isbn of the changed book."),
+                fieldWithPath("changes[].title").description("The title of the changed book."),
+                fieldWithPath("changes[].books").description("The books inserted together through a batch, only available for "
+                    + "changes of type `INSERTED_ALL` which carry neither isbn nor title.").type(ARRAY).optional());
+
+        actions.andDo(documentationHandler.document(requestParameters, requestHeaders, responseHeaders, responseFields));
+    }
+
+    @Test
+    public void search() throws Exception {
+        List<Book> books = newArrayList(new Book("9780345391803", "The Hitchhiker's Guide to the Galaxy"));
+        given(bookService.search("guide galax", 10)).willReturn(books);
+
+        ResultActions actions = mockMvc
+            .perform(get(PATH_SEARCH).param(PARAM_QUERY, "guide galax").param(PARAM_LIMIT, "10").accept(APPLICATION_JSON_UTF8));
+        actions.andExpect(status().isOk());
+
+        Snippet requestParameters = requestParameters(
+            parameterWithName(PARAM_QUERY)
+                .description("The words to search for. A book matches if its title contains a word starting with each of them."),
+            parameterWithName(PARAM_LIMIT).description("The maximum number of books returned. Defaults to 10.").optional());
+
+        Snippet requestHeaders =
+            requestHeaders(headerWithName(ACCEPT).description("The content type the client is able to understand."));
+
+        Snippet responseHeaders =
+            responseHeaders(headerWithName(CONTENT_TYPE).description("The content type of the content returned."));
+
+        actions.andDo(documentationHandler.document(requestParameters, requestHeaders, responseHeaders));
+    }
+
     @Test
     public void findOne() throws Exception {
-        Book book = new Book("0345391802", "The Hitchhiker's Guide to the Galaxy");
+        Book book = new Book("9780345391803", "The Hitchhiker's Guide to the Galaxy");
         given(bookService.findOne(book.getIsbn())).willReturn(of(book));
 
         ResultActions actions = mockMvc.perform(get(PATH_FIND_ONE, book.getIsbn()).accept(APPLICATION_JSON_UTF8));
@@ -133,11 +322,34 @@ public class BookControllerDoc {
             requestHeaders(headerWithName(ACCEPT).description("The content type the client is able to understand."));
 
         Snippet responseHeaders =
-            responseHeaders(headerWithName(CONTENT_TYPE).description("The content type of the content returned."));
+            responseHeaders(headerWithName(CONTENT_TYPE).description("The content type of the content returned."),
+                headerWithName(ETAG).description("The entity tag of the content returned."));
 
         actions.andDo(documentationHandler.document(pathParameters, requestHeaders, responseHeaders));
     }
 
+    @Test
+    public void findOneNotModified() throws Exception {
+        Book book = new Book("9780345391803", "The Hitchhiker's Guide to the Galaxy");
+        given(bookService.findOne(book.getIsbn())).willReturn(of(book));
+
+        String etag = mockMvc.perform(get(PATH_FIND_ONE, book.getIsbn()).accept(APPLICATION_JSON_UTF8)).andReturn().getResponse()
+            .getHeader(ETAG);
+
+        ResultActions actions =
+            mockMvc.perform(get(PATH_FIND_ONE, book.getIsbn()).accept(APPLICATION_JSON_UTF8).header(IF_NONE_MATCH, etag));
+        actions.andExpect(status().isNotModified());
+
+        Snippet requestHeaders =
+            requestHeaders(headerWithName(ACCEPT).description("The content type the client is able to understand."),
+                headerWithName(IF_NONE_MATCH).description("The entity tag of the content the client already knows."));
+
+        Snippet responseHeaders =
+            responseHeaders(headerWithName(ETAG).description("The entity tag of the content which is still up to date."));
+
+        actions.andDo(documentationHandler.document(requestHeaders, responseHeaders));
+    }
+
     @Test
     public void insert() throws Exception {
         BookInsert bookInsert = new BookInsert("0062225677", "The Color of Magic");
@@ -158,6 +370,99 @@ public class BookControllerDoc {
         actions.andDo(documentationHandler.document(requestHeaders, responseHeaders));
     }
 
+    @Test
+    public void insertRateLimited() throws Exception {
+        BookInsert bookInsert = new BookInsert("0062225677", "The Color of Magic");
+        given(bookService.insert(bookInsert)).willReturn(of(book(bookInsert)));
+
+        RateLimit rateLimit = new RateLimit();
+        rateLimit.setPermitsPerSecond(1);
+        rateLimit.setBurst(1);
+        MockMvc mockMvc = webAppContextSetup(webApplicationContext).addFilters(new BookAdmissionFilter(rateLimit))
+            .apply(documentationConfiguration(documentation)).alwaysDo(documentationHandler).build();
+
+        String content = objectMapper.writeValueAsString(bookInsert);
+        mockMvc.perform(post(PATH_INSERT).content(content).contentType(APPLICATION_JSON_UTF8).accept(APPLICATION_JSON_UTF8))
+            .andExpect(status().isCreated());
+        ResultActions actions =
+            mockMvc.perform(post(PATH_INSERT).content(content).contentType(APPLICATION_JSON_UTF8).accept(APPLICATION_JSON_UTF8));
+        actions.andExpect(status().isTooManyRequests());
+
+        Snippet responseHeaders = responseHeaders(
+            headerWithName(RETRY_AFTER).description("The seconds to wait before the request is worth to be sent again."));
+
+        actions.andDo(documentationHandler.document(responseHeaders));
+    }
+
+    @Test
+    public void insertReplicated() throws Exception {
+        BookInsert bookInsert = new BookInsert("0062225677", "The Color of Magic");
+        given(bookService.insert(bookInsert)).willReturn(of(book(bookInsert)));
+        given(bookService.changeSequence()).willReturn(42L);
+
+        BookReplicationProperties properties = new BookReplicationProperties();
+        MockMvc mockMvc = webAppContextSetup(webApplicationContext)
+            .addFilters(new BookReplicationFilter(properties, bookService, new BookReplicas(bookService), null))
+            .apply(documentationConfiguration(documentation)).alwaysDo(documentationHandler).build();
+
+        String content = objectMapper.writeValueAsString(bookInsert);
+        ResultActions actions =
+            mockMvc.perform(post(PATH_INSERT).content(content).contentType(APPLICATION_JSON_UTF8).accept(APPLICATION_JSON_UTF8));
+        actions.andExpect(status().isCreated());
+
+        Snippet responseHeaders = responseHeaders(
+            headerWithName(CONTENT_TYPE).description("The content type of the payload which is returned inside the response."),
+            headerWithName(HEADER_SEQUENCE)
+                .description("The session token to hand in to any node to read the books as they are after this request."));
+
+        actions.andDo(documentationHandler.document(responseHeaders));
+    }
+
+    @Test
+    public void findOneBehindSessionToken() throws Exception {
+        BookReplicationProperties properties = new BookReplicationProperties();
+        properties.setLeaderUrl("http://leader:8080");
+        properties.setReadTimeoutMillis(10);
+        BookReplicator replicator = new BookReplicator(properties, bookService, objectMapper);
+        MockMvc mockMvc = webAppContextSetup(webApplicationContext)
+            .addFilters(new BookReplicationFilter(properties, bookService, new BookReplicas(bookService), replicator))
+            .apply(documentationConfiguration(documentation)).alwaysDo(documentationHandler).build();
+
+        ResultActions actions =
+            mockMvc.perform(get(PATH_FIND_ONE, "0345391802").header(HEADER_SEQUENCE, 42).accept(APPLICATION_JSON_UTF8));
+        actions.andExpect(status().isServiceUnavailable());
+
+        Snippet requestHeaders = requestHeaders(
+            headerWithName(HEADER_SEQUENCE).description("The session token returned by the last request changing books."));
+        Snippet responseHeaders = responseHeaders(
+            headerWithName(RETRY_AFTER).description("The seconds to wait before the request is worth to be sent again."));
+
+        actions.andDo(documentationHandler.document(requestHeaders, responseHeaders));
+    }
+
+    @Test
+    public void insertBatch() throws Exception {
+        List<BookInsert> bookInserts = newArrayList(new BookInsert("0062225677", "The Color of Magic"),
+            new BookInsert("0345391802", "The Hitchhiker's Guide to the Galaxy"), new BookInsert("12345", "Fahrenheit 451"));
+        given(bookService.insertAll(bookInserts)).willReturn(newArrayList(new BookInsertResult("9780062225672", CREATED),
+            new BookInsertResult("0345391802", DUPLICATE), new BookInsertResult("12345", INVALID)));
+
+        String content = objectMapper.writeValueAsString(bookInserts);
+        ResultActions actions = mockMvc
+            .perform(post(PATH_INSERT_BATCH).content(content).contentType(APPLICATION_JSON_UTF8).accept(APPLICATION_JSON_UTF8));
+        actions.andExpect(status().isOk());
+
+        Snippet requestHeaders =
+            requestHeaders(headerWithName(ACCEPT).description("The content type the client is able to understand."),
+                headerWithName(CONTENT_TYPE).description(
+                    "The content type of the content sent with the request. Either a JSON array or newline delimited JSON."));
+
+        Snippet responseHeaders =
+            responseHeaders(headerWithName(CONTENT_TYPE).description("The content type of the content returned."));
+
+        actions.andDo(documentationHandler.document(requestHeaders, responseHeaders));
+    }
+
     @Test
     public void delete() throws Exception {
         String isbn = "0062225677";
@@ -192,15 +497,33 @@ public class BookControllerDoc {
         actions.andDo(documentationHandler.document(requestFields));
     }
 
+    @Test
+    public void bookInsertResultResource() throws Exception {
+        List<BookInsert> bookInserts = newArrayList(new BookInsert("0062225677", "The Color of Magic"));
+        given(bookService.insertAll(bookInserts)).willReturn(newArrayList(new BookInsertResult("9780062225672", CREATED)));
+
+        String content = objectMapper.writeValueAsString(bookInserts);
+        ResultActions actions = mockMvc
+            .perform(post(PATH_INSERT_BATCH).content(content).contentType(APPLICATION_JSON_UTF8).accept(APPLICATION_JSON_UTF8));
+        actions.andExpect(status().isOk());
+
+        Snippet responseFields = responseFields(
+            fieldWithPath("[].isbn")
+                .description("The canonical isbn of the book insert or the isbn as given if it is not valid."),
+            fieldWithPath("[].status").description("The result of the book insert. One of 'CREATED', 'DUPLICATE' or 'INVALID'."));
+
+        actions.andDo(documentationHandler.document(responseFields));
+    }
+
     @Test
     public void bookResource() throws Exception {
-        Book book = new Book("0345391802", "The Hitchhiker's Guide to the Galaxy");
+        Book book = new Book("9780345391803", "The Hitchhiker's Guide to the Galaxy");
         given(bookService.findOne(book.getIsbn())).willReturn(of(book));
 
         ResultActions actions = mockMvc.perform(get(PATH_FIND_ONE, book.getIsbn()).accept(APPLICATION_JSON_UTF8));
         actions.andExpect(status().isOk());
 
-        Snippet responseFields = responseFields(fieldWithPath("isbn").description("The isbn of the book."),
+        Snippet responseFields = responseFields(fieldWithPath("isbn").description("The canonical isbn of the book."),
             fieldWithPath("title").description("The title of the book."));
 
         actions.andDo(documentationHandler.document(responseFields));
@@ -211,6 +534,36 @@ public class BookControllerDoc {
     }
 
     private static Book book(BookInsert bookInsert) {
-        return new Book(bookInsert.getIsbn(), bookInsert.getTitle());
+        return new Book(Isbns.canonical(bookInsert.getIsbn()), bookInsert.getTitle());
+    }
+
+    private void findAllAs(String mediaType) throws Exception {
+        BookTrie snapshot = BookTrie.EMPTY.with(new Book("9780345391803", "The Hitchhiker's Guide to the Galaxy"))
+            .with(new Book("9781451673319", "Fahrenheit 451"));
+        given(bookService.snapshot()).willReturn(snapshot);
+
+        ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL).accept(mediaType));
+        actions.andExpect(status().isOk());
+
+        Snippet requestHeaders =
+            requestHeaders(headerWithName(ACCEPT).description("The binary format the client is able to understand."));
+
+        Snippet responseHeaders =
+            responseHeaders(headerWithName(CONTENT_TYPE).description("The binary format of the content returned."),
+                headerWithName(ETAG).description("The entity tag of the content returned."));
+
+        actions.andDo(document("book/{method-name}", preprocessResponse(hexDump(), removeHeaders(CONTENT_LENGTH)), requestHeaders,
+            responseHeaders));
+    }
+
+    private static OperationPreprocessor hexDump() {
+        // Binary content can not be shown as it is, so it is documented the way a hex editor shows it.
+        return new ContentModifyingOperationPreprocessor((content, contentType) -> {
+            StringBuilder dump = new StringBuilder();
+            for (int i = 0; i < content.length; i++) {
+                dump.append(format("%02x", content[i])).append((i + 1) % 16 == 0 || i == content.length - 1 ? '\n' : ' ');
+            }
+            return dump.toString().getBytes(UTF_8);
+        });
     }
 }
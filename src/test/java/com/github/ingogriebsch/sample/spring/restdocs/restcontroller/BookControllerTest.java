@@ -19,33 +19,69 @@
  */
 package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
 
+import static java.util.Collections.emptyList;
 import static java.util.Optional.empty;
 import static java.util.Optional.of;
 
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookChange.Type.DELETED;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookChange.Type.INSERTED;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.APPLICATION_CBOR_VALUE;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.APPLICATION_NDJSON_VALUE;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.APPLICATION_SMILE_VALUE;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PARAM_AFTER;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PARAM_FROM;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PARAM_ISBN_PREFIX;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PARAM_LIMIT;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PARAM_QUERY;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PARAM_SINCE;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PARAM_TO;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PATH_CHANGES;
 import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PATH_DELETE;
 import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PATH_FIND_ALL;
 import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PATH_FIND_ONE;
 import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PATH_INSERT;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PATH_INSERT_BATCH;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookController.PATH_SEARCH;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookInsertResult.Status.CREATED;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookInsertResult.Status.DUPLICATE;
+import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Sets.newHashSet;
 import static org.apache.commons.lang3.RandomStringUtils.randomNumeric;
 import static org.apache.commons.lang3.StringUtils.EMPTY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.springframework.http.HttpHeaders.ACCEPT;
+import static org.springframework.http.HttpHeaders.ETAG;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+import static org.springframework.http.HttpHeaders.LINK;
+import static org.springframework.http.HttpHeaders.VARY;
 import static org.springframework.http.MediaType.APPLICATION_JSON_UTF8;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import org.hamcrest.Matchers;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -54,6 +90,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 
 @RunWith(SpringRunner.class)
@@ -66,6 +103,9 @@ public class BookControllerTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private BookJsonHttpMessageConverter bookJsonHttpMessageConverter;
+
     @MockBean
     private BookService bookService;
 
@@ -80,11 +120,169 @@ public class BookControllerTest {
         actions.andExpect(content().contentType(APPLICATION_JSON_UTF8));
         actions.andExpect(jsonPath("$.isbn", is(book.getIsbn())));
         actions.andExpect(jsonPath("$.title", is(book.getTitle())));
+        assertThat(bookJsonHttpMessageConverter.stats().requestCount()).isGreaterThan(0);
 
         verify(bookService, times(1)).findOne(book.getIsbn());
         verifyNoMoreInteractions(bookService);
     }
 
+    @Test
+    public void findOne_should_return_book_resource_as_cbor_if_accepted() throws Exception {
+        Book book = new Book("9780345391803", "The Hitchhiker's Guide to the Galaxy");
+        given(bookService.findOne(book.getIsbn())).willReturn(of(book));
+
+        ResultActions actions = mockMvc.perform(get(PATH_FIND_ONE, book.getIsbn()).accept(APPLICATION_CBOR_VALUE));
+        actions.andExpect(status().isOk());
+        actions.andExpect(content().contentType(APPLICATION_CBOR_VALUE));
+
+        byte[] content = actions.andReturn().getResponse().getContentAsByteArray();
+        assertThat(new ObjectMapper(new CBORFactory()).readValue(content, Book.class)).isEqualTo(book);
+    }
+
+    @Test
+    public void findOne_should_return_status_not_modified_if_etag_matches() throws Exception {
+        Book book = new Book("0345391802", "The Hitchhiker's Guide to the Galaxy");
+        given(bookService.findOne(book.getIsbn())).willReturn(of(book));
+
+        String etag = mockMvc.perform(get(PATH_FIND_ONE, book.getIsbn()).accept(APPLICATION_JSON_UTF8)).andReturn().getResponse()
+            .getHeader(ETAG);
+
+        ResultActions actions =
+            mockMvc.perform(get(PATH_FIND_ONE, book.getIsbn()).accept(APPLICATION_JSON_UTF8).header(IF_NONE_MATCH, etag));
+        actions.andExpect(status().isNotModified());
+        actions.andExpect(header().string(ETAG, etag));
+        actions.andExpect(content().string(EMPTY));
+
+        verify(bookService, times(2)).findOne(book.getIsbn());
+        verifyNoMoreInteractions(bookService);
+    }
+
+    @Test
+    public void findOne_should_return_status_ok_if_etag_does_not_match() throws Exception {
+        Book book = new Book("0345391802", "The Hitchhiker's Guide to the Galaxy");
+        given(bookService.findOne(book.getIsbn())).willReturn(of(book));
+
+        ResultActions actions = mockMvc
+            .perform(get(PATH_FIND_ONE, book.getIsbn()).accept(APPLICATION_JSON_UTF8).header(IF_NONE_MATCH, "\"outdated\""));
+        actions.andExpect(status().isOk());
+        actions.andExpect(header().string(ETAG, not("\"outdated\"")));
+        actions.andExpect(jsonPath("$.isbn", is(book.getIsbn())));
+    }
+
+    @Test
+    public void findAll_should_stream_limited_number_of_books_with_isbn_prefix_if_requested() throws Exception {
+        List<Book> books =
+            newArrayList(new Book("0345391802", "The Hitchhiker's Guide to the Galaxy"), new Book("0345418913", "Lord of Light"));
+        given(bookService.streamAll(IsbnRange.prefix("0345"))).willReturn(books.stream());
+
+        ResultActions actions = mockMvc.perform(
+            get(PATH_FIND_ALL).param(PARAM_ISBN_PREFIX, "0345").param(PARAM_LIMIT, "1").accept(APPLICATION_NDJSON_VALUE));
+        actions.andExpect(status().isOk());
+        actions.andExpect(content().string(objectMapper.writeValueAsString(books.get(0)) + "\n"));
+    }
+
+    @Test
+    public void findAll_should_return_status_bad_request_if_streamed_limit_is_not_positive() throws Exception {
+        ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL).param(PARAM_LIMIT, "0").accept(APPLICATION_NDJSON_VALUE));
+        actions.andExpect(status().isBadRequest());
+
+        verifyNoMoreInteractions(bookService);
+    }
+
+    @Test
+    public void changes_should_return_current_sequence_if_since_is_not_given() throws Exception {
+        given(bookService.changeSequence()).willReturn(42L);
+
+        MvcResult result = mockMvc.perform(get(PATH_CHANGES).accept(APPLICATION_JSON_UTF8)).andReturn();
+        ResultActions actions = mockMvc.perform(asyncDispatch(result));
+        actions.andExpect(status().isOk());
+        actions.andExpect(jsonPath("$.sequence", is(42)));
+        actions.andExpect(jsonPath("$.changes", hasSize(0)));
+    }
+
+    @Test
+    public void changes_should_return_available_changes_following_since() throws Exception {
+        List<BookChange> changes = newArrayList(new BookChange(8, INSERTED, "9780062225672", "The Color of Magic"),
+            new BookChange(9, DELETED, "9780062225672", "The Color of Magic"));
+        given(bookService.changes(7, 1000)).willReturn(of(changes));
+
+        MvcResult result = mockMvc.perform(get(PATH_CHANGES).param(PARAM_SINCE, "7").accept(APPLICATION_JSON_UTF8)).andReturn();
+        ResultActions actions = mockMvc.perform(asyncDispatch(result));
+        actions.andExpect(status().isOk());
+        actions.andExpect(jsonPath("$.sequence", is(9)));
+        actions.andExpect(jsonPath("$.changes", hasSize(2)));
+        actions.andExpect(jsonPath("$.changes[0].type", is("INSERTED")));
+        actions.andExpect(jsonPath("$.changes[1].type", is("DELETED")));
+    }
+
+    @Test
+    public void changes_should_wait_for_changes_if_none_are_available() throws Exception {
+        List<BookChange> changes = newArrayList(new BookChange(8, INSERTED, "9780062225672", "The Color of Magic"));
+        given(bookService.changes(7, 1000)).willReturn(of(emptyList())).willReturn(of(changes));
+        willAnswer(invocation -> {
+            invocation.getArgumentAt(1, Runnable.class).run();
+            return null;
+        }).given(bookService).awaitChanges(eq(7L), any(Runnable.class));
+
+        MvcResult result = mockMvc.perform(get(PATH_CHANGES).param(PARAM_SINCE, "7").accept(APPLICATION_JSON_UTF8)).andReturn();
+        ResultActions actions = mockMvc.perform(asyncDispatch(result));
+        actions.andExpect(status().isOk());
+        actions.andExpect(jsonPath("$.sequence", is(8)));
+        actions.andExpect(jsonPath("$.changes", hasSize(1)));
+
+        verify(bookService, times(1)).awaitChanges(eq(7L), any(Runnable.class));
+    }
+
+    @Test
+    public void changes_should_return_status_gone_if_changes_are_not_available_anymore() throws Exception {
+        given(bookService.changes(7, 1000)).willReturn(empty());
+
+        MvcResult result = mockMvc.perform(get(PATH_CHANGES).param(PARAM_SINCE, "7").accept(APPLICATION_JSON_UTF8)).andReturn();
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isGone());
+    }
+
+    @Test
+    public void changes_should_return_status_bad_request_if_limit_is_not_positive() throws Exception {
+        MvcResult result = mockMvc
+            .perform(get(PATH_CHANGES).param(PARAM_SINCE, "7").param(PARAM_LIMIT, "0").accept(APPLICATION_JSON_UTF8)).andReturn();
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isBadRequest());
+
+        verifyNoMoreInteractions(bookService);
+    }
+
+    @Test
+    public void search_should_return_status_ok_and_ranked_books() throws Exception {
+        List<Book> books = newArrayList(new Book("0345391802", "The Hitchhiker's Guide to the Galaxy"),
+            new Book("0062225677", "The Color of Magic"));
+        given(bookService.search("the", 10)).willReturn(books);
+
+        ResultActions actions = mockMvc.perform(get(PATH_SEARCH).param(PARAM_QUERY, "the").accept(APPLICATION_JSON_UTF8));
+        actions.andExpect(status().isOk());
+        actions.andExpect(jsonPath("$", hasSize(books.size())));
+        actions.andExpect(jsonPath("$[0].isbn", is(books.get(0).getIsbn())));
+        actions.andExpect(jsonPath("$[1].isbn", is(books.get(1).getIsbn())));
+
+        verify(bookService, times(1)).search("the", 10);
+        verifyNoMoreInteractions(bookService);
+    }
+
+    @Test
+    public void search_should_return_status_bad_request_if_query_is_blank() throws Exception {
+        ResultActions actions = mockMvc.perform(get(PATH_SEARCH).param(PARAM_QUERY, " ").accept(APPLICATION_JSON_UTF8));
+        actions.andExpect(status().isBadRequest());
+
+        verifyNoMoreInteractions(bookService);
+    }
+
+    @Test
+    public void search_should_return_status_bad_request_if_limit_is_not_positive() throws Exception {
+        ResultActions actions =
+            mockMvc.perform(get(PATH_SEARCH).param(PARAM_QUERY, "the").param(PARAM_LIMIT, "0").accept(APPLICATION_JSON_UTF8));
+        actions.andExpect(status().isBadRequest());
+
+        verifyNoMoreInteractions(bookService);
+    }
+
     @Test
     public void findOne_should_return_status_not_found_if_not_available() throws Exception {
         String isbn = randomNumeric(8);
@@ -102,33 +300,205 @@ public class BookControllerTest {
     public void findAll_should_return_status_ok_and_book_resources_if_available() throws Exception {
         Set<Book> books = newHashSet(new Book("0345391802", "The Hitchhiker's Guide to the Galaxy"),
             new Book("9781451673319", "Fahrenheit 451"), new Book("0062225677", "The Color of Magic"));
-        given(bookService.findAll()).willReturn(books);
+        given(bookService.snapshot()).willReturn(snapshot(books));
 
         ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL).accept(APPLICATION_JSON_UTF8));
         actions.andExpect(status().isOk());
         actions.andExpect(content().contentType(APPLICATION_JSON_UTF8));
-        actions.andExpect(jsonPath("$", not(empty())));
+        actions.andExpect(jsonPath("$", hasSize(books.size())));
 
-        verify(bookService, times(1)).findAll();
+        verify(bookService, times(1)).version();
+        verify(bookService, times(1)).snapshot();
         verifyNoMoreInteractions(bookService);
     }
 
+    @Test
+    public void findAll_should_return_book_resources_as_smile_if_accepted() throws Exception {
+        Set<Book> books = newHashSet(new Book("9780345391803", "The Hitchhiker's Guide to the Galaxy"),
+            new Book("9781451673319", "Fahrenheit 451"));
+        given(bookService.snapshot()).willReturn(snapshot(books));
+
+        ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL).accept(APPLICATION_SMILE_VALUE));
+        actions.andExpect(status().isOk());
+        actions.andExpect(content().contentType(APPLICATION_SMILE_VALUE));
+
+        byte[] content = actions.andReturn().getResponse().getContentAsByteArray();
+        assertThat(new ObjectMapper(new SmileFactory()).readValue(content, Book[].class)).containsOnlyElementsOf(books)
+            .hasSize(books.size());
+    }
+
     @Test
     public void findAll_should_return_status_ok_but_no_resources_if_not_available() throws Exception {
-        given(bookService.findAll()).willReturn(newHashSet());
+        given(bookService.snapshot()).willReturn(snapshot(newHashSet()));
 
         ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL).accept(APPLICATION_JSON_UTF8));
         actions.andExpect(status().isOk());
         actions.andExpect(content().contentType(APPLICATION_JSON_UTF8));
         actions.andExpect(jsonPath("$", Matchers.empty()));
 
-        verify(bookService, times(1)).findAll();
+        verify(bookService, times(1)).version();
+        verify(bookService, times(1)).snapshot();
+        verifyNoMoreInteractions(bookService);
+    }
+
+    @Test
+    public void findAll_should_return_status_ok_and_page_with_link_to_next_page_if_limit_is_reached() throws Exception {
+        List<Book> books = newArrayList(new Book("0062225677", "The Color of Magic"),
+            new Book("0345391802", "The Hitchhiker's Guide to the Galaxy"));
+        given(bookService.findAll(IsbnRange.ALL, "0000000000", 2)).willReturn(books);
+
+        ResultActions actions = mockMvc
+            .perform(get(PATH_FIND_ALL).param(PARAM_AFTER, "0000000000").param(PARAM_LIMIT, "2").accept(APPLICATION_JSON_UTF8));
+        actions.andExpect(status().isOk());
+        actions.andExpect(content().contentType(APPLICATION_JSON_UTF8));
+        actions.andExpect(jsonPath("$", hasSize(2)));
+        actions.andExpect(jsonPath("$[0].isbn", is("0062225677")));
+        actions.andExpect(jsonPath("$[1].isbn", is("0345391802")));
+        actions.andExpect(header().string(LINK, containsString(PARAM_AFTER + "=0345391802")));
+
+        verify(bookService, times(1)).findAll(IsbnRange.ALL, "0000000000", 2);
+        verify(bookService, times(1)).version();
+        verifyNoMoreInteractions(bookService);
+    }
+
+    @Test
+    public void findAll_should_return_status_ok_and_no_link_if_limit_is_not_reached() throws Exception {
+        List<Book> books = newArrayList(new Book("0062225677", "The Color of Magic"));
+        given(bookService.findAll(IsbnRange.ALL, null, 2)).willReturn(books);
+
+        ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL).param(PARAM_LIMIT, "2").accept(APPLICATION_JSON_UTF8));
+        actions.andExpect(status().isOk());
+        actions.andExpect(jsonPath("$", hasSize(1)));
+        actions.andExpect(header().doesNotExist(LINK));
+
+        verify(bookService, times(1)).findAll(IsbnRange.ALL, null, 2);
+        verify(bookService, times(1)).version();
+        verifyNoMoreInteractions(bookService);
+    }
+
+    @Test
+    public void findAll_should_return_page_of_default_size_if_only_after_is_given() throws Exception {
+        List<Book> books = newArrayList(new Book("0345391802", "The Hitchhiker's Guide to the Galaxy"));
+        given(bookService.findAll(IsbnRange.ALL, "0062225677", 100)).willReturn(books);
+
+        ResultActions actions =
+            mockMvc.perform(get(PATH_FIND_ALL).param(PARAM_AFTER, "0062225677").accept(APPLICATION_JSON_UTF8));
+        actions.andExpect(status().isOk());
+        actions.andExpect(jsonPath("$", hasSize(1)));
+        actions.andExpect(header().doesNotExist(LINK));
+
+        verify(bookService, times(1)).findAll(IsbnRange.ALL, "0062225677", 100);
+        verify(bookService, times(1)).version();
+        verifyNoMoreInteractions(bookService);
+    }
+
+    @Test
+    public void findAll_should_return_status_not_modified_without_reading_books_if_etag_matches() throws Exception {
+        given(bookService.version()).willReturn(42L);
+        given(bookService.snapshot()).willReturn(snapshot(newHashSet(new Book("9781451673319", "Fahrenheit 451"))));
+
+        String etag = mockMvc.perform(get(PATH_FIND_ALL).accept(APPLICATION_JSON_UTF8)).andReturn().getResponse().getHeader(ETAG);
+
+        ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL).accept(APPLICATION_JSON_UTF8).header(IF_NONE_MATCH, etag));
+        actions.andExpect(status().isNotModified());
+        actions.andExpect(content().string(EMPTY));
+
+        verify(bookService, times(2)).version();
+        verify(bookService, times(1)).snapshot();
+        verifyNoMoreInteractions(bookService);
+    }
+
+    @Test
+    public void findAll_should_return_status_ok_if_etag_belongs_to_other_representation() throws Exception {
+        given(bookService.version()).willReturn(42L);
+        given(bookService.snapshot()).willReturn(snapshot(newHashSet(new Book("9781451673319", "Fahrenheit 451"))));
+        String etag = mockMvc.perform(get(PATH_FIND_ALL).accept(APPLICATION_JSON_UTF8)).andReturn().getResponse().getHeader(ETAG);
+
+        ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL).accept(APPLICATION_CBOR_VALUE).header(IF_NONE_MATCH, etag));
+        actions.andExpect(status().isOk());
+        actions.andExpect(content().contentType(APPLICATION_CBOR_VALUE));
+        actions.andExpect(header().string(ETAG, not(etag)));
+        actions.andExpect(header().string(VARY, ACCEPT));
+    }
+
+    @Test
+    public void findAll_should_return_status_ok_if_version_has_changed() throws Exception {
+        BookTrie snapshot = snapshot(newHashSet(new Book("9781451673319", "Fahrenheit 451")));
+        given(bookService.version()).willReturn(42L);
+        given(bookService.snapshot()).willReturn(snapshot);
+        String etag = mockMvc.perform(get(PATH_FIND_ALL).accept(APPLICATION_JSON_UTF8)).andReturn().getResponse().getHeader(ETAG);
+
+        given(bookService.version()).willReturn(43L);
+        given(bookService.snapshot()).willReturn(snapshot.with(new Book("9780062225672", "The Color of Magic")));
+        ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL).accept(APPLICATION_JSON_UTF8).header(IF_NONE_MATCH, etag));
+        actions.andExpect(status().isOk());
+        actions.andExpect(header().string(ETAG, not(etag)));
+    }
+
+    @Test
+    public void findAll_should_return_all_books_with_isbn_prefix_if_no_limit_is_given() throws Exception {
+        List<Book> books =
+            newArrayList(new Book("0345391802", "The Hitchhiker's Guide to the Galaxy"), new Book("0345418913", "Lord of Light"));
+        given(bookService.streamAll(IsbnRange.prefix("0345"))).willReturn(books.stream());
+
+        ResultActions actions =
+            mockMvc.perform(get(PATH_FIND_ALL).param(PARAM_ISBN_PREFIX, "0345").accept(APPLICATION_JSON_UTF8));
+        actions.andExpect(status().isOk());
+        actions.andExpect(jsonPath("$", hasSize(books.size())));
+        actions.andExpect(jsonPath("$[0].isbn", is(books.get(0).getIsbn())));
+        actions.andExpect(jsonPath("$[1].isbn", is(books.get(1).getIsbn())));
+
+        verify(bookService, times(1)).version();
+        verify(bookService, times(1)).streamAll(IsbnRange.prefix("0345"));
+        verifyNoMoreInteractions(bookService);
+    }
+
+    @Test
+    public void findAll_should_return_page_of_books_in_range() throws Exception {
+        List<Book> books = newArrayList(new Book("0345391802", "The Hitchhiker's Guide to the Galaxy"));
+        IsbnRange range = new IsbnRange("0345000000", "0346000000");
+        given(bookService.findAll(range, null, 2)).willReturn(books);
+
+        ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL).param(PARAM_FROM, range.getFrom())
+            .param(PARAM_TO, range.getTo()).param(PARAM_LIMIT, "2").accept(APPLICATION_JSON_UTF8));
+        actions.andExpect(status().isOk());
+        actions.andExpect(header().doesNotExist(LINK));
+        actions.andExpect(jsonPath("$", hasSize(books.size())));
+
+        verify(bookService, times(1)).version();
+        verify(bookService, times(1)).findAll(range, null, 2);
+        verifyNoMoreInteractions(bookService);
+    }
+
+    @Test
+    public void findAll_should_return_status_bad_request_if_limit_is_not_positive() throws Exception {
+        ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL).param(PARAM_LIMIT, "0").accept(APPLICATION_JSON_UTF8));
+        actions.andExpect(status().isBadRequest());
+
+        verify(bookService, times(1)).version();
+        verifyNoMoreInteractions(bookService);
+    }
+
+    @Test
+    public void findAll_should_stream_newline_delimited_book_resources_if_requested() throws Exception {
+        List<Book> books = newArrayList(new Book("0062225677", "The Color of Magic"),
+            new Book("0345391802", "The Hitchhiker's Guide to the Galaxy"));
+        given(bookService.streamAll(IsbnRange.ALL)).willReturn(books.stream());
+
+        ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL).accept(APPLICATION_NDJSON_VALUE));
+        actions.andExpect(status().isOk());
+        actions.andExpect(content().contentType(APPLICATION_NDJSON_VALUE));
+        actions.andExpect(content()
+            .string(objectMapper.writeValueAsString(books.get(0)) + "\n" + objectMapper.writeValueAsString(books.get(1)) + "\n"));
+
+        verify(bookService, times(1)).streamAll(IsbnRange.ALL);
+        verify(bookService, times(1)).version();
         verifyNoMoreInteractions(bookService);
     }
 
     @Test
     public void insert_should_return_status_created_if_not_known() throws Exception {
-        BookInsert bookInsert = new BookInsert(randomNumeric(10), "Fahrenheit 451");
+        BookInsert bookInsert = new BookInsert("9781451673319", "Fahrenheit 451");
         Book book = new Book(bookInsert.getIsbn(), bookInsert.getTitle());
         given(bookService.insert(bookInsert)).willReturn(of(book));
 
@@ -142,9 +512,28 @@ public class BookControllerTest {
         verifyNoMoreInteractions(bookService);
     }
 
+    @Test
+    public void insert_should_accept_and_return_cbor() throws Exception {
+        BookInsert bookInsert = new BookInsert("9781451673319", "Fahrenheit 451");
+        Book book = new Book(bookInsert.getIsbn(), bookInsert.getTitle());
+        given(bookService.insert(bookInsert)).willReturn(of(book));
+
+        ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+        ResultActions actions = mockMvc.perform(post(PATH_INSERT).contentType(APPLICATION_CBOR_VALUE)
+            .content(cborMapper.writeValueAsBytes(bookInsert)).accept(APPLICATION_CBOR_VALUE));
+        actions.andExpect(status().isCreated());
+        actions.andExpect(content().contentType(APPLICATION_CBOR_VALUE));
+
+        byte[] content = actions.andReturn().getResponse().getContentAsByteArray();
+        assertThat(cborMapper.readValue(content, Book.class)).isEqualTo(book);
+
+        verify(bookService, times(1)).insert(bookInsert);
+        verifyNoMoreInteractions(bookService);
+    }
+
     @Test
     public void insert_should_return_status_bad_request_if_already_known() throws Exception {
-        BookInsert bookInsert = new BookInsert(randomNumeric(10), "Fahrenheit 451");
+        BookInsert bookInsert = new BookInsert("9781451673319", "Fahrenheit 451");
         given(bookService.insert(bookInsert)).willReturn(empty());
 
         String content = objectMapper.writeValueAsString(bookInsert);
@@ -168,6 +557,46 @@ public class BookControllerTest {
         verifyNoMoreInteractions(bookService);
     }
 
+    @Test
+    public void insertAll_should_return_status_ok_and_result_for_each_book_insert() throws Exception {
+        List<BookInsert> bookInserts = newArrayList(new BookInsert("0062225677", "The Color of Magic"),
+            new BookInsert("0345391802", "The Hitchhiker's Guide to the Galaxy"));
+        given(bookService.insertAll(bookInserts))
+            .willReturn(newArrayList(new BookInsertResult("0062225677", CREATED), new BookInsertResult("0345391802", DUPLICATE)));
+
+        String content = objectMapper.writeValueAsString(bookInserts);
+        ResultActions actions = mockMvc.perform(post(PATH_INSERT_BATCH).contentType(APPLICATION_JSON_UTF8).content(content));
+        actions.andExpect(status().isOk());
+        actions.andExpect(content().contentType(APPLICATION_JSON_UTF8));
+        actions.andExpect(jsonPath("$", hasSize(2)));
+        actions.andExpect(jsonPath("$[0].isbn", is("0062225677")));
+        actions.andExpect(jsonPath("$[0].status", is(CREATED.name())));
+        actions.andExpect(jsonPath("$[1].isbn", is("0345391802")));
+        actions.andExpect(jsonPath("$[1].status", is(DUPLICATE.name())));
+
+        verify(bookService, times(1)).insertAll(bookInserts);
+        verifyNoMoreInteractions(bookService);
+    }
+
+    @Test
+    public void insertAll_should_accept_newline_delimited_book_inserts() throws Exception {
+        List<BookInsert> bookInserts = newArrayList(new BookInsert("0062225677", "The Color of Magic"),
+            new BookInsert("0345391802", "The Hitchhiker's Guide to the Galaxy"));
+        given(bookService.insertAll(bookInserts))
+            .willReturn(newArrayList(new BookInsertResult("0062225677", CREATED), new BookInsertResult("0345391802", CREATED)));
+
+        String content = objectMapper.writeValueAsString(bookInserts.get(0)) + "\n"
+            + objectMapper.writeValueAsString(bookInserts.get(1)) + "\n";
+        ResultActions actions = mockMvc.perform(post(PATH_INSERT_BATCH).contentType(APPLICATION_NDJSON_VALUE).content(content));
+        actions.andExpect(status().isOk());
+        actions.andExpect(content().contentType(APPLICATION_JSON_UTF8));
+        actions.andExpect(jsonPath("$", hasSize(2)));
+        actions.andExpect(jsonPath("$[1].status", is(CREATED.name())));
+
+        verify(bookService, times(1)).insertAll(bookInserts);
+        verifyNoMoreInteractions(bookService);
+    }
+
     @Test
     public void delete_should_return_status_ok_if_known() throws Exception {
         String isbn = randomNumeric(8);
@@ -194,4 +623,11 @@ public class BookControllerTest {
         verifyNoMoreInteractions(bookService);
     }
 
+    private static BookTrie snapshot(Collection<Book> books) {
+        BookTrie snapshot = BookTrie.EMPTY;
+        for (Book book : books) {
+            snapshot = snapshot.with(book);
+        }
+        return snapshot;
+    }
 }
@@ -0,0 +1,96 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class BookFilterTest {
+
+    @Test
+    public void mightContain_should_return_true_for_added_isbns() {
+        BookFilter filter = new BookFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add(isbn(i));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(filter.mightContain(isbn(i))).isTrue();
+        }
+    }
+
+    @Test
+    public void mightContain_should_return_false_for_removed_isbns() {
+        BookFilter filter = new BookFilter(10_000, 0.01);
+        filter.add(isbn(1));
+        filter.add(isbn(2));
+        filter.remove(isbn(1));
+
+        assertThat(filter.mightContain(isbn(1))).isFalse();
+        assertThat(filter.mightContain(isbn(2))).isTrue();
+        assertThat(filter.falsePositiveRate()).isGreaterThan(0);
+
+        filter.remove(isbn(2));
+        assertThat(filter.falsePositiveRate()).isEqualTo(0);
+    }
+
+    @Test
+    public void mightContain_should_keep_false_positive_rate_if_filled_with_expected_books() {
+        BookFilter filter = new BookFilter(100_000, 0.01);
+        for (int i = 0; i < 100_000; i++) {
+            filter.add(isbn(i));
+        }
+
+        int falsePositives = 0;
+        for (int i = 100_000; i < 200_000; i++) {
+            if (filter.mightContain(isbn(i))) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives / 100_000.0).isBetween(0.005, 0.015);
+        assertThat(filter.falsePositiveRate()).isBetween(0.005, 0.015);
+    }
+
+    @Test
+    public void remove_should_not_decrement_saturated_counters() {
+        BookFilter filter = new BookFilter(10_000, 0.01);
+        for (int i = 0; i < 20; i++) {
+            filter.add(isbn(1));
+        }
+        filter.add(isbn(2));
+        for (int i = 0; i < 20; i++) {
+            filter.remove(isbn(1));
+        }
+
+        // A counter which overflowed might count other isbns as well, the filter never forgets an isbn it still contains.
+        assertThat(filter.mightContain(isbn(1))).isTrue();
+        assertThat(filter.mightContain(isbn(2))).isTrue();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_should_throw_exception_if_false_positive_rate_is_not_valid() {
+        new BookFilter(10_000, 1);
+    }
+
+    private static String isbn(int i) {
+        String isbn = String.format("978%09d", i);
+        return isbn + Isbns.checkDigit13(isbn);
+    }
+}
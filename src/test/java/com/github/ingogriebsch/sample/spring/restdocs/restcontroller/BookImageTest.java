@@ -0,0 +1,105 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.nio.file.Files.size;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.stream.Collectors.toSet;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BookImageTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Book> books = newArrayList(new Book("9780345391803", "The Hitchhiker's Guide to the Galaxy"),
+        new Book("9780062225672", "The Color of Magic"), new Book("9781451673319", "Fahrenheit 451 – Ray Bradbury"));
+
+    @Test
+    public void load_should_insert_the_written_books_into_the_store() throws Exception {
+        Path image = folder.newFile().toPath();
+        assertThat(BookImage.write(image, books.stream())).isEqualTo(3);
+
+        BookStore bookStore = new InMemoryBookStore();
+        assertThat(BookImage.load(image, bookStore)).isEqualTo(3);
+        assertThat(bookStore.stream().collect(toSet())).containsOnlyElementsOf(books);
+    }
+
+    @Test
+    public void load_should_accept_an_empty_image() throws Exception {
+        Path image = folder.newFile().toPath();
+        BookImage.write(image, newArrayList().stream().map(Book.class::cast));
+
+        BookStore bookStore = new InMemoryBookStore();
+        assertThat(BookImage.load(image, bookStore)).isEqualTo(0);
+        assertThat(bookStore.size()).isEqualTo(0);
+    }
+
+    @Test(expected = IOException.class)
+    public void load_should_reject_a_file_which_is_not_an_image() throws Exception {
+        Path image = folder.newFile().toPath();
+        try (FileChannel channel = FileChannel.open(image, WRITE)) {
+            channel.write(ByteBuffer.wrap("{\"isbn\":\"9780062225672\"}".getBytes()));
+        }
+        BookImage.load(image, new InMemoryBookStore());
+    }
+
+    @Test(expected = IOException.class)
+    public void load_should_reject_a_truncated_image() throws Exception {
+        Path image = folder.newFile().toPath();
+        BookImage.write(image, books.stream());
+        try (FileChannel channel = FileChannel.open(image, WRITE)) {
+            channel.truncate(size(image) - 4);
+        }
+        BookImage.load(image, new InMemoryBookStore());
+    }
+
+    @Test(expected = IOException.class)
+    public void load_should_reject_an_image_with_a_corrupt_length() throws Exception {
+        Path image = folder.newFile().toPath();
+        BookImage.write(image, books.stream());
+        try (FileChannel channel = FileChannel.open(image, WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, Integer.MAX_VALUE), 16);
+        }
+        BookImage.load(image, new InMemoryBookStore());
+    }
+
+    @Test(expected = IOException.class)
+    public void load_should_reject_an_image_whose_count_was_not_written() throws Exception {
+        Path image = folder.newFile().toPath();
+        BookImage.write(image, books.stream());
+        try (FileChannel channel = FileChannel.open(image, WRITE)) {
+            channel.write(ByteBuffer.allocate(8), 8);
+        }
+        BookImage.load(image, new InMemoryBookStore());
+    }
+}
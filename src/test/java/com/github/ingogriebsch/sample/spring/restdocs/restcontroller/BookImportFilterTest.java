@@ -0,0 +1,68 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookImporter.State.COMPLETED;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookImporter.State.IMPORTING;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.springframework.http.HttpHeaders.WARNING;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class BookImportFilterTest {
+
+    private BookImporter importer;
+    private BookImportFilter filter;
+
+    @Before
+    public void before() {
+        importer = mock(BookImporter.class);
+        filter = new BookImportFilter(importer);
+    }
+
+    @Test
+    public void should_warn_about_incomplete_reads_while_importing() throws Exception {
+        given(importer.state()).willReturn(IMPORTING);
+
+        assertThat(filter("GET", "/books").getHeader(WARNING)).isEqualTo(BookImportFilter.INCOMPLETE);
+        assertThat(filter("GET", "/books/9780345391803").getHeader(WARNING)).isEqualTo(BookImportFilter.INCOMPLETE);
+        assertThat(filter("POST", "/books").getHeader(WARNING)).isNull();
+        assertThat(filter("GET", "/prometheus").getHeader(WARNING)).isNull();
+    }
+
+    @Test
+    public void should_not_warn_once_import_is_completed() throws Exception {
+        given(importer.state()).willReturn(COMPLETED);
+
+        assertThat(filter("GET", "/books").getHeader(WARNING)).isNull();
+    }
+
+    private MockHttpServletResponse filter(String method, String path) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest(method, path), response, new MockFilterChain());
+        return response;
+    }
+}
@@ -0,0 +1,151 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static javax.validation.Validation.buildDefaultValidatorFactory;
+
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookImporter.State.COMPLETED;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookImporter.State.FAILED;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookImporter.State.IMPORTING;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BookImporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BookImportProperties properties;
+    private BookService bookService;
+
+    @Before
+    public void before() {
+        properties = new BookImportProperties();
+        properties.setParallelism(4);
+        properties.setBatchSize(7);
+        bookService = new BookService(new InMemoryBookStore(), buildDefaultValidatorFactory().getValidator());
+    }
+
+    @Test
+    public void start_should_import_books_of_ndjson_file() throws Exception {
+        List<String> lines = IntStream.range(0, 100).mapToObj(i -> "{\"isbn\":\"" + isbn(i) + "\",\"title\":\"Title " + i + "\"}")
+            .collect(Collectors.toList());
+        BookImporter importer = importer("books.ndjson", lines);
+
+        assertThat(importer.start().get(10, SECONDS)).isEqualTo(COMPLETED);
+        assertThat(bookService.count()).isEqualTo(100);
+        assertThat(bookService.findOne(isbn(42)).get().getTitle()).isEqualTo("Title 42");
+        assertThat(importer.processed()).isEqualTo(100);
+        assertThat(importer.progress()).isEqualTo(1);
+        assertThat(importer.throughput()).isPositive();
+    }
+
+    @Test
+    public void start_should_import_books_of_csv_file() throws Exception {
+        BookImporter importer = importer("books.csv", asList("ISBN,Title", "0062225677,The Color of Magic", "",
+            "9780345391803,\"The Hitchhiker's Guide to the Galaxy, \"\"Part One\"\"\""));
+
+        assertThat(importer.start().get(10, SECONDS)).isEqualTo(COMPLETED);
+        assertThat(bookService.count()).isEqualTo(2);
+        // Isbns are stored canonical, as if the books were inserted through the service.
+        assertThat(bookService.findOne("9780062225672").get().getTitle()).isEqualTo("The Color of Magic");
+        assertThat(bookService.findOne("9780345391803").get().getTitle())
+            .isEqualTo("The Hitchhiker's Guide to the Galaxy, \"Part One\"");
+    }
+
+    @Test
+    public void start_should_count_duplicated_and_invalid_books() throws Exception {
+        bookService.insert(new BookInsert("9781451673319", "Fahrenheit 451"));
+        BookImporter importer = importer("books.ndjson",
+            asList("{\"isbn\":\"9781451673319\",\"title\":\"Fahrenheit 451\"}", "{\"isbn\":\"1234\",\"title\":\"Invalid\"}",
+                "not a book", "{\"isbn\":\"0062225677\",\"title\":\"The Color of Magic\"}"));
+        MeterRegistry registry = new SimpleMeterRegistry();
+        importer.bindTo(registry);
+
+        assertThat(importer.start().get(10, SECONDS)).isEqualTo(COMPLETED);
+        assertThat(bookService.count()).isEqualTo(2);
+        assertThat(registry.get("books.import.books").tag("status", "created").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("books.import.books").tag("status", "duplicate").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("books.import.books").tag("status", "invalid").functionCounter().count()).isEqualTo(2);
+    }
+
+    @Test
+    public void health_should_be_out_of_service_until_import_is_completed() throws Exception {
+        BookImporter importer = importer("books.csv", asList("0062225677,The Color of Magic"));
+        assertThat(importer.state()).isEqualTo(IMPORTING);
+        assertThat(importer.health().getStatus().getCode()).isEqualTo("OUT_OF_SERVICE");
+
+        importer.start().get(10, SECONDS);
+        assertThat(importer.health().getStatus().getCode()).isEqualTo("UP");
+        assertThat(importer.health().getDetails()).containsEntry("books", 1L);
+    }
+
+    @Test
+    public void start_should_fail_if_file_is_not_available() throws Exception {
+        properties.setFile(folder.getRoot().toPath().resolve("missing.csv").toString());
+        BookImporter importer = new BookImporter(properties, bookService, new ObjectMapper());
+
+        assertThat(importer.start().get(10, SECONDS)).isEqualTo(FAILED);
+        assertThat(importer.health().getStatus().getCode()).isEqualTo("DOWN");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void start_should_throw_exception_if_import_is_already_started() throws Exception {
+        BookImporter importer = importer("books.csv", asList("0062225677,The Color of Magic"));
+        importer.start().get(10, SECONDS);
+        importer.start();
+    }
+
+    @Test
+    public void fields_should_split_quoted_fields() {
+        assertThat(BookImporter.fields("a,b")).containsExactly("a", "b");
+        assertThat(BookImporter.fields("a,\"b,c\"")).containsExactly("a", "b,c");
+        assertThat(BookImporter.fields("\"a\"\"b\",")).containsExactly("a\"b", "");
+    }
+
+    private BookImporter importer(String name, List<String> lines) throws Exception {
+        Path file = folder.newFile(name).toPath();
+        Files.write(file, lines, UTF_8);
+        properties.setFile(file.toString());
+        return new BookImporter(properties, bookService, new ObjectMapper());
+    }
+
+    private static String isbn(int i) {
+        String isbn = String.format("978%09d", i);
+        return isbn + Isbns.checkDigit13(isbn);
+    }
+}
@@ -0,0 +1,119 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.MediaType.APPLICATION_JSON_UTF8;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+public class BookJsonHttpMessageConverterTest {
+
+    private static final Type BOOKS = new ParameterizedTypeReference<List<Book>>() {
+    }.getType();
+    private static final Type STRINGS = new ParameterizedTypeReference<Set<String>>() {
+    }.getType();
+
+    private ObjectMapper objectMapper;
+    private BookJsonHttpMessageConverter converter;
+
+    @Before
+    public void before() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        converter = new BookJsonHttpMessageConverter(objectMapper, 1024);
+    }
+
+    @Test
+    public void canWrite_should_only_accept_books_and_collections_of_books() throws Exception {
+        assertThat(converter.canWrite(Book.class, Book.class, APPLICATION_JSON_UTF8)).isTrue();
+        assertThat(converter.canWrite(BOOKS, List.class, APPLICATION_JSON_UTF8)).isTrue();
+        assertThat(converter.canWrite(STRINGS, Set.class, APPLICATION_JSON_UTF8)).isFalse();
+        assertThat(converter.canWrite(BookInsert.class, BookInsert.class, APPLICATION_JSON_UTF8)).isFalse();
+        assertThat(converter.canRead(Book.class, null, APPLICATION_JSON_UTF8)).isFalse();
+    }
+
+    @Test
+    public void write_should_produce_the_same_json_as_the_object_mapper_and_cache_it() throws Exception {
+        Book book = new Book("0345391802", "The Hitchhiker's Guide to the Galaxy");
+
+        for (int i = 0; i < 2; i++) {
+            MockHttpOutputMessage message = new MockHttpOutputMessage();
+            converter.write(book, Book.class, APPLICATION_JSON_UTF8, message);
+            assertThat(message.getBodyAsString(UTF_8)).isEqualTo(objectMapper.writeValueAsString(book));
+            assertThat(message.getHeaders().getContentLength()).isEqualTo(objectMapper.writeValueAsBytes(book).length);
+        }
+
+        assertThat(converter.stats().missCount()).isEqualTo(1);
+        assertThat(converter.stats().hitCount()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    public void write_should_join_cached_books_to_json_array() throws Exception {
+        List<Book> books = newArrayList(new Book("0062225677", "The Color of Magic"),
+            new Book("0345391802", "The Hitchhiker's Guide to the Galaxy"));
+
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+        converter.write(books, BOOKS, APPLICATION_JSON_UTF8, message);
+        assertThat(message.getBodyAsString(UTF_8)).isEqualTo(objectMapper.writeValueAsString(books));
+
+        message = new MockHttpOutputMessage();
+        converter.write(newArrayList(), BOOKS, APPLICATION_JSON_UTF8, message);
+        assertThat(message.getBodyAsString(UTF_8)).isEqualTo("[]");
+    }
+
+    @Test
+    public void cache_should_not_exceed_maximum_size() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            converter.write(new Book(String.format("%010d", i), "Title " + i), Book.class, APPLICATION_JSON_UTF8,
+                new MockHttpOutputMessage());
+        }
+        assertThat(converter.size()).isLessThan(1000);
+        assertThat(converter.stats().evictionCount()).isGreaterThan(0);
+    }
+
+    @Test
+    public void bindTo_should_expose_cache_metrics() throws Exception {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        converter.bindTo(registry);
+
+        Book book = new Book("0345391802", "The Hitchhiker's Guide to the Galaxy");
+        converter.write(book, Book.class, APPLICATION_JSON_UTF8, new MockHttpOutputMessage());
+        converter.write(book, Book.class, APPLICATION_JSON_UTF8, new MockHttpOutputMessage());
+
+        assertThat(registry.get("cache.gets").tag("cache", "books.json-cache").tag("result", "miss").functionCounter().count())
+            .isEqualTo(1);
+        assertThat(registry.get("cache.gets").tag("cache", "books.json-cache").tag("result", "hit").functionCounter().count())
+            .isGreaterThanOrEqualTo(1);
+    }
+}
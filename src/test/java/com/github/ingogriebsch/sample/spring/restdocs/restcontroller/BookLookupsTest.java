@@ -0,0 +1,208 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.Optional.empty;
+import static java.util.Optional.of;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class BookLookupsTest {
+
+    private static final Book book = new Book("9780345391803", "The Hitchhiker's Guide to the Galaxy");
+
+    private final AtomicLong nanoTime = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final ExecutorService executor = newFixedThreadPool(8);
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void find_should_share_lookup_in_flight() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BookLookups lookups = new BookLookups(isbn -> {
+            loads.incrementAndGet();
+            await(release);
+            return of(book);
+        }, 0, 16, nanoTime::get);
+
+        List<Future<Optional<Book>>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> lookups.find(book.getIsbn())));
+        }
+        for (int i = 0; i < 100 && lookups.coalesced() < 7; i++) {
+            MILLISECONDS.sleep(10);
+        }
+        release.countDown();
+
+        for (Future<Optional<Book>> result : results) {
+            assertThat(result.get(10, SECONDS)).isEqualTo(of(book));
+        }
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(lookups.coalesced()).isEqualTo(7);
+        assertThat(lookups.coalescingRatio()).isEqualTo(7 / 8.0);
+    }
+
+    @Test
+    public void find_should_reuse_result_until_it_expires() throws Exception {
+        BookLookups lookups = new BookLookups(counting(isbn -> of(book)), 100, 16, nanoTime::get);
+
+        assertThat(lookups.find(book.getIsbn())).isEqualTo(of(book));
+        nanoTime.addAndGet(MILLISECONDS.toNanos(99));
+        assertThat(lookups.find(book.getIsbn())).isEqualTo(of(book));
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(lookups.cached()).isEqualTo(1);
+
+        nanoTime.addAndGet(MILLISECONDS.toNanos(1));
+        assertThat(lookups.find(book.getIsbn())).isEqualTo(of(book));
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void find_should_not_reuse_result_if_time_to_live_is_zero() throws Exception {
+        BookLookups lookups = new BookLookups(counting(isbn -> of(book)), 0, 16, nanoTime::get);
+
+        lookups.find(book.getIsbn());
+        lookups.find(book.getIsbn());
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void find_should_not_keep_more_results_than_max_entries() throws Exception {
+        BookLookups lookups = new BookLookups(counting(isbn -> empty()), 100, 1, nanoTime::get);
+
+        lookups.find("1");
+        lookups.find("1");
+        assertThat(loads.get()).isEqualTo(1);
+
+        // The result of another isbn evicts the one kept so far.
+        lookups.find("2");
+        lookups.find("2");
+        lookups.find("1");
+        assertThat(loads.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void invalidate_should_drop_result() throws Exception {
+        BookLookups lookups = new BookLookups(counting(isbn -> of(book)), 100, 16, nanoTime::get);
+
+        lookups.find(book.getIsbn());
+        lookups.invalidate(book.getIsbn());
+        lookups.find(book.getIsbn());
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void invalidate_should_not_let_lookup_in_flight_keep_its_result() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger version = new AtomicInteger();
+        BookLookups lookups = new BookLookups(isbn -> {
+            int current = version.get();
+            if (loads.incrementAndGet() == 1) {
+                loading.countDown();
+                await(release);
+            }
+            return of(new Book(isbn, "Version " + current));
+        }, 100, 16, nanoTime::get);
+
+        Future<Optional<Book>> outdated = executor.submit(() -> lookups.find(book.getIsbn()));
+        loading.await(10, SECONDS);
+        version.incrementAndGet();
+        lookups.invalidate(book.getIsbn());
+
+        // A lookup after the write does not wait for the one which started before.
+        assertThat(lookups.find(book.getIsbn()).get().getTitle()).isEqualTo("Version 1");
+        release.countDown();
+        assertThat(outdated.get(10, SECONDS).get().getTitle()).isEqualTo("Version 0");
+        assertThat(lookups.find(book.getIsbn()).get().getTitle()).isEqualTo("Version 1");
+    }
+
+    @Test
+    public void invalidate_should_not_let_lookup_keep_result_read_before_a_write() throws Exception {
+        AtomicInteger version = new AtomicInteger();
+        List<BookLookups> holder = new ArrayList<>();
+        BookLookups lookups = new BookLookups(counting(isbn -> {
+            Optional<Book> result = version.get() == 0 ? empty() : of(book);
+            // The book is written right after it was read, before the lookup returns.
+            if (version.compareAndSet(0, 1)) {
+                holder.get(0).invalidate(isbn);
+            }
+            return result;
+        }), 100, 16, nanoTime::get);
+        holder.add(lookups);
+
+        assertThat(lookups.find(book.getIsbn())).isEqualTo(empty());
+        assertThat(lookups.find(book.getIsbn())).isEqualTo(of(book));
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void find_should_throw_exception_of_lookup_and_not_keep_it() throws Exception {
+        BookLookups lookups = new BookLookups(counting(isbn -> {
+            throw new IllegalStateException("Store not available!");
+        }), 100, 16, nanoTime::get);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                lookups.find(book.getIsbn());
+                failBecauseExceptionWasNotThrown(IllegalStateException.class);
+            } catch (IllegalStateException e) {
+                assertThat(e).hasMessage("Store not available!");
+            }
+        }
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    private Function<String, Optional<Book>> counting(Function<String, Optional<Book>> loader) {
+        return isbn -> {
+            loads.incrementAndGet();
+            return loader.apply(isbn);
+        };
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookReplicationFilter.HEADER_SEQUENCE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpMethod.DELETE;
+import static org.springframework.http.HttpMethod.GET;
+import static org.springframework.http.HttpMethod.POST;
+import static org.springframework.http.HttpStatus.CREATED;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+import static org.springframework.http.MediaType.APPLICATION_JSON_UTF8;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+
+// Runs a leader and two replicas in this process, the leader answers writes only after both replicas applied them.
+public class BookReplicationTest {
+
+    private static EmbeddedWebApplicationContext leader;
+    private static EmbeddedWebApplicationContext first;
+    private static EmbeddedWebApplicationContext second;
+    private static RestTemplate restTemplate;
+
+    @BeforeClass
+    public static void start() {
+        leader = node("--book.replication.write-acks=2", "--book.replication.write-timeout-millis=10000");
+        String leaderUrl = "--book.replication.leader-url=" + url(leader, "");
+        first = node(leaderUrl, "--book.replication.replica-id=first", "--book.replication.read-timeout-millis=5000");
+        second = node(leaderUrl, "--book.replication.replica-id=second", "--book.replication.read-timeout-millis=200");
+
+        restTemplate = new RestTemplate();
+        restTemplate.setErrorHandler(new DefaultResponseErrorHandler() {
+
+            @Override
+            public boolean hasError(ClientHttpResponse response) {
+                return false;
+            }
+        });
+    }
+
+    @AfterClass
+    public static void stop() {
+        for (EmbeddedWebApplicationContext node : new EmbeddedWebApplicationContext[] { second, first, leader }) {
+            if (node != null) {
+                node.close();
+            }
+        }
+    }
+
+    @Test
+    public void replica_should_load_the_books_of_the_leader() {
+        String sequence = Long.toString(leader.getBean(BookService.class).changeSequence());
+
+        ResponseEntity<String> response = exchange(GET, url(first, "/books/0345391802"), sequence, null);
+
+        assertThat(response.getStatusCode()).isEqualTo(OK);
+        assertThat(response.getBody()).contains("The Hitchhiker's Guide to the Galaxy");
+    }
+
+    @Test
+    public void insert_on_replica_should_be_forwarded_to_leader() {
+        ResponseEntity<String> response =
+            exchange(POST, url(first, "/books"), null, "{\"isbn\":\"0-306-40615-2\",\"title\":\"Forwarded\"}");
+
+        assertThat(response.getStatusCode()).isEqualTo(CREATED);
+        assertThat(response.getHeaders().getFirst(HEADER_SEQUENCE)).isNotNull();
+        assertThat(leader.getBean(BookService.class).findOne("0-306-40615-2").isPresent()).isTrue();
+    }
+
+    @Test
+    public void read_with_session_token_should_see_the_write_on_every_replica() {
+        ResponseEntity<String> inserted =
+            exchange(POST, url(second, "/books"), null, "{\"isbn\":\"978-3-16-148410-0\",\"title\":\"Read your writes\"}");
+        String sequence = inserted.getHeaders().getFirst(HEADER_SEQUENCE);
+
+        assertThat(exchange(GET, url(first, "/books/978-3-16-148410-0"), sequence, null).getStatusCode()).isEqualTo(OK);
+        assertThat(exchange(GET, url(second, "/books/978-3-16-148410-0"), sequence, null).getStatusCode()).isEqualTo(OK);
+    }
+
+    @Test
+    public void batch_insert_on_leader_should_be_replicated() {
+        exchange(POST, url(leader, "/books/batch"), null,
+            "[{\"isbn\":\"0-14-044913-2\",\"title\":\"Batched\"},{\"isbn\":\"0-14-303943-1\",\"title\":\"Batched too\"}]");
+        String sequence = Long.toString(leader.getBean(BookService.class).changeSequence());
+
+        assertThat(exchange(GET, url(first, "/books/0-14-044913-2"), sequence, null).getStatusCode()).isEqualTo(OK);
+        assertThat(exchange(GET, url(second, "/books/0-14-303943-1"), sequence, null).getStatusCode()).isEqualTo(OK);
+    }
+
+    @Test
+    public void delete_on_leader_should_be_replicated_before_it_is_answered() {
+        exchange(POST, url(leader, "/books"), null, "{\"isbn\":\"0-19-852663-6\",\"title\":\"Deleted\"}");
+
+        ResponseEntity<String> response = exchange(DELETE, url(leader, "/books/0-19-852663-6"), null, null);
+
+        assertThat(response.getStatusCode()).isEqualTo(OK);
+        assertThat(first.getBean(BookService.class).findOne("0-19-852663-6").isPresent()).isFalse();
+        assertThat(second.getBean(BookService.class).findOne("0-19-852663-6").isPresent()).isFalse();
+        assertThat(exchange(GET, url(second, "/books/0-19-852663-6"), null, null).getStatusCode()).isEqualTo(NOT_FOUND);
+    }
+
+    @Test
+    public void read_with_session_token_ahead_of_the_replica_should_be_rejected() {
+        String sequence = Long.toString(leader.getBean(BookService.class).changeSequence() + 1000);
+
+        ResponseEntity<String> response = exchange(GET, url(second, "/books/0345391802"), sequence, null);
+
+        assertThat(response.getStatusCode()).isEqualTo(SERVICE_UNAVAILABLE);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+    }
+
+    @Test
+    public void leader_should_expose_the_lag_of_its_replicas() {
+        exchange(POST, url(leader, "/books"), null, "{\"isbn\":\"0-7167-0344-0\",\"title\":\"Lag\"}");
+
+        MeterRegistry registry = leader.getBean(MeterRegistry.class);
+
+        assertThat(registry.find("books.replication.lag").tag("replica", "first").gauge()).isNotNull();
+        assertThat(registry.find("books.replication.lag").tag("replica", "second").gauge()).isNotNull();
+    }
+
+    private static ResponseEntity<String> exchange(HttpMethod method, String url, String sequence, String body) {
+        HttpHeaders headers = new HttpHeaders();
+        if (sequence != null) {
+            headers.set(HEADER_SEQUENCE, sequence);
+        }
+        if (body != null) {
+            headers.setContentType(APPLICATION_JSON_UTF8);
+        }
+        return restTemplate.exchange(url, method, new HttpEntity<>(body, headers), String.class);
+    }
+
+    private static EmbeddedWebApplicationContext node(String... args) {
+        String[] common = { "--server.port=0", "--spring.jmx.enabled=false", "--endpoints.jmx.enabled=false" };
+        String[] all = new String[common.length + args.length];
+        System.arraycopy(common, 0, all, 0, common.length);
+        System.arraycopy(args, 0, all, common.length, args.length);
+        return (EmbeddedWebApplicationContext) new SpringApplicationBuilder(Application.class).run(all);
+    }
+
+    private static String url(EmbeddedWebApplicationContext node, String path) {
+        return "http://localhost:" + node.getEmbeddedServletContainer().getPort() + path;
+    }
+}
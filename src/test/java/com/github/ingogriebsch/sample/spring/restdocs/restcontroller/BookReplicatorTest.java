@@ -0,0 +1,93 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.Optional.of;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.client.ExpectedCount.manyTimes;
+import static org.springframework.test.web.client.ExpectedCount.once;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+public class BookReplicatorTest {
+
+    private static final Book book = new Book("9780345391803", "The Hitchhiker's Guide to the Galaxy");
+
+    private final BookService bookService = mock(BookService.class);
+    private final RestTemplate restTemplate = new RestTemplate();
+    private BookReplicator replicator;
+
+    @Before
+    public void before() {
+        BookReplicationProperties properties = new BookReplicationProperties();
+        properties.setLeaderUrl("http://leader");
+        properties.setRetryIntervalMillis(10);
+        replicator = new BookReplicator(properties, bookService, new ObjectMapper(), restTemplate);
+    }
+
+    @After
+    public void after() {
+        replicator.stop();
+    }
+
+    @Test
+    public void replicator_should_retry_a_change_which_failed_to_apply() throws Exception {
+        MockRestServiceServer leader = MockRestServiceServer.bindTo(restTemplate).build();
+        leader.expect(once(), requestTo("http://leader/books/changes"))
+            .andRespond(withSuccess("{\"sequence\":0,\"changes\":[]}", APPLICATION_JSON));
+        leader.expect(once(), requestTo("http://leader/books"))
+            .andRespond(withSuccess("", MediaType.valueOf(BookController.APPLICATION_NDJSON_VALUE)));
+        leader.expect(ExpectedCount.times(2), requestTo("http://leader/books/changes?since=0&limit=1000"))
+            .andRespond(withSuccess("{\"sequence\":1,\"changes\":[{\"sequence\":1,\"type\":\"INSERTED\",\"isbn\":\""
+                + book.getIsbn() + "\",\"title\":\"" + book.getTitle() + "\"}]}", APPLICATION_JSON));
+        leader.expect(manyTimes(), requestTo("http://leader/books/changes?since=1&limit=1000"))
+            .andRespond(withSuccess("{\"sequence\":1,\"changes\":[]}", APPLICATION_JSON));
+
+        given(bookService.streamAll()).willReturn(Stream.empty());
+        given(bookService.upsert(any(BookInsert.class))).willThrow(new UncheckedIOException(new IOException("Disk full!")))
+            .willReturn(of(book));
+
+        replicator.start();
+
+        assertThat(replicator.await(1, 10000)).isTrue();
+        assertThat(replicator.isRunning()).isTrue();
+        verify(bookService, times(2)).upsert(new BookInsert(book.getIsbn(), book.getTitle()));
+    }
+}
@@ -19,15 +19,38 @@
  */
 package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
 
+import static java.lang.String.format;
 import static java.util.UUID.randomUUID;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
+import static javax.validation.Validation.buildDefaultValidatorFactory;
+
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookChange.Type.DELETED;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookChange.Type.INSERTED;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookChange.Type.INSERTED_ALL;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookInsertResult.Status.CREATED;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookInsertResult.Status.DUPLICATE;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookInsertResult.Status.INVALID;
+import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Sets.newHashSet;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -41,7 +64,7 @@ public class BookServiceTest {
 
     @Before
     public void before() {
-        bookService = new BookService();
+        bookService = new BookService(new InMemoryBookStore(), buildDefaultValidatorFactory().getValidator());
     }
 
     @Test
@@ -50,6 +73,100 @@ public class BookServiceTest {
         assertThat(bookService.findAll()).isNotNull().containsAll(books);
     }
 
+    @Test
+    public void snapshot_should_not_see_books_inserted_after_it_was_taken() throws Exception {
+        bookService = new BookService(new SnapshotBookStore(), buildDefaultValidatorFactory().getValidator());
+        bookService.insert(new BookInsert("0345391802", "The Hitchhiker's Guide to the Galaxy"));
+
+        BookSnapshot snapshot = bookService.snapshot();
+        assertThat(snapshot.getVersion()).isEqualTo(bookService.version());
+
+        bookService.insert(new BookInsert("0062225677", "The Color of Magic"));
+        assertThat(snapshot.stream().collect(Collectors.toList())).extracting(Book::getIsbn).containsExactly("9780345391803");
+        assertThat(bookService.snapshot().getVersion()).isEqualTo(bookService.version()).isGreaterThan(snapshot.getVersion());
+    }
+
+    @Test
+    public void snapshot_should_copy_books_of_stores_without_snapshots() throws Exception {
+        bookService.insert(new BookInsert("0345391802", "The Hitchhiker's Guide to the Galaxy"));
+
+        BookSnapshot snapshot = bookService.snapshot();
+        assertThat(snapshot.getVersion()).isEqualTo(bookService.version());
+
+        bookService.insert(new BookInsert("0062225677", "The Color of Magic"));
+        assertThat(snapshot.size()).isEqualTo(1);
+        assertThat(snapshot.find("9780345391803").isPresent()).isTrue();
+        assertThat(snapshot.find("9780062225672").isPresent()).isFalse();
+    }
+
+    @Test
+    public void findAll_should_return_ordered_page_of_books_after_given_isbn() throws Exception {
+        bookInserts.stream().forEach(p -> bookService.insert(p));
+
+        List<Book> books = bookService.findAll(null, 2);
+        assertThat(books).extracting(Book::getIsbn).containsExactly("9780062225672", "9780345391803");
+
+        books = bookService.findAll(books.get(books.size() - 1).getIsbn(), 2);
+        assertThat(books).extracting(Book::getIsbn).containsExactly("9781451673319");
+    }
+
+    @Test
+    public void findAll_should_return_ordered_books_in_range() throws Exception {
+        bookInserts.stream().forEach(p -> bookService.insert(p));
+        bookService.insert(new BookInsert("0345418913", "Lord of Light"));
+
+        assertThat(bookService.findAll(IsbnRange.prefix("9780345"), null, 10)).extracting(Book::getIsbn)
+            .containsExactly("9780345391803", "9780345418913");
+        assertThat(bookService.findAll(IsbnRange.prefix("9780345"), "9780345391803", 10)).extracting(Book::getIsbn)
+            .containsExactly("9780345418913");
+        assertThat(bookService.findAll(new IsbnRange("9780100000000", "9781451673319"), null, 10)).extracting(Book::getIsbn)
+            .containsExactly("9780345391803", "9780345418913");
+        assertThat(bookService.findAll(new IsbnRange("9780345418913", null), null, 1)).extracting(Book::getIsbn)
+            .containsExactly("9780345418913");
+        assertThat(bookService.findAll(new IsbnRange("9", "0"), null, 10)).isEmpty();
+    }
+
+    @Test
+    public void streamAll_should_return_books_with_isbn_prefix_ordered_by_isbn() throws Exception {
+        bookInserts.stream().forEach(p -> bookService.insert(p));
+        bookService.insert(new BookInsert("0345418913", "Lord of Light"));
+
+        assertThat(bookService.streamAll(IsbnRange.prefix("97803")).map(Book::getIsbn).collect(Collectors.toList()))
+            .containsExactly("9780345391803", "9780345418913");
+        assertThat(bookService.streamAll(IsbnRange.prefix("979")).collect(Collectors.toList())).isEmpty();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void findAll_should_throw_exception_if_limit_is_not_positive() throws Exception {
+        bookService.findAll(null, 0);
+    }
+
+    @Test
+    public void streamAll_should_return_books_ordered_by_isbn() throws Exception {
+        bookInserts.stream().forEach(p -> bookService.insert(p));
+
+        assertThat(bookService.streamAll().map(Book::getIsbn).collect(Collectors.toList())).containsExactly("9780062225672",
+            "9780345391803", "9781451673319");
+    }
+
+    @Test
+    public void search_should_return_books_whose_title_matches_the_query() throws Exception {
+        bookInserts.stream().forEach(p -> bookService.insert(p));
+
+        assertThat(bookService.search("the", 10)).extracting(Book::getIsbn).containsOnly("9780345391803", "9780062225672");
+        assertThat(bookService.search("guide gal", 10)).extracting(Book::getIsbn).containsExactly("9780345391803");
+        assertThat(bookService.search("unknown", 10)).isEmpty();
+    }
+
+    @Test
+    public void search_should_not_return_deleted_books() throws Exception {
+        bookInserts.stream().forEach(p -> bookService.insert(p));
+        bookService.delete("0062225677");
+
+        assertThat(bookService.search("magic", 10)).isEmpty();
+        assertThat(bookService.search("the", 10)).extracting(Book::getIsbn).containsExactly("9780345391803");
+    }
+
     @Test
     public void findOne_should_return_matching_book_if_available() throws Exception {
         Set<Book> books = bookInserts.stream().map(p -> bookService.insert(p).get()).collect(Collectors.toSet());
@@ -61,6 +178,15 @@ public class BookServiceTest {
         assertThat(optional.get()).isEqualTo(book);
     }
 
+    @Test
+    public void findOne_should_find_book_by_any_form_of_its_isbn() throws Exception {
+        bookService.insert(new BookInsert("0-345-39180-2", "The Hitchhiker's Guide to the Galaxy"));
+
+        assertThat(bookService.findOne("0345391802").get().getIsbn()).isEqualTo("9780345391803");
+        assertThat(bookService.findOne("978-0-345-39180-3").get().getIsbn()).isEqualTo("9780345391803");
+        assertThat(bookService.findOne("9780345391803").get().getIsbn()).isEqualTo("9780345391803");
+    }
+
     @Test
     public void findOne_should_return_empty_optional_if_not_available() throws Exception {
         bookInserts.stream().forEach(p -> bookService.insert(p));
@@ -70,6 +196,53 @@ public class BookServiceTest {
         assertThat(optional.isPresent()).isFalse();
     }
 
+    @Test
+    public void findOne_should_not_ask_store_for_book_which_is_not_available() throws Exception {
+        BookStore bookStore = spy(new InMemoryBookStore());
+        bookService = new BookService(bookStore, buildDefaultValidatorFactory().getValidator());
+        bookService.insert(new BookInsert("0062225677", "The Color of Magic"));
+
+        assertThat(bookService.findOne("9780345391803").isPresent()).isFalse();
+        verify(bookStore, never()).find("9780345391803");
+        assertThat(bookService.findOne("9780062225672").isPresent()).isTrue();
+    }
+
+    @Test
+    public void findOne_should_ask_store_if_filter_is_disabled() throws Exception {
+        BookStoreProperties properties = new BookStoreProperties();
+        properties.getFilter().setEnabled(false);
+        BookStore bookStore = spy(new InMemoryBookStore());
+        bookService = new BookService(bookStore, buildDefaultValidatorFactory().getValidator(), properties);
+
+        assertThat(bookService.findOne("9780345391803").isPresent()).isFalse();
+        verify(bookStore).find("9780345391803");
+    }
+
+    @Test
+    public void findOne_should_find_book_which_was_deleted_and_inserted_again() throws Exception {
+        bookService.insert(new BookInsert("0062225677", "The Color of Magic"));
+        bookService.delete("0062225677");
+        assertThat(bookService.findOne("0062225677").isPresent()).isFalse();
+
+        bookService.insert(new BookInsert("0062225677", "The Color of Magic"));
+        assertThat(bookService.findOne("0062225677").isPresent()).isTrue();
+    }
+
+    @Test
+    public void findOne_should_see_writes_if_lookups_are_coalesced() throws Exception {
+        BookStoreProperties properties = new BookStoreProperties();
+        properties.getFilter().setEnabled(false);
+        properties.getLookups().setCoalesce(true);
+        properties.getLookups().setTimeToLiveMillis(60_000);
+        bookService = new BookService(new InMemoryBookStore(), buildDefaultValidatorFactory().getValidator(), properties);
+
+        assertThat(bookService.findOne("0062225677").isPresent()).isFalse();
+        bookService.insert(new BookInsert("0062225677", "The Color of Magic"));
+        assertThat(bookService.findOne("0062225677").isPresent()).isTrue();
+        bookService.delete("0062225677");
+        assertThat(bookService.findOne("0062225677").isPresent()).isFalse();
+    }
+
     @Test(expected = NullPointerException.class)
     public void findOne_should_throw_exception_if_called_with_null() throws Exception {
         bookService.findOne(null);
@@ -90,6 +263,7 @@ public class BookServiceTest {
         Optional<Book> optional = bookService.findOne(book.getIsbn());
         assertThat(optional).isNotNull();
         assertThat(optional.isPresent()).isFalse();
+        assertThat(bookService.streamAll().collect(Collectors.toList())).doesNotContain(book);
     }
 
     @Test
@@ -111,6 +285,59 @@ public class BookServiceTest {
         assertThat(all).contains(book.get());
     }
 
+    @Test
+    public void insert_should_return_false_if_book_is_known_under_other_form_of_its_isbn() throws Exception {
+        assertThat(bookService.insert(new BookInsert("0345391802", "The Hitchhiker's Guide to the Galaxy")).isPresent()).isTrue();
+        assertThat(bookService.insert(new BookInsert("978-0-345-39180-3", "The Hitchhiker's Guide to the Galaxy")).isPresent())
+            .isFalse();
+        assertThat(bookService.delete("0-345-39180-2")).isTrue();
+        assertThat(bookService.count()).isEqualTo(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void insert_should_throw_exception_if_isbn_is_not_valid() throws Exception {
+        bookService.insert(new BookInsert("0345391803", "The Hitchhiker's Guide to the Galaxy"));
+    }
+
+    @Test
+    public void constructor_should_move_books_to_their_canonical_isbn() throws Exception {
+        BookStore bookStore = new InMemoryBookStore();
+        bookStore.insert(new Book("0345391802", "The Hitchhiker's Guide to the Galaxy"));
+        bookStore.insert(new Book("12345", "Invalid"));
+
+        bookService = new BookService(bookStore, buildDefaultValidatorFactory().getValidator());
+        assertThat(bookService.findAll()).extracting(Book::getIsbn).containsOnly("9780345391803", "12345");
+        assertThat(bookService.findOne("0345391802").isPresent()).isTrue();
+    }
+
+    @Test
+    public void constructor_should_keep_books_whose_canonical_isbn_is_already_stored() throws Exception {
+        BookStore bookStore = new InMemoryBookStore();
+        bookStore.insert(new Book("0345391802", "The Hitchhiker's Guide to the Galaxy"));
+        bookStore.insert(new Book("9780345391803", "The Hitchhiker's Guide to the Galaxy (Anniversary Edition)"));
+
+        bookService = new BookService(bookStore, buildDefaultValidatorFactory().getValidator());
+        assertThat(bookService.findAll()).extracting(Book::getIsbn).containsOnly("0345391802", "9780345391803");
+        assertThat(bookService.findOne("0345391802").get().getTitle())
+            .isEqualTo("The Hitchhiker's Guide to the Galaxy (Anniversary Edition)");
+    }
+
+    @Test
+    public void upsert_should_insert_or_replace_book_through_a_single_change() throws Exception {
+        long sequence = bookService.changeSequence();
+        assertThat(bookService.upsert(new BookInsert("0345391802", "The Hitchhiker's Guide")).isPresent()).isTrue();
+        assertThat(bookService.upsert(new BookInsert("0345391802", "The Hitchhiker's Guide to the Galaxy")).get())
+            .isEqualTo(new Book("9780345391803", "The Hitchhiker's Guide to the Galaxy"));
+        assertThat(bookService.upsert(new BookInsert("0345391802", "The Hitchhiker's Guide to the Galaxy")).isPresent())
+            .isFalse();
+
+        assertThat(bookService.changes(sequence, 10).get()).extracting(BookChange::getTitle)
+            .containsExactly("The Hitchhiker's Guide", "The Hitchhiker's Guide to the Galaxy");
+        assertThat(bookService.findOne("0345391802").get().getTitle()).isEqualTo("The Hitchhiker's Guide to the Galaxy");
+        assertThat(bookService.search("galaxy", 10)).extracting(Book::getIsbn).containsExactly("9780345391803");
+        assertThat(bookService.count()).isEqualTo(1);
+    }
+
     @Test
     public void insert_should_return_false_if_book_is_already_known() throws Exception {
         bookInserts.stream().forEach(p -> bookService.insert(p));
@@ -122,9 +349,175 @@ public class BookServiceTest {
         assertThat(bookService.findAll().size()).isEqualTo(bookInserts.size());
     }
 
+    @Test
+    public void changes_should_return_inserted_and_deleted_books_in_order() throws Exception {
+        long since = bookService.changeSequence();
+        bookService.insert(new BookInsert("0345391802", "The Hitchhiker's Guide to the Galaxy"));
+        bookService.insert(new BookInsert("0345391802", "The Hitchhiker's Guide to the Galaxy"));
+        bookService.delete("9780345391803");
+        bookService.delete("9780345391803");
+
+        assertThat(bookService.changeSequence()).isEqualTo(since + 2);
+        assertThat(bookService.changes(since, 10).get()).containsExactly(
+            new BookChange(since + 1, INSERTED, "9780345391803", "The Hitchhiker's Guide to the Galaxy"),
+            new BookChange(since + 2, DELETED, "9780345391803", "The Hitchhiker's Guide to the Galaxy"));
+    }
+
+    @Test
+    public void version_should_only_change_if_books_are_inserted_or_deleted() throws Exception {
+        long version = bookService.version();
+
+        BookInsert bookInsert = bookInserts.iterator().next();
+        bookService.insert(bookInsert);
+        assertThat(bookService.version()).isGreaterThan(version);
+
+        version = bookService.version();
+        bookService.insert(bookInsert);
+        bookService.delete(randomUUID().toString());
+        assertThat(bookService.version()).isEqualTo(version);
+
+        bookService.delete(bookInsert.getIsbn());
+        assertThat(bookService.version()).isGreaterThan(version);
+    }
+
+    @Test
+    public void bindTo_should_expose_missed_lookups_duplicated_inserts_and_store_metrics() throws Exception {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        bookService.bindTo(registry);
+
+        BookInsert bookInsert = bookInserts.iterator().next();
+        bookService.insert(bookInsert);
+        bookService.insert(bookInsert);
+        bookService.findOne(bookInsert.getIsbn());
+        bookService.findOne(randomUUID().toString());
+
+        assertThat(registry.get("books.lookups.missed").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("books.inserts.duplicated").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("books.store.size").gauge().value()).isEqualTo(1);
+        assertThat(registry.get("books.store.memory").gauge().value()).isGreaterThan(0);
+
+        bookService.delete(bookInsert.getIsbn());
+        assertThat(registry.get("books.store.size").gauge().value()).isEqualTo(0);
+        assertThat(registry.get("books.store.memory").gauge().value()).isEqualTo(0);
+        assertThat(registry.get("books.changes.sequence").gauge().value()).isEqualTo(2);
+    }
+
     @Test(expected = NullPointerException.class)
     public void insert_should_throw_exception_if_called_with_null() throws Exception {
         bookService.insert(null);
     }
 
+    @Test
+    public void insertAll_should_return_result_for_each_book_insert() throws Exception {
+        bookService.insert(new BookInsert("0345391802", "The Hitchhiker's Guide to the Galaxy"));
+
+        List<BookInsertResult> results = bookService.insertAll(newArrayList(new BookInsert("0062225677", "The Color of Magic"),
+            new BookInsert("0345391802", "The Hitchhiker's Guide to the Galaxy"), new BookInsert("12345", "Invalid"),
+            new BookInsert("0062225677", "The Color of Magic"), null));
+
+        assertThat(results).containsExactly(new BookInsertResult("9780062225672", CREATED),
+            new BookInsertResult("9780345391803", DUPLICATE), new BookInsertResult("12345", INVALID),
+            new BookInsertResult("9780062225672", DUPLICATE), new BookInsertResult(null, INVALID));
+        assertThat(bookService.findAll()).extracting(Book::getIsbn).containsOnly("9780345391803", "9780062225672");
+    }
+
+    @Test
+    public void insertAll_should_publish_the_inserted_books_as_a_single_change() throws Exception {
+        bookService.insert(new BookInsert("0345391802", "The Hitchhiker's Guide to the Galaxy"));
+        long since = bookService.changeSequence();
+
+        bookService.insertAll(newArrayList(new BookInsert("0062225677", "The Color of Magic"),
+            new BookInsert("0345391802", "The Hitchhiker's Guide to the Galaxy"), new BookInsert("12345", "Invalid"),
+            new BookInsert("9781451673319", "Fahrenheit 451")));
+        bookService.insertAll(newArrayList(new BookInsert("12345", "Invalid")));
+
+        assertThat(bookService.changeSequence()).isEqualTo(since + 1);
+        assertThat(bookService.changes(since, 10).get()).containsExactly(new BookChange(since + 1, INSERTED_ALL, null, null,
+            newArrayList(new Book("9780062225672", "The Color of Magic"), new Book("9781451673319", "Fahrenheit 451"))));
+        assertThat(bookService.search("magic", 10)).extracting(Book::getIsbn).containsExactly("9780062225672");
+    }
+
+    @Test
+    public void insertAll_should_publish_a_change_for_each_chunk_of_a_large_batch() throws Exception {
+        long since = bookService.changeSequence();
+
+        List<BookInsert> inserts = IntStream.range(0, 40).mapToObj(i -> new BookInsert(isbn(i), "Title " + i))
+            .collect(Collectors.toList());
+        assertThat(bookService.insertAll(inserts)).extracting(BookInsertResult::getStatus).containsOnly(CREATED);
+
+        assertThat(bookService.changeSequence()).isEqualTo(since + 3);
+        assertThat(bookService.changes(since, 10).get()).flatExtracting(BookChange::getBooks).extracting(Book::getIsbn)
+            .containsExactlyElementsOf(inserts.stream().map(BookInsert::getIsbn).collect(Collectors.toList()));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void insertAll_should_throw_exception_if_called_with_null() throws Exception {
+        bookService.insertAll(null);
+    }
+
+    @Test
+    public void insert_should_neither_lose_nor_duplicate_books_if_called_concurrently() throws Exception {
+        int threads = 8;
+        int isbns = 10000;
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Callable<Integer>> tasks = IntStream.range(0, threads).mapToObj(t -> (Callable<Integer>) () -> {
+            start.await();
+            int inserted = 0;
+            for (int i = 0; i < isbns; i++) {
+                if (bookService.insert(new BookInsert(isbn(i), "Title " + i)).isPresent()) {
+                    inserted++;
+                }
+            }
+            return inserted;
+        }).collect(Collectors.toList());
+
+        ExecutorService executor = newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> futures = tasks.stream().map(executor::submit).collect(Collectors.toList());
+            start.countDown();
+
+            int inserted = 0;
+            for (Future<Integer> future : futures) {
+                inserted += future.get(30, SECONDS);
+            }
+            assertThat(inserted).isEqualTo(isbns);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Set<Book> all = bookService.findAll();
+        assertThat(all.size()).isEqualTo(isbns);
+        assertThat(all.stream().map(Book::getIsbn).distinct().count()).isEqualTo(isbns);
+    }
+
+    @Test
+    public void insert_and_delete_should_stay_consistent_if_called_concurrently() throws Exception {
+        int threads = 8;
+        int isbns = 1000;
+
+        ExecutorService executor = newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = IntStream.range(0, threads).mapToObj(t -> executor.submit(() -> {
+                for (int i = 0; i < isbns; i++) {
+                    String isbn = isbn(i);
+                    bookService.insert(new BookInsert(isbn, "Title " + i));
+                    bookService.delete(isbn);
+                }
+            })).collect(Collectors.toList());
+
+            for (Future<?> future : futures) {
+                future.get(30, SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(bookService.findAll()).isEmpty();
+    }
+
+    private static String isbn(int i) {
+        String isbn = format("978%09d", i);
+        return isbn + Isbns.checkDigit13(isbn);
+    }
 }
@@ -0,0 +1,140 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyIterator;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+public class BookStreamWriteListenerTest {
+
+    private ObjectMapper objectMapper;
+    private AsyncContext asyncContext;
+    private SlowServletOutputStream outputStream;
+
+    @Before
+    public void before() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        asyncContext = mock(AsyncContext.class);
+        outputStream = new SlowServletOutputStream();
+    }
+
+    @Test
+    public void onWritePossible_should_only_write_while_the_client_is_ready() throws Exception {
+        List<Book> books = range(0, 1000).mapToObj(i -> new Book(String.format("%010d", i), "Title " + i)).collect(toList());
+        BookStreamWriteListener listener =
+            new BookStreamWriteListener(asyncContext, outputStream, books.iterator(), objectMapper.writerFor(Book.class));
+
+        int calls = 0;
+        do {
+            outputStream.ready = true;
+            listener.onWritePossible();
+            calls++;
+        } while (!outputStream.ready);
+
+        assertThat(calls).isGreaterThan(1);
+        assertThat(outputStream.writes).isEqualTo(calls - 1);
+        verify(asyncContext, times(1)).complete();
+
+        String expected = books.stream().map(this::json).collect(joining("\n", "", "\n"));
+        assertThat(new String(outputStream.content.toByteArray(), UTF_8)).isEqualTo(expected);
+    }
+
+    @Test
+    public void onWritePossible_should_complete_if_there_are_no_books() throws Exception {
+        new BookStreamWriteListener(asyncContext, outputStream, emptyIterator(), objectMapper.writerFor(Book.class))
+            .onWritePossible();
+
+        assertThat(outputStream.writes).isEqualTo(0);
+        verify(asyncContext, times(1)).complete();
+    }
+
+    @Test
+    public void onError_should_complete() throws Exception {
+        Iterator<Book> books = singletonList(new Book("0345391802", "The Hitchhiker's Guide to the Galaxy")).iterator();
+        BookStreamWriteListener listener =
+            new BookStreamWriteListener(asyncContext, outputStream, books, objectMapper.writerFor(Book.class));
+        verify(asyncContext, never()).complete();
+
+        listener.onError(new IOException());
+        verify(asyncContext, times(1)).complete();
+    }
+
+    private String json(Book book) {
+        try {
+            return objectMapper.writeValueAsString(book);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Simulates a client which is only able to take a single write before it needs to be called back.
+    private static class SlowServletOutputStream extends ServletOutputStream {
+
+        private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        private boolean ready = true;
+        private int writes;
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            assertThat(ready).isTrue();
+            content.write(b, off, len);
+            ready = false;
+            writes++;
+        }
+    }
+}
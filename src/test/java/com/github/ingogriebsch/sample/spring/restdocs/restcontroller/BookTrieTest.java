@@ -0,0 +1,126 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+public class BookTrieTest {
+
+    @Test
+    public void with_should_return_new_trie_and_leave_the_original_unchanged() throws Exception {
+        Book book = new Book("9780345391803", "The Hitchhiker's Guide to the Galaxy");
+        BookTrie trie = BookTrie.EMPTY.with(book);
+
+        assertThat(trie.find(book.getIsbn()).get()).isEqualTo(book);
+        assertThat(trie.size()).isEqualTo(1);
+        assertThat(trie.getVersion()).isEqualTo(1);
+        assertThat(BookTrie.EMPTY.find(book.getIsbn()).isPresent()).isFalse();
+        assertThat(BookTrie.EMPTY.size()).isEqualTo(0);
+        assertThat(BookTrie.EMPTY.stream().count()).isEqualTo(0);
+    }
+
+    @Test
+    public void with_and_without_should_return_same_trie_if_nothing_changes() throws Exception {
+        Book book = new Book("9780345391803", "The Hitchhiker's Guide to the Galaxy");
+        BookTrie trie = BookTrie.EMPTY.with(book);
+
+        assertThat(trie.with(new Book(book.getIsbn(), "Another title"))).isSameAs(trie);
+        assertThat(trie.without("9780062225672")).isSameAs(trie);
+        assertThat(trie.find(book.getIsbn()).get().getTitle()).isEqualTo(book.getTitle());
+    }
+
+    @Test
+    public void without_should_return_new_trie_and_leave_the_original_unchanged() throws Exception {
+        Book book = new Book("9780345391803", "The Hitchhiker's Guide to the Galaxy");
+        BookTrie trie = BookTrie.EMPTY.with(book);
+        BookTrie without = trie.without(book.getIsbn());
+
+        assertThat(without.find(book.getIsbn()).isPresent()).isFalse();
+        assertThat(without.size()).isEqualTo(0);
+        assertThat(without.getVersion()).isEqualTo(2);
+        assertThat(without.memoryFootprint()).isEqualTo(0);
+        assertThat(trie.find(book.getIsbn()).get()).isEqualTo(book);
+    }
+
+    @Test
+    public void should_keep_books_whose_isbns_have_the_same_hash() throws Exception {
+        List<String> isbns = newArrayList("AaAa", "AaBB", "BBAa", "BBBB");
+        assertThat(isbns.stream().map(BookTrie::hash).distinct().count()).isEqualTo(1);
+
+        BookTrie trie = BookTrie.EMPTY;
+        for (String isbn : isbns) {
+            trie = trie.with(new Book(isbn, isbn));
+        }
+        assertThat(trie.size()).isEqualTo(4);
+        assertThat(trie.stream().map(Book::getIsbn).collect(toList())).containsOnlyElementsOf(isbns).hasSize(4);
+
+        trie = trie.without("AaBB").without("BBBB");
+        assertThat(trie.find("AaAa").get().getTitle()).isEqualTo("AaAa");
+        assertThat(trie.find("BBAa").get().getTitle()).isEqualTo("BBAa");
+        assertThat(trie.find("AaBB").isPresent()).isFalse();
+        assertThat(trie.stream().map(Book::getIsbn).collect(toList())).containsOnly("AaAa", "BBAa");
+
+        trie = trie.without("AaAa").without("BBAa");
+        assertThat(trie.size()).isEqualTo(0);
+        assertThat(trie.stream().count()).isEqualTo(0);
+    }
+
+    @Test
+    public void should_keep_all_books_of_every_snapshot_while_growing_and_shrinking() throws Exception {
+        int count = 100_000;
+        BookTrie trie = BookTrie.EMPTY;
+        for (int i = 0; i < count; i++) {
+            trie = trie.with(book(i));
+        }
+        BookTrie full = trie;
+        for (int i = 0; i < count; i++) {
+            if (i % 3 != 0) {
+                trie = trie.without(book(i).getIsbn());
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            assertThat(trie.find(book(i).getIsbn()).orElse(null)).isEqualTo(i % 3 == 0 ? book(i) : null);
+            assertThat(full.find(book(i).getIsbn()).get()).isEqualTo(book(i));
+        }
+        assertThat(trie.size()).isEqualTo((count + 2) / 3);
+        assertThat(trie.stream().collect(toSet()))
+            .isEqualTo(IntStream.range(0, count).filter(i -> i % 3 == 0).mapToObj(this::book).collect(toSet()));
+        assertThat(full.stream().count()).isEqualTo(count);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void with_should_throw_exception_if_called_with_null() throws Exception {
+        BookTrie.EMPTY.with(null);
+    }
+
+    private Book book(int i) {
+        return new Book(String.format("978%010d", i), "Title " + i);
+    }
+}
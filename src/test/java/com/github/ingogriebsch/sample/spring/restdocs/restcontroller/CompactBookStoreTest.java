@@ -0,0 +1,199 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
+import static org.apache.commons.lang3.StringUtils.repeat;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompactBookStoreTest {
+
+    private CompactBookStore bookStore;
+
+    @Before
+    public void before() {
+        bookStore = new CompactBookStore();
+    }
+
+    @Test
+    public void insert_and_delete_should_behave_like_the_in_memory_store() throws Exception {
+        Book book = new Book("0345391802", "The Hitchhiker's Guide to the Galaxy");
+        assertThat(bookStore.insert(book)).isTrue();
+        assertThat(bookStore.insert(book)).isFalse();
+        assertThat(bookStore.find(book.getIsbn()).get()).isEqualTo(book);
+        assertThat(bookStore.size()).isEqualTo(1);
+        assertThat(bookStore.delete(book.getIsbn())).isTrue();
+        assertThat(bookStore.delete(book.getIsbn())).isFalse();
+        assertThat(bookStore.find(book.getIsbn()).isPresent()).isFalse();
+        assertThat(bookStore.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void replace_should_only_replace_stored_books() throws Exception {
+        Book book = new Book("0345391802", "The Hitchhiker's Guide to the Galaxy");
+        assertThat(bookStore.replace(book)).isFalse();
+        assertThat(bookStore.find(book.getIsbn()).isPresent()).isFalse();
+
+        bookStore.insert(new Book(book.getIsbn(), "The Hitchhiker's Guide"));
+        assertThat(bookStore.replace(book)).isTrue();
+        assertThat(bookStore.find(book.getIsbn()).get()).isEqualTo(book);
+        assertThat(bookStore.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void find_should_distinguish_isbns_which_only_differ_in_leading_zeros() throws Exception {
+        bookStore.insert(new Book("0000000001", "Ten digits"));
+        bookStore.insert(new Book("001", "Three digits"));
+
+        assertThat(bookStore.find("0000000001").get().getTitle()).isEqualTo("Ten digits");
+        assertThat(bookStore.find("001").get().getTitle()).isEqualTo("Three digits");
+        assertThat(bookStore.find("1").isPresent()).isFalse();
+    }
+
+    @Test
+    public void find_should_keep_missing_empty_and_multi_byte_titles() throws Exception {
+        bookStore.insert(new Book("0000000001", null));
+        bookStore.insert(new Book("0000000002", ""));
+        bookStore.insert(new Book("0000000003", "Die Blechtrommel – Günter Grass"));
+
+        assertThat(bookStore.find("0000000001").get().getTitle()).isNull();
+        assertThat(bookStore.find("0000000002").get().getTitle()).isEmpty();
+        assertThat(bookStore.find("0000000003").get().getTitle()).isEqualTo("Die Blechtrommel – Günter Grass");
+    }
+
+    @Test
+    public void find_and_delete_should_ignore_isbns_which_are_not_numeric() throws Exception {
+        assertThat(bookStore.find("034539180X").isPresent()).isFalse();
+        assertThat(bookStore.find("").isPresent()).isFalse();
+        assertThat(bookStore.delete("034539180X")).isFalse();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void insert_should_throw_exception_if_isbn_is_not_numeric() throws Exception {
+        bookStore.insert(new Book("034539180X", "The Hitchhiker's Guide to the Galaxy"));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void insert_should_throw_exception_if_called_with_null() throws Exception {
+        bookStore.insert(null);
+    }
+
+    @Test
+    public void should_keep_all_books_while_growing_and_compacting() throws Exception {
+        int count = 100_000;
+        IntStream.range(0, count).forEach(i -> bookStore.insert(book(i)));
+        IntStream.range(0, count).filter(i -> i % 3 != 0).forEach(i -> bookStore.delete(isbn(i)));
+
+        for (int i = 0; i < count; i++) {
+            assertThat(bookStore.find(isbn(i)).orElse(null)).isEqualTo(i % 3 == 0 ? book(i) : null);
+        }
+        assertThat(bookStore.size()).isEqualTo((count + 2) / 3);
+        assertThat(bookStore.stream().collect(toSet()))
+            .isEqualTo(IntStream.range(0, count).filter(i -> i % 3 == 0).mapToObj(this::book).collect(toSet()));
+    }
+
+    @Test
+    public void memoryFootprint_should_be_smaller_than_the_one_of_the_in_memory_store() throws Exception {
+        InMemoryBookStore inMemoryBookStore = new InMemoryBookStore();
+        IntStream.range(0, 100_000).mapToObj(this::book).forEach(book -> {
+            bookStore.insert(book);
+            inMemoryBookStore.insert(book);
+        });
+        assertThat(bookStore.memoryFootprint() * 3).isLessThan(inMemoryBookStore.memoryFootprint());
+    }
+
+    @Test
+    public void insert_find_and_delete_should_stay_consistent_if_called_concurrently() throws Exception {
+        int threads = 8;
+        int booksPerThread = 20_000;
+        ExecutorService executorService = newFixedThreadPool(threads);
+        try {
+            List<Future<Set<Book>>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int first = t * booksPerThread;
+                futures.add(executorService.submit(() -> {
+                    List<Book> books = IntStream.range(first, first + booksPerThread).mapToObj(this::book).collect(toList());
+                    for (Book book : books) {
+                        assertThat(bookStore.insert(book)).isTrue();
+                        assertThat(bookStore.find(book.getIsbn()).get()).isEqualTo(book);
+                    }
+                    books.stream().filter(b -> Long.parseLong(b.getIsbn()) % 2 == 0).forEach(b -> bookStore.delete(b.getIsbn()));
+                    return books.stream().filter(b -> Long.parseLong(b.getIsbn()) % 2 != 0).collect(toSet());
+                }));
+            }
+
+            for (Future<Set<Book>> future : futures) {
+                for (Book book : future.get(30, SECONDS)) {
+                    assertThat(bookStore.find(book.getIsbn()).get()).isEqualTo(book);
+                }
+            }
+            assertThat(bookStore.size()).isEqualTo(threads * booksPerThread / 2);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void find_should_return_stable_books_while_the_arena_is_compacted_concurrently() throws Exception {
+        Book stable = new Book("9780345391803", "The Hitchhiker's Guide to the Galaxy");
+        bookStore.insert(stable);
+
+        ExecutorService executorService = newFixedThreadPool(1);
+        try {
+            Future<?> writer = executorService.submit(() -> {
+                // Each round leaves more than half of the arena behind as garbage, so every round compacts it.
+                for (int round = 0; round < 50; round++) {
+                    List<Book> books = IntStream.range(0, 2_000).mapToObj(i -> new Book(isbn(i), repeat("Title ", i % 50)))
+                        .collect(toList());
+                    books.forEach(bookStore::insert);
+                    books.forEach(b -> bookStore.delete(b.getIsbn()));
+                }
+            });
+            while (!writer.isDone()) {
+                assertThat(bookStore.find(stable.getIsbn()).get()).isEqualTo(stable);
+            }
+            writer.get(30, SECONDS);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private Book book(int i) {
+        return new Book(isbn(i), "Title " + i);
+    }
+
+    private static String isbn(int i) {
+        return String.format("%010d", i);
+    }
+}
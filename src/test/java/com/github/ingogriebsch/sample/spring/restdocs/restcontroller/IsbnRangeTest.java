@@ -0,0 +1,49 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class IsbnRangeTest {
+
+    @Test
+    public void prefix_should_end_before_the_next_prefix() throws Exception {
+        assertThat(IsbnRange.prefix("0345")).isEqualTo(new IsbnRange("0345", "0346"));
+        assertThat(IsbnRange.prefix("0349")).isEqualTo(new IsbnRange("0349", "034:"));
+        assertThat(IsbnRange.prefix("" + Character.MAX_VALUE)).isEqualTo(new IsbnRange("" + Character.MAX_VALUE, null));
+    }
+
+    @Test
+    public void of_should_intersect_prefix_and_bounds() throws Exception {
+        assertThat(IsbnRange.of(null, null, null)).isEqualTo(IsbnRange.ALL);
+        assertThat(IsbnRange.of("0345", "0300", null)).isEqualTo(new IsbnRange("0345", "0346"));
+        assertThat(IsbnRange.of("0345", "03454", "03456")).isEqualTo(new IsbnRange("03454", "03456"));
+    }
+
+    @Test
+    public void isEmpty_should_return_true_if_lower_bound_is_not_below_upper_bound() throws Exception {
+        assertThat(new IsbnRange("0345", "0345").isEmpty()).isTrue();
+        assertThat(IsbnRange.of("0345", "0400", null).isEmpty()).isTrue();
+        assertThat(IsbnRange.of("0345", null, null).isEmpty()).isFalse();
+        assertThat(IsbnRange.ALL.isEmpty()).isFalse();
+    }
+}
@@ -0,0 +1,79 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class IsbnsTest {
+
+    @Test
+    public void isValid_should_return_true_for_isbns_with_valid_check_digit() throws Exception {
+        assertThat(Isbns.isValid("0345391802")).isTrue();
+        assertThat(Isbns.isValid("0-345-39180-2")).isTrue();
+        assertThat(Isbns.isValid("080442957X")).isTrue();
+        assertThat(Isbns.isValid("080442957x")).isTrue();
+        assertThat(Isbns.isValid("9780345391803")).isTrue();
+        assertThat(Isbns.isValid("978-0-345-39180-3")).isTrue();
+        assertThat(Isbns.isValid("979 10 90636 07 1")).isTrue();
+    }
+
+    @Test
+    public void isValid_should_return_false_for_isbns_which_are_not_valid() throws Exception {
+        assertThat(Isbns.isValid(null)).isFalse();
+        assertThat(Isbns.isValid("")).isFalse();
+        assertThat(Isbns.isValid("0345391803")).isFalse();
+        assertThat(Isbns.isValid("9780345391804")).isFalse();
+        assertThat(Isbns.isValid("12345")).isFalse();
+        assertThat(Isbns.isValid("03453918021")).isFalse();
+        assertThat(Isbns.isValid("97803453918031")).isFalse();
+        assertThat(Isbns.isValid("-0345391802")).isFalse();
+        assertThat(Isbns.isValid("0345391802-")).isFalse();
+        assertThat(Isbns.isValid("03453a1802")).isFalse();
+        assertThat(Isbns.isValid("X345391802")).isFalse();
+        // A valid EAN-13 which is not located in one of the book land prefixes.
+        assertThat(Isbns.isValid("4006381333931")).isFalse();
+    }
+
+    @Test
+    public void canonical_should_return_isbn13_without_separators() throws Exception {
+        assertThat(Isbns.canonical("0345391802")).isEqualTo("9780345391803");
+        assertThat(Isbns.canonical("0-345-39180-2")).isEqualTo("9780345391803");
+        assertThat(Isbns.canonical("080442957X")).isEqualTo("9780804429573");
+        assertThat(Isbns.canonical("978-0-345-39180-3")).isEqualTo("9780345391803");
+        assertThat(Isbns.canonical("0345391803")).isNull();
+    }
+
+    @Test
+    public void canonical_should_return_given_instance_if_already_canonical() throws Exception {
+        String isbn = "9780345391803";
+        assertThat(Isbns.canonical(isbn)).isSameAs(isbn);
+    }
+
+    @Test
+    public void isbn10_should_return_isbn10_if_available() throws Exception {
+        assertThat(Isbns.isbn10("9780345391803")).isEqualTo("0345391802");
+        assertThat(Isbns.isbn10("9780804429573")).isEqualTo("080442957X");
+        assertThat(Isbns.isbn10("0-345-39180-2")).isEqualTo("0345391802");
+        assertThat(Isbns.isbn10("9791090636071")).isNull();
+        assertThat(Isbns.isbn10("12345")).isNull();
+    }
+}
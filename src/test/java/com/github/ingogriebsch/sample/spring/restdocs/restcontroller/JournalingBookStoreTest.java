@@ -0,0 +1,268 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.nio.file.Files.newDirectoryStream;
+import static java.nio.file.Files.size;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookStoreProperties.Journal.FsyncPolicy.ALWAYS;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookStoreProperties.Journal.FsyncPolicy.BATCH;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookStoreProperties.Journal;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JournalingBookStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Journal properties;
+
+    @Before
+    public void before() throws Exception {
+        properties = new Journal();
+        properties.setEnabled(true);
+        properties.setDirectory(folder.getRoot().getAbsolutePath());
+        properties.setFsyncPolicy(ALWAYS);
+        properties.setSegmentSize(1024);
+        properties.setSnapshotIntervalMillis(0);
+    }
+
+    @Test
+    public void insert_and_delete_should_behave_like_the_in_memory_store() throws Exception {
+        try (JournalingBookStore bookStore = new JournalingBookStore(properties)) {
+            Book book = new Book("0345391802", "The Hitchhiker's Guide to the Galaxy");
+            assertThat(bookStore.insert(book)).isTrue();
+            assertThat(bookStore.insert(book)).isFalse();
+            assertThat(bookStore.find(book.getIsbn()).get()).isEqualTo(book);
+            assertThat(bookStore.delete(book.getIsbn())).isTrue();
+            assertThat(bookStore.delete(book.getIsbn())).isFalse();
+            assertThat(bookStore.find(book.getIsbn()).isPresent()).isFalse();
+        }
+    }
+
+    @Test
+    public void should_recover_books_from_journal_if_not_closed() throws Exception {
+        JournalingBookStore bookStore = new JournalingBookStore(properties);
+        bookStore.insert(new Book("0345391802", "The Hitchhiker's Guide to the Galaxy"));
+        bookStore.insert(new Book("0062225677", "The Color of Magic"));
+        bookStore.delete("0345391802");
+
+        // The first store is not closed to simulate a crash, so no snapshot is written and only the journal is available.
+        try (JournalingBookStore recovered = new JournalingBookStore(properties)) {
+            assertThat(recovered.stream().collect(toList())).containsOnly(new Book("0062225677", "The Color of Magic"));
+        }
+    }
+
+    @Test
+    public void should_recover_books_from_snapshot_and_journal() throws Exception {
+        properties.setFsyncPolicy(BATCH);
+        properties.setFsyncBatchSize(2);
+
+        List<Book> books = new ArrayList<>();
+        JournalingBookStore bookStore = new JournalingBookStore(properties);
+        for (int i = 0; i < 100; i++) {
+            Book book = new Book(String.format("%010d", i), "Title " + i);
+            bookStore.insert(book);
+            books.add(book);
+        }
+        bookStore.snapshot();
+
+        bookStore.delete(books.remove(0).getIsbn());
+        Book book = new Book("0062225677", "The Color of Magic");
+        bookStore.insert(book);
+        books.add(book);
+
+        try (JournalingBookStore recovered = new JournalingBookStore(properties)) {
+            assertThat(recovered.stream().collect(toList())).containsOnlyElementsOf(books);
+            assertThat(recovered.size()).isEqualTo(books.size());
+        }
+    }
+
+    @Test
+    public void should_recover_books_written_concurrently() throws Exception {
+        int writers = 4;
+        ExecutorService executor = newFixedThreadPool(writers);
+        JournalingBookStore bookStore = new JournalingBookStore(properties);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        String isbn = String.format("%d%09d", writer, i);
+                        bookStore.insert(new Book(isbn, "Title " + i));
+                        if (i % 2 == 0) {
+                            bookStore.delete(isbn);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        try (JournalingBookStore recovered = new JournalingBookStore(properties)) {
+            assertThat(recovered.stream().collect(toList())).containsOnlyElementsOf(bookStore.stream().collect(toList()));
+            assertThat(recovered.size()).isEqualTo(writers * 50);
+        }
+    }
+
+    @Test
+    public void should_recover_replaced_books_from_journal() throws Exception {
+        JournalingBookStore bookStore = new JournalingBookStore(properties);
+        bookStore.insert(new Book("0345391802", "The Hitchhiker's Guide"));
+        assertThat(bookStore.replace(new Book("0345391802", "The Hitchhiker's Guide to the Galaxy"))).isTrue();
+
+        try (JournalingBookStore recovered = new JournalingBookStore(properties)) {
+            assertThat(recovered.stream().collect(toList()))
+                .containsOnly(new Book("0345391802", "The Hitchhiker's Guide to the Galaxy"));
+        }
+    }
+
+    @Test
+    public void should_recover_books_into_the_given_store() throws Exception {
+        JournalingBookStore bookStore = new JournalingBookStore(properties, new CompactBookStore());
+        bookStore.insert(new Book("0345391802", "The Hitchhiker's Guide to the Galaxy"));
+        bookStore.snapshot();
+        bookStore.insert(new Book("0062225677", "The Color of Magic"));
+
+        try (JournalingBookStore recovered = new JournalingBookStore(properties, new CompactBookStore())) {
+            assertThat(recovered.stream().collect(toList())).containsOnly(
+                new Book("0345391802", "The Hitchhiker's Guide to the Galaxy"), new Book("0062225677", "The Color of Magic"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_throw_exception_if_the_given_store_is_not_empty() throws Exception {
+        BookStore books = new InMemoryBookStore();
+        books.insert(new Book("0345391802", "The Hitchhiker's Guide to the Galaxy"));
+        new JournalingBookStore(properties, books);
+    }
+
+    @Test
+    public void close_should_write_snapshot_and_remove_outdated_files() throws Exception {
+        try (JournalingBookStore bookStore = new JournalingBookStore(properties)) {
+            bookStore.insert(new Book("0062225677", "The Color of Magic"));
+        }
+        try (JournalingBookStore bookStore = new JournalingBookStore(properties)) {
+            assertThat(bookStore.find("0062225677").isPresent()).isTrue();
+        }
+
+        List<String> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = newDirectoryStream(folder.getRoot().toPath())) {
+            stream.forEach(p -> files.add(p.getFileName().toString()));
+        }
+        assertThat(files).containsOnly("snapshot-4.bin", "journal-4.log");
+    }
+
+    @Test
+    public void should_ignore_torn_record_at_the_tail_of_the_journal() throws Exception {
+        JournalingBookStore bookStore = new JournalingBookStore(properties);
+        bookStore.insert(new Book("0345391802", "The Hitchhiker's Guide to the Galaxy"));
+        bookStore.insert(new Book("0062225677", "The Color of Magic"));
+
+        // Corrupt the payload of the second record.
+        Path journal = folder.getRoot().toPath().resolve("journal-1.log");
+        int firstRecord = 8 + 1 + 2 + 10 + 4 + "The Hitchhiker's Guide to the Galaxy".length();
+        try (FileChannel channel = FileChannel.open(journal, WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 42, 42, 42 }), firstRecord + 8 + 4);
+        }
+        assertThat(size(journal)).isGreaterThan(firstRecord);
+
+        try (JournalingBookStore recovered = new JournalingBookStore(properties)) {
+            assertThat(recovered.stream().collect(toList()))
+                .containsOnly(new Book("0345391802", "The Hitchhiker's Guide to the Galaxy"));
+        }
+    }
+
+    @Test
+    public void should_ignore_record_with_corrupt_length_in_the_journal() throws Exception {
+        JournalingBookStore bookStore = new JournalingBookStore(properties);
+        bookStore.insert(new Book("0345391802", "The Hitchhiker's Guide to the Galaxy"));
+        bookStore.insert(new Book("0062225677", "The Color of Magic"));
+
+        // The length of the second record exceeds the journal.
+        Path journal = folder.getRoot().toPath().resolve("journal-1.log");
+        int firstRecord = 8 + 1 + 2 + 10 + 4 + "The Hitchhiker's Guide to the Galaxy".length();
+        try (FileChannel channel = FileChannel.open(journal, WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, Integer.MAX_VALUE), firstRecord);
+        }
+
+        try (JournalingBookStore recovered = new JournalingBookStore(properties)) {
+            assertThat(recovered.stream().collect(toList()))
+                .containsOnly(new Book("0345391802", "The Hitchhiker's Guide to the Galaxy"));
+        }
+    }
+
+    @Test
+    public void should_ignore_snapshot_with_corrupt_length() throws Exception {
+        try (JournalingBookStore bookStore = new JournalingBookStore(properties)) {
+            bookStore.insert(new Book("0062225677", "The Color of Magic"));
+        }
+
+        // The length of the title follows the magic number, the marker of the book and its isbn.
+        Path snapshot = folder.getRoot().toPath().resolve("snapshot-4.bin");
+        try (FileChannel channel = FileChannel.open(snapshot, WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, Integer.MAX_VALUE), 4 + 1 + 4 + 10);
+        }
+
+        try (JournalingBookStore recovered = new JournalingBookStore(properties)) {
+            assertThat(recovered.size()).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void should_ignore_snapshot_whose_checksum_does_not_match() throws Exception {
+        try (JournalingBookStore bookStore = new JournalingBookStore(properties)) {
+            bookStore.insert(new Book("0062225677", "The Color of Magic"));
+        }
+
+        // Changes a character of the title, which leaves the snapshot readable.
+        Path snapshot = folder.getRoot().toPath().resolve("snapshot-4.bin");
+        try (FileChannel channel = FileChannel.open(snapshot, WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 'X' }), 4 + 1 + 4 + 10 + 4);
+        }
+
+        try (JournalingBookStore recovered = new JournalingBookStore(properties)) {
+            assertThat(recovered.size()).isEqualTo(0);
+        }
+    }
+}
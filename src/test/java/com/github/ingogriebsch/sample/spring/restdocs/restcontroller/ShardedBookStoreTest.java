@@ -0,0 +1,137 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookStoreProperties.Type.COMPACT;
+import static com.github.ingogriebsch.sample.spring.restdocs.restcontroller.BookStoreProperties.Type.HEAP;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ShardedBookStoreTest {
+
+    private static final int SHARDS = 8;
+
+    private List<InMemoryBookStore> shards;
+    private ShardedBookStore bookStore;
+
+    @Before
+    public void before() {
+        shards = new ArrayList<>();
+        bookStore = new ShardedBookStore(SHARDS, () -> {
+            InMemoryBookStore shard = new InMemoryBookStore();
+            shards.add(shard);
+            return shard;
+        });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_should_throw_exception_if_shards_are_not_positive() throws Exception {
+        new ShardedBookStore(0, InMemoryBookStore::new);
+    }
+
+    @Test
+    public void insert_and_delete_should_behave_like_the_in_memory_store() throws Exception {
+        Book book = new Book("9780345391803", "The Hitchhiker's Guide to the Galaxy");
+        assertThat(bookStore.insert(book)).isTrue();
+        assertThat(bookStore.insert(book)).isFalse();
+        assertThat(bookStore.find(book.getIsbn()).get()).isEqualTo(book);
+        assertThat(bookStore.size()).isEqualTo(1);
+        assertThat(bookStore.memoryFootprint()).isGreaterThan(0);
+        assertThat(bookStore.delete(book.getIsbn())).isTrue();
+        assertThat(bookStore.delete(book.getIsbn())).isFalse();
+        assertThat(bookStore.find(book.getIsbn()).isPresent()).isFalse();
+        assertThat(bookStore.size()).isEqualTo(0);
+        assertThat(bookStore.memoryFootprint()).isEqualTo(0);
+    }
+
+    @Test
+    public void insert_should_spread_books_evenly_over_the_shards() throws Exception {
+        int count = 80_000;
+        IntStream.range(0, count).forEach(i -> bookStore.insert(book(i)));
+
+        assertThat(shards).hasSize(SHARDS);
+        for (InMemoryBookStore shard : shards) {
+            assertThat(shard.size()).isBetween(count / SHARDS * 9 / 10, count / SHARDS * 11 / 10);
+        }
+        assertThat(bookStore.size()).isEqualTo(count);
+        assertThat(bookStore.stream().collect(toSet()))
+            .isEqualTo(IntStream.range(0, count).mapToObj(this::book).collect(toSet()));
+    }
+
+    @Test
+    public void insert_find_and_delete_should_stay_consistent_if_called_concurrently() throws Exception {
+        int threads = 8;
+        int booksPerThread = 20_000;
+        ExecutorService executorService = newFixedThreadPool(threads);
+        try {
+            List<Future<Set<Book>>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int first = t * booksPerThread;
+                futures.add(executorService.submit(() -> {
+                    List<Book> books = IntStream.range(first, first + booksPerThread).mapToObj(this::book).collect(toList());
+                    for (Book book : books) {
+                        assertThat(bookStore.insert(book)).isTrue();
+                        assertThat(bookStore.find(book.getIsbn()).get()).isEqualTo(book);
+                    }
+                    books.stream().filter(b -> Long.parseLong(b.getIsbn()) % 2 == 0).forEach(b -> bookStore.delete(b.getIsbn()));
+                    return books.stream().filter(b -> Long.parseLong(b.getIsbn()) % 2 != 0).collect(toSet());
+                }));
+            }
+
+            for (Future<Set<Book>> future : futures) {
+                for (Book book : future.get(30, SECONDS)) {
+                    assertThat(bookStore.find(book.getIsbn()).get()).isEqualTo(book);
+                }
+            }
+            assertThat(bookStore.size()).isEqualTo(threads * booksPerThread / 2);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void newBookStore_should_only_shard_if_more_than_one_shard_is_configured() throws Exception {
+        assertThat(BookStoreConfiguration.newBookStore(HEAP, 1)).isInstanceOf(InMemoryBookStore.class);
+        assertThat(BookStoreConfiguration.newBookStore(COMPACT, 4)).isInstanceOf(ShardedBookStore.class);
+        assertThat(((ShardedBookStore) BookStoreConfiguration.newBookStore(COMPACT, 4)).shards()).isEqualTo(4);
+    }
+
+    private Book book(int i) {
+        return new Book(isbn(i), "Title " + i);
+    }
+
+    private static String isbn(int i) {
+        return String.format("%010d", i);
+    }
+}
@@ -0,0 +1,143 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SnapshotBookStoreTest {
+
+    private SnapshotBookStore bookStore;
+
+    @Before
+    public void before() {
+        bookStore = new SnapshotBookStore();
+    }
+
+    @Test
+    public void insert_and_delete_should_behave_like_the_in_memory_store() throws Exception {
+        Book book = new Book("9780345391803", "The Hitchhiker's Guide to the Galaxy");
+        assertThat(bookStore.insert(book)).isTrue();
+        assertThat(bookStore.insert(book)).isFalse();
+        assertThat(bookStore.find(book.getIsbn()).get()).isEqualTo(book);
+        assertThat(bookStore.size()).isEqualTo(1);
+        assertThat(bookStore.memoryFootprint()).isPositive();
+        assertThat(bookStore.delete(book.getIsbn())).isTrue();
+        assertThat(bookStore.delete(book.getIsbn())).isFalse();
+        assertThat(bookStore.find(book.getIsbn()).isPresent()).isFalse();
+        assertThat(bookStore.size()).isEqualTo(0);
+        assertThat(bookStore.memoryFootprint()).isEqualTo(0);
+    }
+
+    @Test
+    public void replace_should_only_replace_stored_books() throws Exception {
+        Book book = new Book("9780345391803", "The Hitchhiker's Guide to the Galaxy");
+        assertThat(bookStore.replace(book)).isFalse();
+        assertThat(bookStore.find(book.getIsbn()).isPresent()).isFalse();
+
+        bookStore.insert(new Book(book.getIsbn(), "The Hitchhiker's Guide"));
+        assertThat(bookStore.replace(book)).isTrue();
+        assertThat(bookStore.find(book.getIsbn()).get()).isEqualTo(book);
+        assertThat(bookStore.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void snapshot_should_neither_see_later_inserts_nor_deletes() throws Exception {
+        Book book = new Book("9780345391803", "The Hitchhiker's Guide to the Galaxy");
+        bookStore.insert(book);
+        BookSnapshot snapshot = bookStore.view().get();
+
+        bookStore.insert(new Book("9780062225672", "The Color of Magic"));
+        bookStore.delete(book.getIsbn());
+
+        assertThat(snapshot.stream().collect(toList())).containsExactly(book);
+        assertThat(snapshot.find(book.getIsbn()).get()).isEqualTo(book);
+        assertThat(snapshot.find("9780062225672").isPresent()).isFalse();
+        assertThat(snapshot.getVersion()).isEqualTo(1);
+        assertThat(bookStore.view().get().getVersion()).isEqualTo(3);
+    }
+
+    @Test
+    public void snapshot_should_keep_its_version_if_nothing_changes() throws Exception {
+        bookStore.insert(new Book("9780345391803", "The Hitchhiker's Guide to the Galaxy"));
+        long version = bookStore.view().get().getVersion();
+
+        bookStore.insert(new Book("9780345391803", "The Hitchhiker's Guide to the Galaxy"));
+        bookStore.delete("9780062225672");
+
+        assertThat(bookStore.view().get().getVersion()).isEqualTo(version);
+    }
+
+    @Test
+    public void insert_find_and_delete_should_stay_consistent_if_called_concurrently() throws Exception {
+        int threads = 8;
+        int booksPerThread = 20_000;
+        ExecutorService executorService = newFixedThreadPool(threads);
+        try {
+            List<Future<Set<Book>>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int first = t * booksPerThread;
+                futures.add(executorService.submit(() -> {
+                    List<Book> books = IntStream.range(first, first + booksPerThread).mapToObj(this::book).collect(toList());
+                    for (Book book : books) {
+                        assertThat(bookStore.insert(book)).isTrue();
+                        assertThat(bookStore.find(book.getIsbn()).get()).isEqualTo(book);
+                        // Every snapshot has to be consistent in itself, no matter how many writers are racing.
+                        BookSnapshot snapshot = bookStore.view().get();
+                        assertThat(snapshot.find(book.getIsbn()).isPresent()).isTrue();
+                    }
+                    books.stream().filter(b -> b.getTitle().hashCode() % 2 == 0).forEach(b -> bookStore.delete(b.getIsbn()));
+                    return books.stream().filter(b -> b.getTitle().hashCode() % 2 != 0).collect(toSet());
+                }));
+            }
+
+            int remaining = 0;
+            for (Future<Set<Book>> future : futures) {
+                Set<Book> books = future.get(30, SECONDS);
+                for (Book book : books) {
+                    assertThat(bookStore.find(book.getIsbn()).get()).isEqualTo(book);
+                }
+                remaining += books.size();
+            }
+            assertThat(bookStore.size()).isEqualTo(remaining);
+            assertThat(bookStore.view().get().stream().count()).isEqualTo(remaining);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private Book book(int i) {
+        return new Book(String.format("978%010d", i), "Title " + i);
+    }
+}
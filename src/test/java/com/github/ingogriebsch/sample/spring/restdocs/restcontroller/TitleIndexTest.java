@@ -0,0 +1,88 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TitleIndexTest {
+
+    private TitleIndex titleIndex;
+
+    @Before
+    public void before() {
+        titleIndex = new TitleIndex();
+        titleIndex.add(new Book("0345391802", "The Hitchhiker's Guide to the Galaxy"));
+        titleIndex.add(new Book("9781451673319", "Fahrenheit 451"));
+        titleIndex.add(new Book("0062225677", "The Color of Magic"));
+        titleIndex.add(new Book("0061020710", "The Light Fantastic"));
+    }
+
+    @Test
+    public void tokenize_should_return_lower_case_words_without_punctuation() throws Exception {
+        assertThat(TitleIndex.tokenize("The Hitchhiker's Guide to the Galaxy")).containsExactly("the", "hitchhiker", "s", "guide",
+            "to", "galaxy");
+        assertThat(TitleIndex.tokenize("  ")).isEmpty();
+        assertThat(TitleIndex.tokenize(null)).isEmpty();
+    }
+
+    @Test
+    public void search_should_match_tokens_as_prefixes_of_terms() throws Exception {
+        assertThat(titleIndex.search("fahr", 10)).containsExactly("9781451673319");
+        assertThat(titleIndex.search("GAL", 10)).containsExactly("0345391802");
+        assertThat(titleIndex.search("alaxy", 10)).isEmpty();
+    }
+
+    @Test
+    public void search_should_only_return_books_matching_all_tokens() throws Exception {
+        assertThat(titleIndex.search("the", 10)).containsOnly("0345391802", "0062225677", "0061020710");
+        assertThat(titleIndex.search("the magic", 10)).containsExactly("0062225677");
+        assertThat(titleIndex.search("the 451", 10)).isEmpty();
+    }
+
+    @Test
+    public void search_should_rank_rare_and_exact_terms_first() throws Exception {
+        titleIndex.add(new Book("0552166596", "Magical Thinking"));
+
+        assertThat(titleIndex.search("magic", 10)).containsExactly("0062225677", "0552166596");
+    }
+
+    @Test
+    public void search_should_return_at_most_limit_books() throws Exception {
+        assertThat(titleIndex.search("the", 2)).hasSize(2);
+        assertThat(titleIndex.search("the", 2)).isEqualTo(titleIndex.search("the", 10).subList(0, 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void search_should_throw_exception_if_limit_is_not_positive() throws Exception {
+        titleIndex.search("the", 0);
+    }
+
+    @Test
+    public void remove_should_drop_terms_which_are_not_used_anymore() throws Exception {
+        int terms = titleIndex.terms();
+        titleIndex.remove(new Book("9781451673319", "Fahrenheit 451"));
+
+        assertThat(titleIndex.search("fahrenheit", 10)).isEmpty();
+        assertThat(titleIndex.terms()).isEqualTo(terms - 2);
+    }
+}
@@ -0,0 +1,94 @@
+/*-
+ * #%L
+ * Spring Web simple REST controller sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.restdocs.restcontroller;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+public class TokenBucketTest {
+
+    @Test
+    public void tryAcquire_should_allow_a_burst_up_to_the_capacity() throws Exception {
+        TokenBucket bucket = new TokenBucket(10, 5, 0);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(bucket.tryAcquire(0)).isEqualTo(0);
+        }
+        assertThat(bucket.tryAcquire(0)).isEqualTo(MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    public void tryAcquire_should_refill_tokens_over_time() throws Exception {
+        TokenBucket bucket = new TokenBucket(10, 1, 0);
+        assertThat(bucket.tryAcquire(0)).isEqualTo(0);
+
+        assertThat(bucket.tryAcquire(MILLISECONDS.toNanos(40))).isEqualTo(MILLISECONDS.toNanos(60));
+        assertThat(bucket.tryAcquire(MILLISECONDS.toNanos(100))).isEqualTo(0);
+        assertThat(bucket.tryAcquire(MILLISECONDS.toNanos(100))).isGreaterThan(0);
+    }
+
+    @Test
+    public void tryAcquire_should_not_save_up_more_tokens_than_the_capacity() throws Exception {
+        TokenBucket bucket = new TokenBucket(10, 2, 0);
+
+        long later = SECONDS.toNanos(60);
+        assertThat(bucket.tryAcquire(later)).isEqualTo(0);
+        assertThat(bucket.tryAcquire(later)).isEqualTo(0);
+        assertThat(bucket.tryAcquire(later)).isGreaterThan(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_should_throw_exception_if_capacity_is_not_positive() throws Exception {
+        new TokenBucket(10, 0, 0);
+    }
+
+    @Test
+    public void tryAcquire_should_hand_out_each_token_only_once_if_called_concurrently() throws Exception {
+        int threads = 8;
+        TokenBucket bucket = new TokenBucket(1, 10_000, 0);
+        ExecutorService executorService = newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures
+                    .add(executorService.submit(() -> IntStream.range(0, 5_000).filter(i -> bucket.tryAcquire(0) == 0).count()));
+            }
+
+            long acquired = 0;
+            for (Future<Long> future : futures) {
+                acquired += future.get(30, SECONDS);
+            }
+            assertThat(acquired).isEqualTo(10_000);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+}